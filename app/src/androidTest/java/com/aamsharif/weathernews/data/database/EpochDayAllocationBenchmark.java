@@ -0,0 +1,207 @@
+package com.aamsharif.weathernews.data.database;
+
+import android.database.Cursor;
+import android.os.Debug;
+
+import androidx.room.EntityInsertionAdapter;
+import androidx.room.Room;
+import androidx.room.RoomSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the objects allocated per query and per bound row by the weather table keyed by epoch
+ * day, against the same work with the Date timestamp it was keyed by before version 5. The old
+ * path is a copy of the code Room generated for it, run against a table with the old layout.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class EpochDayAllocationBenchmark {
+
+    private static final int DAYS = 16;
+    private static final int ITERATIONS = 500;
+    private static final int FIRST_DAY = 20000;
+
+    private WeatherNewsDatabase mDatabase;
+    private WeatherDao mDao;
+    private EntityInsertionAdapter<DatedWeather> mDatedInsertion;
+
+    @Before
+    public void setUp() {
+        mDatabase = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                WeatherNewsDatabase.class).build();
+        mDao = mDatabase.weatherDao();
+        mDatabase.getOpenHelper().getWritableDatabase().execSQL(
+                "CREATE TABLE `dated_weather` ("
+                        + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                        + "`weatherIconId` INTEGER NOT NULL, `date` INTEGER, "
+                        + "`min` REAL NOT NULL, `max` REAL NOT NULL, "
+                        + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                        + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL)");
+        mDatabase.getOpenHelper().getWritableDatabase().execSQL(
+                "CREATE UNIQUE INDEX `index_dated_weather_date` ON `dated_weather` (`date`)");
+        mDatedInsertion = new EntityInsertionAdapter<DatedWeather>(mDatabase) {
+            @Override
+            public String createQuery() {
+                return "INSERT OR REPLACE INTO `dated_weather` (`id`,`weatherIconId`,`date`,"
+                        + "`min`,`max`,`humidity`,`pressure`,`wind`,`degrees`) "
+                        + "VALUES (nullif(?, 0),?,?,?,?,?,?,?,?)";
+            }
+
+            @Override
+            public void bind(SupportSQLiteStatement stmt, DatedWeather value) {
+                stmt.bindLong(1, value.id);
+                stmt.bindLong(2, value.weatherIconId);
+                final Long _tmp = DateConverter.toTimestamp(value.date);
+                if (_tmp == null) {
+                    stmt.bindNull(3);
+                } else {
+                    stmt.bindLong(3, _tmp);
+                }
+                stmt.bindDouble(4, value.min);
+                stmt.bindDouble(5, value.max);
+                stmt.bindDouble(6, value.humidity);
+                stmt.bindDouble(7, value.pressure);
+                stmt.bindDouble(8, value.wind);
+                stmt.bindDouble(9, value.degrees);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void epochDayAllocatesLessPerBind() {
+        // The parser built a Date for every day of the old forecast
+        long datedAllocations = countAllocations(() -> {
+            DatedWeather[] weather = new DatedWeather[DAYS];
+            for (int day = 0; day < DAYS; day++) {
+                weather[day] = new DatedWeather(new Date(
+                        (FIRST_DAY + day) * WeatherNewsDateUtils.DAY_IN_MILLIS));
+            }
+            insertDated(weather);
+        });
+        long epochDayAllocations = countAllocations(() -> {
+            WeatherEntry[] weather = new WeatherEntry[DAYS];
+            for (int day = 0; day < DAYS; day++) {
+                weather[day] = new WeatherEntry(800, FIRST_DAY + day, 12, 21, 60, 1013, 3.5, 180);
+            }
+            mDao.bulkInsert(weather);
+        });
+
+        report("bound row", datedAllocations, epochDayAllocations, ITERATIONS * DAYS);
+        assertTrue(epochDayAllocations < datedAllocations);
+    }
+
+    @Test
+    public void epochDayAllocatesLessPerQuery() {
+        WeatherEntry[] weather = new WeatherEntry[DAYS];
+        DatedWeather[] datedWeather = new DatedWeather[DAYS];
+        for (int day = 0; day < DAYS; day++) {
+            weather[day] = new WeatherEntry(800, FIRST_DAY + day, 12, 21, 60, 1013, 3.5, 180);
+            datedWeather[day] = new DatedWeather(new Date(
+                    (FIRST_DAY + day) * WeatherNewsDateUtils.DAY_IN_MILLIS));
+        }
+        mDao.bulkInsert(weather);
+        insertDated(datedWeather);
+
+        // The callers normalized a Date to ask for a day
+        long datedAllocations = countAllocations(() -> getDatedWeather(new Date(
+                WeatherNewsDateUtils.normalizeDate(
+                        (FIRST_DAY + 3) * WeatherNewsDateUtils.DAY_IN_MILLIS + 1))));
+        long epochDayAllocations = countAllocations(
+                () -> mDao.getWeatherEntryByDay(FIRST_DAY + 3));
+
+        report("query", datedAllocations, epochDayAllocations, ITERATIONS);
+        assertTrue(epochDayAllocations < datedAllocations);
+    }
+
+    private long countAllocations(Runnable work) {
+        // Warm up, so that class loading and statement caches aren't counted
+        for (int i = 0; i < ITERATIONS / 10; i++) work.run();
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < ITERATIONS; i++) work.run();
+        long allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return allocations;
+    }
+
+    private static void report(String unit, long datedAllocations, long epochDayAllocations,
+                               int units) {
+        System.out.println(String.format("Allocations per %s: Date %.2f, epoch day %.2f", unit,
+                (double) datedAllocations / units, (double) epochDayAllocations / units));
+    }
+
+    private void insertDated(DatedWeather[] weather) {
+        mDatabase.beginTransaction();
+        try {
+            mDatedInsertion.insert(weather);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private DatedWeather getDatedWeather(Date date) {
+        final RoomSQLiteQuery _statement = RoomSQLiteQuery.acquire(
+                "SELECT * FROM dated_weather WHERE date = ?", 1);
+        final Long _tmp = DateConverter.toTimestamp(date);
+        if (_tmp == null) {
+            _statement.bindNull(1);
+        } else {
+            _statement.bindLong(1, _tmp);
+        }
+        final Cursor _cursor = mDatabase.query(_statement);
+        try {
+            if (!_cursor.moveToFirst()) return null;
+            final Long _tmpDate = _cursor.isNull(2) ? null : _cursor.getLong(2);
+            DatedWeather result = new DatedWeather(DateConverter.toDate(_tmpDate));
+            result.id = _cursor.getInt(0);
+            result.weatherIconId = _cursor.getInt(1);
+            result.min = _cursor.getDouble(3);
+            result.max = _cursor.getDouble(4);
+            result.humidity = _cursor.getDouble(5);
+            result.pressure = _cursor.getDouble(6);
+            result.wind = _cursor.getDouble(7);
+            result.degrees = _cursor.getDouble(8);
+            return result;
+        } finally {
+            _cursor.close();
+            _statement.release();
+        }
+    }
+
+    // The weather entry as it was before version 5
+    private static class DatedWeather {
+        int id;
+        int weatherIconId = 800;
+        Date date;
+        double min = 12;
+        double max = 21;
+        double humidity = 60;
+        double pressure = 1013;
+        double wind = 3.5;
+        double degrees = 180;
+
+        DatedWeather(Date date) {
+            this.date = date;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.aamsharif.weathernews.data.database;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stores the 3-hourly forecasts of 50 locations and reads a day of each back, and checks that
+ * both stay within a time budget. The database is on disk, in WAL mode like the app's.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HourlyWeatherLoadTest {
+
+    private static final String DATABASE_NAME = "hourly-load-test";
+
+    private static final int LOCATIONS = 50;
+    // The 5 day / 3 hour endpoint returns 40 steps
+    private static final int STEPS = 40;
+    private static final long STEP_MILLIS = TimeUnit.HOURS.toMillis(3);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long START_MILLIS = TimeUnit.DAYS.toMillis(20000);
+
+    // Budgets for all 50 locations together, loose enough for a slow emulator
+    private static final long MERGE_BUDGET_MILLIS = 2000;
+    private static final long READ_BUDGET_MILLIS = 500;
+
+    private Context mContext;
+    private WeatherNewsDatabase mDatabase;
+    private HourlyWeatherDao mDao;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDatabase = Room.databaseBuilder(mContext, WeatherNewsDatabase.class, DATABASE_NAME)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .build();
+        mDao = mDatabase.hourlyWeatherDao();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void fiftyLocationsStayWithinBudget() {
+        List<List<HourlyWeatherEntry>> forecasts = new ArrayList<>(LOCATIONS);
+        for (int i = 0; i < LOCATIONS; i++) {
+            forecasts.add(createForecast(location(i), START_MILLIS));
+        }
+
+        // The first sync fills the table, the second replaces every step of it
+        long firstMergeMillis = mergeAll(forecasts);
+        long secondMergeMillis = mergeAll(forecasts);
+
+        long readStartMillis = SystemClock.elapsedRealtime();
+        int points = 0;
+        for (int i = 0; i < LOCATIONS; i++) {
+            long from = START_MILLIS + (i % 5) * DAY_MILLIS;
+            points += mDao.getPointsNow(location(i), from, from + DAY_MILLIS).size();
+        }
+        long readMillis = SystemClock.elapsedRealtime() - readStartMillis;
+
+        System.out.println("Hourly load test: first merge " + firstMergeMillis + " ms, second merge "
+                + secondMergeMillis + " ms, " + LOCATIONS + " day reads " + readMillis + " ms");
+
+        assertEquals(LOCATIONS * (int) (DAY_MILLIS / STEP_MILLIS), points);
+        assertTrue("Merges took " + firstMergeMillis + " ms",
+                firstMergeMillis < MERGE_BUDGET_MILLIS);
+        assertTrue("Merges took " + secondMergeMillis + " ms",
+                secondMergeMillis < MERGE_BUDGET_MILLIS);
+        assertTrue("Reads took " + readMillis + " ms", readMillis < READ_BUDGET_MILLIS);
+    }
+
+    private long mergeAll(List<List<HourlyWeatherEntry>> forecasts) {
+        long startMillis = SystemClock.elapsedRealtime();
+        for (int i = 0; i < LOCATIONS; i++) {
+            mDao.mergeForecast(location(i), forecasts.get(i), START_MILLIS);
+        }
+        return SystemClock.elapsedRealtime() - startMillis;
+    }
+
+    private static List<HourlyWeatherEntry> createForecast(String location, long startMillis) {
+        List<HourlyWeatherEntry> forecast = new ArrayList<>(STEPS);
+        for (int step = 0; step < STEPS; step++) {
+            forecast.add(new HourlyWeatherEntry(location, startMillis + step * STEP_MILLIS,
+                    800 + step % 5, 10 + step % 8, 60, 1013, 3.5, 180));
+        }
+        return forecast;
+    }
+
+    private static String location(int index) {
+        return "Location " + index;
+    }
+}
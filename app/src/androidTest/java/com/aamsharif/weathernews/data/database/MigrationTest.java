@@ -0,0 +1,132 @@
+package com.aamsharif.weathernews.data.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs the migrations from version 5 and validates the result against the schema Room exports
+ * for the current version. The schemas of earlier versions were never exported, so the version 5
+ * database is created here, with the tables as the migrations up to version 5 leave them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String DATABASE_NAME = "migration-test";
+
+    private static final int EPOCH_DAY = 20000;
+
+    // The tables of version 5, as left by MIGRATION_1_2 to MIGRATION_4_5
+    private static final String[] VERSION_5_SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS `weather` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`weatherIconId` INTEGER NOT NULL, `epochDay` INTEGER NOT NULL, "
+                    + "`min` REAL NOT NULL, `max` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS `index_weather_epochDay` ON `weather` (`epochDay`)",
+            "CREATE TABLE IF NOT EXISTS `location_weather` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`location` TEXT NOT NULL, `weatherIconId` INTEGER NOT NULL, "
+                    + "`date` INTEGER, `min` REAL NOT NULL, `max` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS `index_location_weather_location_date` "
+                    + "ON `location_weather` (`location`, `date`)",
+            "CREATE TABLE IF NOT EXISTS `hourly_weather` ("
+                    + "`location` TEXT NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`weatherIconId` INTEGER NOT NULL, `temperature` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL, "
+                    + "PRIMARY KEY(`location`, `timestamp`))",
+            "CREATE INDEX IF NOT EXISTS "
+                    + "`index_hourly_weather_location_timestamp_weatherIconId_temperature` "
+                    + "ON `hourly_weather` "
+                    + "(`location`, `timestamp`, `weatherIconId`, `temperature`)",
+            "CREATE TABLE IF NOT EXISTS `forecast_hash` ("
+                    + "`forecast` TEXT NOT NULL, `contentHash` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`forecast`))"
+    };
+
+    @Rule
+    public MigrationTestHelper mHelper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            WeatherNewsDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory());
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(context)
+                        .name(DATABASE_NAME)
+                        .callback(new SupportSQLiteOpenHelper.Callback(5) {
+                            @Override
+                            public void onCreate(SupportSQLiteDatabase db) {
+                                for (String statement : VERSION_5_SCHEMA) db.execSQL(statement);
+                            }
+
+                            @Override
+                            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion,
+                                                  int newVersion) {
+                            }
+                        })
+                        .build());
+        SupportSQLiteDatabase database = helper.getWritableDatabase();
+        database.execSQL("INSERT INTO weather (weatherIconId, epochDay, min, max, humidity, "
+                + "pressure, wind, degrees) "
+                + "VALUES (800, " + EPOCH_DAY + ", 12, 21.5, 60, 1013, 3.5, 180)");
+        database.execSQL("INSERT INTO forecast_hash (forecast, contentHash) "
+                + "VALUES ('weather', 42)");
+        helper.close();
+    }
+
+    @Test
+    public void migrate5To7() throws IOException {
+        SupportSQLiteDatabase database = mHelper.runMigrationsAndValidate(DATABASE_NAME, 7, true,
+                WeatherNewsDatabase.MIGRATION_5_6, WeatherNewsDatabase.MIGRATION_6_7);
+        // The rows survive, but the hash is dropped as nothing tells which location they are of
+        assertEquals(1, count(database, "weather"));
+        assertEquals(0, count(database, "weather_history"));
+        assertEquals(0, count(database, "forecast_hash"));
+        database.close();
+
+        // The migrated database has to open with the schema the app is built with
+        WeatherNewsDatabase migrated = Room.databaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                WeatherNewsDatabase.class, DATABASE_NAME)
+                .addMigrations(WeatherNewsDatabase.MIGRATION_5_6, WeatherNewsDatabase.MIGRATION_6_7)
+                .build();
+        WeatherEntry weather = migrated.weatherDao().getWeatherEntryByDay(EPOCH_DAY);
+        assertNotNull(weather);
+        assertEquals(21.5, weather.getMax(), 0);
+        assertNull(migrated.weatherDao().getForecastLocation());
+        migrated.close();
+    }
+
+    private static int count(SupportSQLiteDatabase database, String table) {
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM " + table)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+}
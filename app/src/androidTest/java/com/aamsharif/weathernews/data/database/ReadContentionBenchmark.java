@@ -0,0 +1,109 @@
+package com.aamsharif.weathernews.data.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times the reads the UI makes while the single writer keeps replacing a large forecast with
+ * {@link WeatherDao#mergeForecasts(String, WeatherEntry[], int)}, once in WAL mode as the app
+ * runs and once with a rollback journal, where every read waits for the merge to commit.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReadContentionBenchmark {
+
+    private static final String DATABASE_NAME = "contention-benchmark";
+
+    // Far more days than a forecast has, so that each merge holds the write lock for a while
+    private static final int INGEST_DAYS = 2000;
+    private static final int TODAY = 20000;
+    private static final int READS = 300;
+
+    // A read should fit in a frame or two even while the merges run
+    private static final long WAL_READ_BUDGET_MILLIS = 32;
+
+    @Test
+    public void walKeepsReadsFastDuringMerges() throws InterruptedException {
+        long[] truncateLatencies = measureReadLatencies(RoomDatabase.JournalMode.TRUNCATE);
+        long[] walLatencies = measureReadLatencies(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING);
+
+        long truncateP95 = percentileMillis(truncateLatencies, 95);
+        long walP95 = percentileMillis(walLatencies, 95);
+        System.out.println("Reads during merges, p50/p95/max: rollback journal "
+                + percentileMillis(truncateLatencies, 50) + "/" + truncateP95 + "/"
+                + percentileMillis(truncateLatencies, 100) + " ms, WAL "
+                + percentileMillis(walLatencies, 50) + "/" + walP95 + "/"
+                + percentileMillis(walLatencies, 100) + " ms");
+
+        assertTrue("WAL p95 read took " + walP95 + " ms", walP95 < WAL_READ_BUDGET_MILLIS);
+        assertTrue(walP95 <= truncateP95);
+    }
+
+    private long[] measureReadLatencies(RoomDatabase.JournalMode journalMode)
+            throws InterruptedException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        WeatherNewsDatabase database = Room.databaseBuilder(context, WeatherNewsDatabase.class,
+                DATABASE_NAME).setJournalMode(journalMode).build();
+        WeatherDao dao = database.weatherDao();
+        WeatherEntry[] forecast = createForecast();
+        dao.mergeForecasts("Dhaka", forecast, TODAY);
+
+        // Switching location every time makes each merge drop and insert every row
+        AtomicBoolean reading = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            String[] locations = {"Dhaka", "Chittagong"};
+            for (int i = 0; reading.get(); i++) {
+                dao.mergeForecasts(locations[i % 2], forecast, TODAY);
+            }
+        });
+        writer.start();
+
+        long[] latencies = new long[READS];
+        try {
+            for (int i = 0; i < READS; i++) {
+                long startNanos = System.nanoTime();
+                int count = dao.countAllFutureWeather(TODAY);
+                dao.getWeatherEntryByDay(TODAY + i % INGEST_DAYS);
+                latencies[i] = System.nanoTime() - startNanos;
+                // A read never sees a merge half done
+                assertEquals(INGEST_DAYS, count);
+            }
+        } finally {
+            reading.set(false);
+            writer.join();
+            database.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+        return latencies;
+    }
+
+    private static WeatherEntry[] createForecast() {
+        WeatherEntry[] forecast = new WeatherEntry[INGEST_DAYS];
+        for (int day = 0; day < INGEST_DAYS; day++) {
+            forecast[day] = new WeatherEntry(800 + day % 5, TODAY + day, 12, 21 + day % 7, 60,
+                    1013, 3.5, 180);
+        }
+        return forecast;
+    }
+
+    private static long percentileMillis(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[index]);
+    }
+}
@@ -0,0 +1,99 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes the first days of a forecast as they are parsed, then puts back the stored days as is
+ * done once the download fails, and checks that nothing of the failed forecast is left.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RestoreForecastTest {
+
+    private static final int TODAY = 20000;
+    private static final int FORECAST_DAYS = 14;
+
+    private WeatherNewsDatabase mDatabase;
+    private WeatherDao mDao;
+
+    @Before
+    public void setUp() {
+        mDatabase = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                WeatherNewsDatabase.class).build();
+        mDao = mDatabase.weatherDao();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void storedForecastIsPutBackAndMergedAgain() {
+        WeatherEntry[] stored = createForecast(FORECAST_DAYS, 20);
+        mDao.mergeForecasts("Dhaka", stored, TODAY);
+        assertTrue(mDao.isSameAsLastForecast("Dhaka", stored));
+
+        List<WeatherEntry> replaced = mDao.getFutureWeatherEntries(TODAY);
+        mDao.publishForecastEntries("Dhaka", createForecast(2, 30));
+        mDao.restoreForecast("Dhaka", replaced, TODAY);
+
+        assertStored(20);
+        assertEquals("Dhaka", mDao.getForecastLocation());
+        // The same forecast downloaded again must not be skipped
+        assertFalse(mDao.isSameAsLastForecast("Dhaka", stored));
+    }
+
+    @Test
+    public void forecastOfAnotherLocationIsPutBack() {
+        mDao.mergeForecasts("Sylhet", createForecast(FORECAST_DAYS, 20), TODAY);
+
+        List<WeatherEntry> replaced = mDao.getFutureWeatherEntries(TODAY);
+        String replacedLocation = mDao.getForecastLocation();
+        mDao.publishForecastEntries("Dhaka", createForecast(2, 30));
+        assertEquals(2, mDao.countAllFutureWeather(TODAY));
+        mDao.restoreForecast(replacedLocation, replaced, TODAY);
+
+        assertStored(20);
+        assertEquals("Sylhet", mDao.getForecastLocation());
+    }
+
+    @Test
+    public void emptyTableIsLeftEmpty() {
+        List<WeatherEntry> replaced = mDao.getFutureWeatherEntries(TODAY);
+        String replacedLocation = mDao.getForecastLocation();
+        mDao.publishForecastEntries("Dhaka", createForecast(2, 30));
+        mDao.restoreForecast(replacedLocation, replaced, TODAY);
+
+        assertEquals(0, mDao.countAllFutureWeather(TODAY));
+        assertNull(mDao.getForecastLocation());
+    }
+
+    private void assertStored(double max) {
+        List<WeatherEntry> weather = mDao.getFutureWeatherEntries(TODAY);
+        assertEquals(FORECAST_DAYS, weather.size());
+        for (WeatherEntry entry : weather) assertEquals(max, entry.getMax(), 0);
+    }
+
+    private static WeatherEntry[] createForecast(int days, double max) {
+        WeatherEntry[] forecast = new WeatherEntry[days];
+        for (int i = 0; i < days; i++) {
+            forecast[i] = new WeatherEntry(800, TODAY + i, max - 8, max, 60, 1013, 3.5, 180);
+        }
+        return forecast;
+    }
+}
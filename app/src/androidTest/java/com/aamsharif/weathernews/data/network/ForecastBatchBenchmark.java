@@ -0,0 +1,227 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.database.Cursor;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import androidx.room.EntityInsertionAdapter;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.aamsharif.weathernews.data.database.ForecastBatch;
+import com.aamsharif.weathernews.data.database.LocationWeatherEntry;
+import com.aamsharif.weathernews.data.database.WeatherEntry;
+import com.aamsharif.weathernews.data.database.WeatherNewsDatabase;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Decodes and stores the forecasts of 50 saved locations through {@link ForecastBatch} and
+ * through the object path it replaced: a {@link WeatherEntry} per day, turned into a
+ * {@link LocationWeatherEntry} with a Date and inserted by the adapter Room generated for it,
+ * copied here. Prints the allocations and rows per second of both, and checks that both store
+ * the same values.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class ForecastBatchBenchmark {
+
+    private static final int LOCATIONS = 50;
+    private static final int ROUNDS = 20;
+
+    private final List<String> mLocations = new ArrayList<>();
+    private final List<byte[]> mResponses = new ArrayList<>();
+
+    private WeatherNewsDatabase mBatchDatabase;
+    private WeatherNewsDatabase mObjectDatabase;
+    private EntityInsertionAdapter<LocationWeatherEntry> mObjectInsertion;
+
+    @Before
+    public void setUp() {
+        int today = WeatherNewsDateUtils.getEpochDayForToday();
+        for (int i = 0; i < LOCATIONS; i++) {
+            mLocations.add("Location " + i);
+            mResponses.add(createResponse(i, today).getBytes(Charset.forName("UTF-8")));
+        }
+
+        mBatchDatabase = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                WeatherNewsDatabase.class).build();
+        mObjectDatabase = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                WeatherNewsDatabase.class).build();
+        mObjectInsertion = new EntityInsertionAdapter<LocationWeatherEntry>(mObjectDatabase) {
+            @Override
+            public String createQuery() {
+                return "INSERT OR REPLACE INTO `location_weather` (`id`,`location`,`weatherIconId`,"
+                        + "`date`,`min`,`max`,`humidity`,`pressure`,`wind`,`degrees`) "
+                        + "VALUES (nullif(?, 0),?,?,?,?,?,?,?,?,?)";
+            }
+
+            @Override
+            public void bind(SupportSQLiteStatement stmt, LocationWeatherEntry value) {
+                stmt.bindLong(1, value.getId());
+                stmt.bindString(2, value.getLocation());
+                stmt.bindLong(3, value.getWeatherIconId());
+                // What DateConverter.toTimestamp does
+                final Long _tmp = value.getDate() == null ? null : value.getDate().getTime();
+                if (_tmp == null) {
+                    stmt.bindNull(4);
+                } else {
+                    stmt.bindLong(4, _tmp);
+                }
+                stmt.bindDouble(5, value.getMin());
+                stmt.bindDouble(6, value.getMax());
+                stmt.bindDouble(7, value.getHumidity());
+                stmt.bindDouble(8, value.getPressure());
+                stmt.bindDouble(9, value.getWind());
+                stmt.bindDouble(10, value.getDegrees());
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        mBatchDatabase.close();
+        mObjectDatabase.close();
+    }
+
+    @Test
+    public void batchAllocatesLessAndStoresTheSameValues() throws IOException {
+        Date today = WeatherNewsDateUtils.getNormalizedUtcDateForToday();
+        Measurement objects = measure(() -> {
+            List<LocationWeatherEntry> weather = new ArrayList<>();
+            for (int i = 0; i < LOCATIONS; i++) {
+                WeatherResponse response = OpenWeatherJsonParser.parse(
+                        new ByteArrayInputStream(mResponses.get(i)), null);
+                for (WeatherEntry day : response.getWeatherForecast()) {
+                    weather.add(new LocationWeatherEntry(0, mLocations.get(i),
+                            day.getWeatherIconId(), new Date(day.getDateMillis()), day.getMin(),
+                            day.getMax(), day.getHumidity(), day.getPressure(), day.getWind(),
+                            day.getDegrees()));
+                }
+            }
+            mObjectDatabase.beginTransaction();
+            try {
+                mObjectInsertion.insert(weather);
+                mObjectDatabase.setTransactionSuccessful();
+            } finally {
+                mObjectDatabase.endTransaction();
+            }
+            return weather.size();
+        });
+        Measurement columns = measure(() -> {
+            ForecastBatch batch = new ForecastBatch(
+                    LOCATIONS * WeatherNetworkDataSource.NUM_DAYS);
+            for (int i = 0; i < LOCATIONS; i++) {
+                OpenWeatherJsonParser.parseBatch(new ByteArrayInputStream(mResponses.get(i)),
+                        mLocations.get(i), batch);
+            }
+            mBatchDatabase.locationWeatherDao().mergeBatch(batch, today);
+            return batch.size();
+        });
+
+        System.out.println(String.format(Locale.US, "Per stored day: objects %.1f allocations, "
+                        + "%.0f rows/s; batch %.1f allocations, %.0f rows/s",
+                objects.getAllocationsPerRow(), objects.getRowsPerSecond(),
+                columns.getAllocationsPerRow(), columns.getRowsPerSecond()));
+
+        assertTrue(columns.getAllocationsPerRow() < objects.getAllocationsPerRow());
+        assertEquals(readValues(mObjectDatabase), readValues(mBatchDatabase));
+    }
+
+    private Measurement measure(Refresh refresh) throws IOException {
+        // Warm up, so that class loading and statement caches aren't counted
+        refresh.run();
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        long startMillis = SystemClock.elapsedRealtime();
+        long rows = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            rows += refresh.run();
+        }
+        long elapsedMillis = SystemClock.elapsedRealtime() - startMillis;
+        long allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return new Measurement(rows, allocations, elapsedMillis);
+    }
+
+    // Every stored column, as text, so that a difference in the last bit of a REAL shows
+    private static List<String> readValues(WeatherNewsDatabase database) {
+        List<String> values = new ArrayList<>();
+        try (Cursor cursor = database.query("SELECT location, weatherIconId, date, min, max, "
+                + "humidity, pressure, wind, degrees FROM location_weather "
+                + "ORDER BY location, date", null)) {
+            while (cursor.moveToNext()) {
+                StringBuilder row = new StringBuilder(cursor.getString(0));
+                for (int column = 1; column < cursor.getColumnCount(); column++) {
+                    row.append(' ').append(cursor.getDouble(column));
+                }
+                values.add(row.toString());
+            }
+        }
+        return values;
+    }
+
+    // A forecast as the daily endpoint sends it, with two decimals like the real one
+    private static String createResponse(int location, int today) {
+        StringBuilder json = new StringBuilder("{\"cod\":\"200\",\"city\":{\"id\":")
+                .append(1185241 + location)
+                .append(",\"coord\":{\"lat\":23.71,\"lon\":90.41}},\"cnt\":")
+                .append(WeatherNetworkDataSource.NUM_DAYS).append(",\"list\":[");
+        for (int day = 0; day < WeatherNetworkDataSource.NUM_DAYS; day++) {
+            if (day > 0) json.append(',');
+            double min = 285.15 + (location + day) % 9 * 0.37;
+            json.append(String.format(Locale.US, "{\"dt\":%d,\"temp\":{\"day\":%.2f,"
+                            + "\"min\":%.2f,\"max\":%.2f},\"pressure\":%.2f,\"humidity\":%d,"
+                            + "\"weather\":[{\"id\":%d,\"main\":\"Clear\"}],\"speed\":%.2f,"
+                            + "\"deg\":%d}",
+                    (today + day) * WeatherNewsDateUtils.DAY_IN_MILLIS / 1000, min + 4, min,
+                    min + 8.41, 1009.37 + day * 0.13, 60 + day, 800 + day % 4,
+                    3.61 + day * 0.07, 90 + day * 11));
+        }
+        return json.append("]}").toString();
+    }
+
+    private interface Refresh {
+        // @return The number of days stored
+        int run() throws IOException;
+    }
+
+    private static class Measurement {
+        private final long mRows;
+        private final long mAllocations;
+        private final long mElapsedMillis;
+
+        Measurement(long rows, long allocations, long elapsedMillis) {
+            mRows = rows;
+            mAllocations = allocations;
+            mElapsedMillis = elapsedMillis;
+        }
+
+        double getAllocationsPerRow() {
+            return (double) mAllocations / mRows;
+        }
+
+        double getRowsPerSecond() {
+            return mRows * 1000d / Math.max(1, mElapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.aamsharif.weathernews.data.database.WeatherEntry;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parses daily forecasts of 14 and 16 days with the DOM parser, after reading the body into a
+ * String the way NetworkUtils used to, and with the streaming parser reading the body directly.
+ * Prints the objects and bytes allocated and the time taken per parse. What a parse allocates
+ * bounds what it can hold at its peak, and the DOM path holds the String and the whole tree at
+ * once.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class ForecastParseBenchmark {
+
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void fourteenDays() throws IOException, JSONException {
+        compare(14);
+    }
+
+    @Test
+    public void sixteenDays() throws IOException, JSONException {
+        compare(16);
+    }
+
+    private static void compare(int days) throws IOException, JSONException {
+        byte[] body = createResponse(days).getBytes(Charset.forName("UTF-8"));
+
+        WeatherEntry[] dom = parseDom(body).getWeatherForecast();
+        WeatherEntry[] streamed = parseStreaming(body).getWeatherForecast();
+        assertEquals(days, dom.length);
+        assertEquals(days, streamed.length);
+        for (int day = 0; day < days; day++) {
+            assertEquals(dom[day].getEpochDay(), streamed[day].getEpochDay());
+            assertEquals(dom[day].getWeatherIconId(), streamed[day].getWeatherIconId());
+            assertEquals(dom[day].getMin(), streamed[day].getMin(), 0);
+            assertEquals(dom[day].getMax(), streamed[day].getMax(), 0);
+            assertEquals(dom[day].getHumidity(), streamed[day].getHumidity(), 0);
+            assertEquals(dom[day].getPressure(), streamed[day].getPressure(), 0);
+            assertEquals(dom[day].getWind(), streamed[day].getWind(), 0);
+            assertEquals(dom[day].getDegrees(), streamed[day].getDegrees(), 0);
+        }
+
+        Measurement domMeasurement = measure(() -> parseDom(body));
+        Measurement streamingMeasurement = measure(() -> parseStreaming(body));
+        System.out.println(String.format(Locale.US, "%d days, %d byte body, per parse: DOM %d "
+                        + "objects, %d bytes, %.2f ms; streaming %d objects, %d bytes, %.2f ms",
+                days, body.length,
+                domMeasurement.objects, domMeasurement.bytes, domMeasurement.millis,
+                streamingMeasurement.objects, streamingMeasurement.bytes,
+                streamingMeasurement.millis));
+
+        assertTrue(streamingMeasurement.bytes < domMeasurement.bytes);
+        assertTrue(streamingMeasurement.objects < domMeasurement.objects);
+    }
+
+    // The body read into a String first, as getResponseFromHttpUrl did
+    private static WeatherResponse parseDom(byte[] body) throws JSONException {
+        InputStream in = new ByteArrayInputStream(body);
+        Scanner scanner = new Scanner(in, "UTF-8");
+        scanner.useDelimiter("\\A");
+        String response = scanner.next();
+        scanner.close();
+        return OpenWeatherJsonParser.parse(response);
+    }
+
+    private static WeatherResponse parseStreaming(byte[] body) throws IOException {
+        return OpenWeatherJsonParser.parse(new ByteArrayInputStream(body), null);
+    }
+
+    private static Measurement measure(Parse parse) throws IOException, JSONException {
+        // Warm up, so that class loading and JIT aren't counted
+        for (int i = 0; i < ITERATIONS / 10; i++) parse.run();
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        for (int i = 0; i < ITERATIONS; i++) parse.run();
+        Measurement measurement = new Measurement();
+        measurement.objects = Debug.getThreadAllocCount() / ITERATIONS;
+        measurement.bytes = Debug.getThreadAllocSize() / ITERATIONS;
+        Debug.stopAllocCounting();
+
+        // Timed on its own, as counting allocations slows them down
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) parse.run();
+        measurement.millis = (System.nanoTime() - startNanos) / 1e6 / ITERATIONS;
+        return measurement;
+    }
+
+    // A response as the daily endpoint sends it, with the fields Weather News doesn't use
+    private static String createResponse(int days) {
+        long firstDay = WeatherNewsDateUtils.getEpochDayForToday()
+                * WeatherNewsDateUtils.DAY_IN_MILLIS / 1000;
+        StringBuilder json = new StringBuilder("{\"city\":{\"id\":1185241,\"name\":\"Dhaka\","
+                + "\"coord\":{\"lon\":90.4074,\"lat\":23.7104},\"country\":\"BD\","
+                + "\"population\":10356500,\"timezone\":21600},\"cod\":\"200\","
+                + "\"message\":0.0582,\"cnt\":").append(days).append(",\"list\":[");
+        for (int day = 0; day < days; day++) {
+            if (day > 0) json.append(',');
+            long dt = firstDay + day * 86400L;
+            json.append(String.format(Locale.US, "{\"dt\":%d,\"sunrise\":%d,\"sunset\":%d,"
+                            + "\"temp\":{\"day\":%.2f,\"min\":%.2f,\"max\":%.2f,\"night\":%.2f,"
+                            + "\"eve\":%.2f,\"morn\":%.2f},\"feels_like\":{\"day\":%.2f,"
+                            + "\"night\":%.2f,\"eve\":%.2f,\"morn\":%.2f},\"pressure\":%d,"
+                            + "\"humidity\":%d,\"weather\":[{\"id\":%d,\"main\":\"Rain\","
+                            + "\"description\":\"light rain\",\"icon\":\"10d\"}],"
+                            + "\"speed\":%.2f,\"deg\":%d,\"gust\":%.2f,\"clouds\":%d,"
+                            + "\"pop\":%.2f,\"rain\":%.2f}",
+                    dt + 6 * 3600, dt - 5 * 3600, dt + 7 * 3600,
+                    303.15 + day * 0.11, 299.37 + day * 0.07, 305.48 + day * 0.13,
+                    300.25, 302.61, 299.98, 308.12, 301.44, 305.09, 300.71,
+                    1004 + day % 6, 70 + day % 20, 500 + day % 4,
+                    3.61 + day * 0.05, 150 + day * 7, 6.12, 40 + day, 0.62, 1.37));
+        }
+        return json.append("]}").toString();
+    }
+
+    private interface Parse {
+        WeatherResponse run() throws IOException, JSONException;
+    }
+
+    private static class Measurement {
+        long objects;
+        long bytes;
+        double millis;
+    }
+}
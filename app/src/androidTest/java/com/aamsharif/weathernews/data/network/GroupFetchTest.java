@@ -0,0 +1,112 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.text.TextUtils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.aamsharif.weathernews.data.database.ForecastBatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Refreshes today's weather of saved locations through the group endpoint, served by a local
+ * server which answers with the current weather of every city id it is asked for, and counts the
+ * round trips.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GroupFetchTest {
+
+    private static final int FIRST_CITY_ID = 1185241;
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final HttpTransport mDefaultTransport = NetworkUtils.getHttpTransport();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(
+                        createGroupResponse(request.getRequestUrl().queryParameter("id")));
+            }
+        });
+        mServer.start();
+        NetworkUtils.setHttpTransport(new UrlConnectionTransport(5000, 5000, 10000));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        NetworkUtils.setHttpTransport(mDefaultTransport);
+        mServer.shutdown();
+    }
+
+    @Test
+    public void locationsTakeOneRequestPerGroup() throws IOException {
+        int requests = 0;
+        for (int locations : new int[]{1, 20, 21, 45}) {
+            Map<Integer, String> locationsByCityId = new LinkedHashMap<>();
+            for (int i = 0; i < locations; i++) {
+                locationsByCityId.put(FIRST_CITY_ID + i, "Location " + i);
+            }
+
+            int parsed = 0;
+            for (Map<Integer, String> group : NetworkUtils.splitIntoGroups(locationsByCityId)) {
+                ForecastBatch batch = NetworkUtils.readUncachedResponseFromHttpUrl(
+                        toServerUrl(NetworkUtils.buildGroupUrl(new ArrayList<>(group.keySet()))),
+                        RequestPriority.USER_INITIATED,
+                        in -> OpenWeatherJsonParser.parseGroup(in, group));
+                assertEquals(group.size(), batch.size());
+                for (String location : group.values()) {
+                    assertTrue(batch.containsLocation(location));
+                }
+                for (int row = 0; row < batch.size(); row++) {
+                    // The range of the day isn't known from the current weather
+                    assertTrue(Double.isNaN(batch.getMin(row)));
+                    assertTrue(Double.isNaN(batch.getMax(row)));
+                }
+                parsed += batch.size();
+            }
+
+            int expectedRequests = (locations + NetworkUtils.MAX_GROUP_SIZE - 1)
+                    / NetworkUtils.MAX_GROUP_SIZE;
+            requests += expectedRequests;
+            assertEquals(locations, parsed);
+            assertEquals(requests, mServer.getRequestCount());
+        }
+    }
+
+    // The same request, sent to the local server instead
+    private URL toServerUrl(URL url) {
+        return mServer.url(url.getPath()).newBuilder().encodedQuery(url.getQuery()).build().url();
+    }
+
+    private static String createGroupResponse(String cityIds) {
+        List<String> cities = new ArrayList<>();
+        for (String cityId : cityIds.split(",")) {
+            cities.add("{\"id\":" + cityId + ",\"weather\":[{\"id\":801,\"main\":\"Clouds\"}],"
+                    + "\"main\":{\"temp\":301.15,\"pressure\":1008,\"humidity\":74,"
+                    + "\"temp_min\":300.15,\"temp_max\":302.15},"
+                    + "\"wind\":{\"speed\":3.6,\"deg\":200}}");
+        }
+        return "{\"cnt\":" + cities.size() + ",\"list\":[" + TextUtils.join(",", cities)
+                + "]}";
+    }
+}
@@ -0,0 +1,140 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.aamsharif.weathernews.data.database.WeatherDao;
+import com.aamsharif.weathernews.data.database.WeatherEntry;
+import com.aamsharif.weathernews.data.database.WeatherNewsDatabase;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs a fetch over a metered network, then the fill once the network is unmetered, and checks
+ * the days each one stores and the bytes saved the policy reports.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HorizonPolicyTest {
+
+    private static final String PREFS_NAME = "horizon-policy-test";
+    private static final String LOCATION = "Dhaka";
+    private static final int TODAY = 20000;
+    private static final long SHORT_FETCH_BYTES = 3000;
+
+    private final SimulatedNetwork mNetwork = new SimulatedNetwork();
+    private SharedPreferences mStore;
+    private WeatherNewsDatabase mDatabase;
+    private WeatherDao mDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mStore = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mStore.edit().clear().commit();
+        mDatabase = Room.inMemoryDatabaseBuilder(context, WeatherNewsDatabase.class).build();
+        mDao = mDatabase.weatherDao();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+        mStore.edit().clear().commit();
+    }
+
+    @Test
+    public void meteredFetchKeepsTheStoredDaysUntilTheUnmeteredFill() {
+        HorizonPolicy policy = new HorizonPolicy(mNetwork, mStore);
+        mNetwork.metered = false;
+        mDao.mergeForecasts(LOCATION, createForecast(policy.getDaysToFetch(), 20), TODAY);
+        assertEquals(WeatherNetworkDataSource.NUM_DAYS, mDao.countAllFutureWeather(TODAY));
+
+        // The metered fetch only brings the first days, the rest stay as they were
+        mNetwork.metered = true;
+        int daysFetched = policy.getDaysToFetch();
+        assertEquals(HorizonPolicy.SHORT_HORIZON_DAYS, daysFetched);
+        mDao.mergeForecasts(LOCATION, createForecast(daysFetched, 25), TODAY);
+        policy.recordShortFetch(SHORT_FETCH_BYTES, daysFetched);
+
+        List<WeatherEntry> stored = mDao.getFutureWeatherEntries(TODAY);
+        assertEquals(WeatherNetworkDataSource.NUM_DAYS, stored.size());
+        for (WeatherEntry entry : stored) {
+            boolean fetched = entry.getEpochDay() < TODAY + daysFetched;
+            assertEquals(fetched ? 25 : 20, entry.getMax(), 0);
+        }
+
+        long expectedSaved = SHORT_FETCH_BYTES
+                * (WeatherNetworkDataSource.NUM_DAYS - daysFetched) / daysFetched;
+        long today = WeatherNewsDateUtils.getNormalizedUtcMsForToday();
+        assertEquals(Collections.singletonMap(today, expectedSaved), policy.getBytesSavedByDay());
+
+        // The next run is usually in a fresh process, which still reports the bytes saved
+        HorizonPolicy restarted = new HorizonPolicy(mNetwork, mStore);
+        assertEquals(Collections.singletonMap(today, expectedSaved), restarted.getBytesSavedByDay());
+
+        // The fill over the unmetered network brings the whole window, and saves nothing more
+        mNetwork.metered = false;
+        assertEquals(WeatherNetworkDataSource.NUM_DAYS, restarted.getDaysToFetch());
+        mDao.mergeForecasts(LOCATION, createForecast(restarted.getDaysToFetch(), 30), TODAY);
+        for (WeatherEntry entry : mDao.getFutureWeatherEntries(TODAY)) {
+            assertEquals(30, entry.getMax(), 0);
+        }
+        assertEquals(Collections.singletonMap(today, expectedSaved), restarted.getBytesSavedByDay());
+    }
+
+    @Test
+    public void shortFetchesOfTheSameDayAddUp() {
+        HorizonPolicy policy = new HorizonPolicy(mNetwork, mStore);
+        policy.recordShortFetch(SHORT_FETCH_BYTES, HorizonPolicy.SHORT_HORIZON_DAYS);
+        policy.recordShortFetch(SHORT_FETCH_BYTES, HorizonPolicy.SHORT_HORIZON_DAYS);
+
+        Map<Long, Long> bytesSavedByDay = new HorizonPolicy(mNetwork, mStore).getBytesSavedByDay();
+        assertEquals(1, bytesSavedByDay.size());
+        long saved = bytesSavedByDay.values().iterator().next();
+        assertEquals(2 * SHORT_FETCH_BYTES
+                * (WeatherNetworkDataSource.NUM_DAYS - HorizonPolicy.SHORT_HORIZON_DAYS)
+                / HorizonPolicy.SHORT_HORIZON_DAYS, saved);
+    }
+
+    private static WeatherEntry[] createForecast(int days, double max) {
+        WeatherEntry[] forecast = new WeatherEntry[days];
+        for (int i = 0; i < days; i++) {
+            forecast[i] = new WeatherEntry(800, TODAY + i, max - 8, max, 60, 1013, 3.5, 180);
+        }
+        return forecast;
+    }
+
+    /**
+     * A network which is metered or not as the test says, and never slow.
+     */
+    private static class SimulatedNetwork extends NetworkConditions {
+        boolean metered;
+
+        SimulatedNetwork() {
+            super(null);
+        }
+
+        @Override
+        boolean isMetered() {
+            return metered;
+        }
+
+        @Override
+        boolean isSlow() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.aamsharif.weathernews.data.network;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends requests to a local server which holds back the response headers of one endpoint and
+ * trickles out the body of another, and checks that the delays show up in the phase they were
+ * injected in.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NetworkTimingsTest {
+
+    private static final int REQUESTS = 5;
+    private static final long HEADERS_DELAY_MILLIS = 300;
+    // 64 KB in chunks of 8 KB every 50 ms, so about 400 ms
+    private static final int BODY_BYTES = 64 * 1024;
+    private static final int BODY_CHUNK_BYTES = 8 * 1024;
+    private static final long BODY_CHUNK_DELAY_MILLIS = 50;
+
+    // Histogram buckets end at 250 and 500 ms, so both delays land in the (250, 500] bucket
+    private static final long SLOW_BUCKET_FLOOR_MILLIS = 250;
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final HttpTransport mDefaultTransport = NetworkUtils.getHttpTransport();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.start();
+        // Without hedging, so that every request is timed on its own
+        NetworkUtils.setHttpTransport(new UrlConnectionTransport(5000, 5000, 10000));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        NetworkUtils.setHttpTransport(mDefaultTransport);
+        mServer.shutdown();
+    }
+
+    @Test
+    public void delaysShowUpInTheirPhase() throws IOException {
+        byte[] body = new byte[BODY_BYTES];
+        Arrays.fill(body, (byte) 'x');
+        for (int i = 0; i < REQUESTS; i++) {
+            mServer.enqueue(new MockResponse().setBody("{}")
+                    .setHeadersDelay(HEADERS_DELAY_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        for (int i = 0; i < REQUESTS; i++) {
+            request("/timing/slow-server");
+        }
+        for (int i = 0; i < REQUESTS; i++) {
+            mServer.enqueue(new MockResponse().setBody(new Buffer().write(body))
+                    .throttleBody(BODY_CHUNK_BYTES, BODY_CHUNK_DELAY_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        for (int i = 0; i < REQUESTS; i++) {
+            request("/timing/slow-transfer");
+        }
+
+        NetworkTimings.EndpointTimings slowServer =
+                NetworkTimings.getInstance().getEndpointTimings().get("/timing/slow-server");
+        NetworkTimings.EndpointTimings slowTransfer =
+                NetworkTimings.getInstance().getEndpointTimings().get("/timing/slow-transfer");
+        System.out.println(NetworkTimings.getInstance().getReport());
+
+        assertNotNull(slowServer);
+        assertEquals(REQUESTS, slowServer.getRequestCount());
+        assertTrue(slowServer.ttfb.getPercentile(50) > SLOW_BUCKET_FLOOR_MILLIS);
+        assertTrue(slowServer.download.getPercentile(95) < SLOW_BUCKET_FLOOR_MILLIS);
+
+        assertNotNull(slowTransfer);
+        assertEquals(REQUESTS, slowTransfer.getRequestCount());
+        assertEquals(BODY_BYTES, slowTransfer.getMeanResponseBytes());
+        assertTrue(slowTransfer.download.getPercentile(50) > SLOW_BUCKET_FLOOR_MILLIS);
+        assertTrue(slowTransfer.ttfb.getPercentile(95) < SLOW_BUCKET_FLOOR_MILLIS);
+
+        // Both endpoints are on the same host, whose lookup is estimated once at most
+        assertTrue(slowServer.dns.getCount() + slowTransfer.dns.getCount() <= 1);
+    }
+
+    private void request(String path) throws IOException {
+        NetworkUtils.readUncachedResponseFromHttpUrl(mServer.url(path).url(),
+                RequestPriority.USER_INITIATED, NetworkTimingsTest::drain);
+    }
+
+    private static Void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[BODY_CHUNK_BYTES];
+        while (in.read(buffer) != -1) {
+            // The body is only read to time its download
+        }
+        return null;
+    }
+}
@@ -10,43 +10,67 @@ import androidx.annotation.NonNull;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Global executor pools for the whole application.
  *
  * Grouping tasks like this avoids the effects of task starvation (e.g. disk reads don't wait behind
- * webservice requests).
+ * webservice requests). Database writes go through a single thread, reads through a small pool of
+ * their own, so a long write doesn't hold up the reads; the database runs in write-ahead logging
+ * mode, which lets them run side by side.
  */
 public class AppExecutors {
 
     // For Singleton instantiation
     private static final Object LOCK = new Object();
     private static AppExecutors sInstance;
+    // Enough readers for the screens and the workers without crowding out the other pools
+    private static final int DISK_READ_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
     private final Executor diskIO;
+    private final Executor diskRead;
     private final Executor mainThread;
     private final Executor networkIO;
+    private final ScheduledExecutorService scheduler;
 
-    private AppExecutors(Executor diskIO, Executor networkIO, Executor mainThread) {
+    private AppExecutors(Executor diskIO, Executor diskRead, Executor networkIO,
+                         Executor mainThread, ScheduledExecutorService scheduler) {
         this.diskIO = diskIO;
+        this.diskRead = diskRead;
         this.networkIO = networkIO;
         this.mainThread = mainThread;
+        this.scheduler = scheduler;
     }
 
     public static AppExecutors getInstance() {
         if (sInstance == null) {
             synchronized (LOCK) {
                 sInstance = new AppExecutors(Executors.newSingleThreadExecutor(),
+                        Executors.newFixedThreadPool(DISK_READ_THREADS),
                         Executors.newFixedThreadPool(3),
-                        new MainThreadExecutor());
+                        new MainThreadExecutor(),
+                        Executors.newSingleThreadScheduledExecutor());
             }
         }
         return sInstance;
     }
 
+    /**
+     * The single database writer. Anything which writes, or has to see its own writes in order,
+     * runs here.
+     */
     public Executor diskIO() {
         return diskIO;
     }
 
+    /**
+     * Bounded pool for database reads, also used by Room for the queries behind LiveData.
+     */
+    public Executor diskRead() {
+        return diskRead;
+    }
+
     public Executor mainThread() {
         return mainThread;
     }
@@ -55,6 +79,14 @@ public class AppExecutors {
         return networkIO;
     }
 
+    /**
+     * Runs delayed tasks such as deadlines and timers. Its single thread must only be used to
+     * hand work over to one of the other executors, never to do the work itself.
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
     private static class MainThreadExecutor implements Executor {
         private Handler mainThreadHandler = new Handler(Looper.getMainLooper());
 
@@ -7,48 +7,13 @@ import com.aamsharif.weathernews.R;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 
-public final class WeatherNewsPreferences {
-    /*
-     * In order to uniquely pinpoint the location on the map when we launch the map intent, we
-     * store the latitude and longitude. We will also use the latitude and longitude to create
-     * queries for the weather.
-     */
-    public static final String PREF_COORD_LAT = "coord_lat";
-    public static final String PREF_COORD_LONG = "coord_long";
+import java.util.ArrayList;
+import java.util.List;
 
-    /**
-     * Helper method to handle setting location details in Preferences (city name, latitude,
-     * longitude)
-     *
-     * When the location details are updated, the database should to be cleared.
-     *
-     * @param context  Context used to get the SharedPreferences
-     * @param lat      the latitude of the city
-     * @param lon      the longitude of the city
-     */
-    public static void setLocationDetails(Context context, double lat, double lon) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sp.edit();
-
-        editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
-        editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
-        editor.apply();
-    }
-
-    /**
-     * Resets the location coordinates stores in SharedPreferences.
-     *
-     * @param context Context used to get the SharedPreferences
-     */
-    public static void resetLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = sp.edit();
-
-        editor.remove(PREF_COORD_LAT);
-        editor.remove(PREF_COORD_LONG);
-        editor.apply();
-    }
+public final class WeatherNewsPreferences {
+    private static final String SAVED_LOCATIONS_SEPARATOR = ";";
 
     /**
      * Returns the location currently set in Preferences. The default location this method
@@ -67,6 +32,28 @@ public final class WeatherNewsPreferences {
         return sp.getString(keyForLocation, defaultLocation);
     }
 
+    /**
+     * Returns the locations the user keeps track of besides the preferred location. They are
+     * stored as a single string, separated by semicolons, since location queries such as
+     * "Dhaka, BD" already contain commas.
+     *
+     * @param context Context used to access SharedPreferences
+     * @return The saved locations, in the order the user entered them
+     */
+    public static List<String> getSavedLocations(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+
+        String keyForSavedLocations = context.getString(R.string.pref_saved_locations_key);
+        String savedLocations = sp.getString(keyForSavedLocations, "");
+
+        List<String> locations = new ArrayList<>();
+        for (String location : TextUtils.split(savedLocations, SAVED_LOCATIONS_SEPARATOR)) {
+            String trimmed = location.trim();
+            if (!trimmed.isEmpty() && !locations.contains(trimmed)) locations.add(trimmed);
+        }
+        return locations;
+    }
+
     /**
      * Returns true if the user has selected metric temperature display.
      *
@@ -88,47 +75,6 @@ public final class WeatherNewsPreferences {
         return userPrefersMetric;
     }
 
-    /**
-     * Returns the location coordinates associated with the location. Note that there is a
-     * possibility that these coordinates may not be set, which results in (0,0) being returned.
-     * Interestingly, (0,0) is in the middle of the ocean off the west coast of Africa.
-     *
-     * @param context used to access SharedPreferences
-     * @return an array containing the two coordinate values for the user's preferred location
-     */
-    public static double[] getLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        double[] preferredCoordinates = new double[2];
-
-        // This is a hack we have to resort to since you can't store doubles in SharedPreferences
-        preferredCoordinates[0] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
-
-        return preferredCoordinates;
-    }
-
-    /**
-     * Returns true if the latitude and longitude values are available.
-     *
-     * @param context used to get the SharedPreferences
-     * @return true if lat/long are saved in SharedPreferences
-     */
-    public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
-
-        boolean spContainBothLatitudeAndLongitude = false;
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
-        }
-        return spContainBothLatitudeAndLongitude;
-    }
-
     /**
      * Returns true if the user prefers to see notifications from Weather News, false otherwise. This
      * preference can be changed by the user within the SettingsFragment.
@@ -4,18 +4,41 @@ package com.aamsharif.weathernews.data;
  * Created by A. A. M. Sharif on 29-Jan-19.
  */
 
+import androidx.concurrent.futures.ResolvableFuture;
 import androidx.lifecycle.LiveData;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.aamsharif.weathernews.AppExecutors;
+import com.aamsharif.weathernews.data.database.ForecastBatch;
+import com.aamsharif.weathernews.data.database.HistoryDao;
+import com.aamsharif.weathernews.data.database.HistoryWeatherEntry;
+import com.aamsharif.weathernews.data.database.HourlyWeatherDao;
+import com.aamsharif.weathernews.data.database.HourlyWeatherEntry;
+import com.aamsharif.weathernews.data.database.HourlyWeatherPoint;
 import com.aamsharif.weathernews.data.database.ListWeatherEntry;
+import com.aamsharif.weathernews.data.database.LocationWeatherDao;
+import com.aamsharif.weathernews.data.database.LocationWeatherEntry;
+import com.aamsharif.weathernews.data.database.MonthlyWeatherEntry;
 import com.aamsharif.weathernews.data.database.WeatherDao;
 import com.aamsharif.weathernews.data.database.WeatherEntry;
+import com.aamsharif.weathernews.data.database.WeeklyWeatherEntry;
+import com.aamsharif.weathernews.data.network.SyncScheduler;
 import com.aamsharif.weathernews.data.network.WeatherNetworkDataSource;
 import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handles data operations in Weather News. Acts as a mediator between {@link WeatherNetworkDataSource}
@@ -24,69 +47,166 @@ import java.util.List;
 public class WeatherNewsRepository {
     private static final String LOG_TAG = WeatherNewsRepository.class.getSimpleName();
 
+    // Length of a step of the hourly forecast
+    private static final long HOURLY_STEP_MILLIS = TimeUnit.HOURS.toMillis(3);
+    // Number of past days kept in the archive; the weekly and monthly aggregates are kept for good
+    private static final int HISTORY_RETENTION_DAYS = 2 * 365;
+    // Paging of the archive. A fling covers a few screens at a time, so several pages are loaded
+    // ahead; pages far enough behind are dropped again, so however long the archive is only about
+    // HISTORY_MAX_LOADED_DAYS days are held.
+    private static final int HISTORY_PAGE_SIZE = 30;
+    private static final int HISTORY_PREFETCH_DISTANCE = 3 * HISTORY_PAGE_SIZE;
+    private static final int HISTORY_MAX_LOADED_DAYS = 10 * HISTORY_PAGE_SIZE;
+
     // For Singleton instantiation
     private static final Object LOCK = new Object();
     private static WeatherNewsRepository sInstance;
     private final WeatherDao mWeatherDao;
+    private final LocationWeatherDao mLocationWeatherDao;
+    private final HourlyWeatherDao mHourlyWeatherDao;
+    private final HistoryDao mHistoryDao;
     private final WeatherNetworkDataSource mWeatherNetworkDataSource;
     private final AppExecutors mExecutors;
     private static boolean sInitialized = false;
 
-    private WeatherNewsRepository(WeatherDao weatherDao,
+    // Days of the forecast being downloaded which have been parsed but not written yet
+    private final Queue<WeatherEntry> mParsedEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mPublishPending = new AtomicBoolean();
+    // Whether the days being parsed are written as they arrive, the location they are of, and
+    // when the first one was parsed. Only used on the disk thread.
+    private boolean mPublishingProgressively;
+    private String mPublishingLocation;
+    private long mFirstEntryParsedAtMillis;
+    // The future days stored before the first days of the download were written, and the location
+    // they are of, to put back if the download fails. Null while nothing was written. Only used
+    // on the disk thread.
+    private List<WeatherEntry> mReplacedForecast;
+    private String mReplacedLocation;
+
+    private WeatherNewsRepository(WeatherDao weatherDao, LocationWeatherDao locationWeatherDao,
+                               HourlyWeatherDao hourlyWeatherDao, HistoryDao historyDao,
                                WeatherNetworkDataSource weatherNetworkDataSource,
                                AppExecutors executors) {
         mWeatherDao = weatherDao;
+        mLocationWeatherDao = locationWeatherDao;
+        mHourlyWeatherDao = hourlyWeatherDao;
+        mHistoryDao = historyDao;
         mWeatherNetworkDataSource = weatherNetworkDataSource;
         mExecutors = executors;
 
-        LiveData<WeatherEntry[]> networkData = mWeatherNetworkDataSource.getCurrentWeatherForecasts();
-        networkData.observeForever(newForecastsFromNetwork -> {
-            mExecutors.diskIO().execute(() -> {
-                // Deletes old historical data because we don't need to keep multiple days' data
-                mWeatherDao.deleteAllData();
-                Log.d(LOG_TAG, "Old weather deleted");
-                // Insert our new weather data into Weather News's database
-                mWeatherDao.bulkInsert(newForecastsFromNetwork);
-                Log.d(LOG_TAG, "New values inserted");
-
-                Date today = WeatherNewsDateUtils.getNormalizedUtcDateForToday();
-                WeatherEntry weatherEntry = mWeatherDao.getWeatherEntryByDate(today);
-
-                int weatherId = weatherEntry.getWeatherIconId();
-                double high = weatherEntry.getMax();
-                double low = weatherEntry.getMin();
-                long todaysTimestamp = weatherEntry.getDate().getTime();
+        mWeatherNetworkDataSource.setDownloadedForecastsHandler(this::persistForecasts);
+        mWeatherNetworkDataSource.setLocationForecastsHandler(this::persistLocationForecasts);
+        mWeatherNetworkDataSource.setHourlyForecastsHandler(this::persistHourlyForecasts);
+        mWeatherNetworkDataSource.setEntryParsedListener(
+                new WeatherNetworkDataSource.ForecastEntryParsedListener() {
+                    @Override
+                    public void onForecastEntryParsed(String location, int dayIndex,
+                                                      WeatherEntry weatherEntry) {
+                        WeatherNewsRepository.this.onForecastEntryParsed(location, dayIndex,
+                                weatherEntry);
+                    }
 
-                mWeatherNetworkDataSource.notifyUserIfNeeded(weatherId, high, low, todaysTimestamp);
-            });
-        });
+                    @Override
+                    public void onForecastDownloadFailed(String location) {
+                        WeatherNewsRepository.this.onForecastDownloadFailed();
+                    }
+                });
     }
 
     public synchronized static WeatherNewsRepository getInstance(
-            WeatherDao weatherDao, WeatherNetworkDataSource weatherNetworkDataSource,
-            AppExecutors executors) {
+            WeatherDao weatherDao, LocationWeatherDao locationWeatherDao,
+            HourlyWeatherDao hourlyWeatherDao, HistoryDao historyDao,
+            WeatherNetworkDataSource weatherNetworkDataSource, AppExecutors executors) {
         Log.d(LOG_TAG, "Getting the repository");
         if (sInstance == null) {
             synchronized (LOCK) {
-                sInstance = new WeatherNewsRepository(weatherDao, weatherNetworkDataSource,
-                        executors);
+                sInstance = new WeatherNewsRepository(weatherDao, locationWeatherDao,
+                        hourlyWeatherDao, historyDao, weatherNetworkDataSource, executors);
                 Log.d(LOG_TAG, "Made new repository");
             }
         }
         return sInstance;
     }
 
-    public LiveData<WeatherEntry> getWeatherbyDate(Date date){
+    public LiveData<WeatherEntry> getWeatherByDay(int epochDay){
         initializeData();
-        return mWeatherDao.getWeatherByDate(date);
+        return mWeatherDao.getWeatherByDay(epochDay);
     }
 
     public LiveData<List<ListWeatherEntry>> getCurrentWeatherForecasts() {
         initializeData();
-        Date today = WeatherNewsDateUtils.getNormalizedUtcDateForToday();
+        int today = WeatherNewsDateUtils.getEpochDayForToday();
         return mWeatherDao.getCurrentWeatherForecasts(today);
     }
 
+    public LiveData<List<LocationWeatherEntry>> getLocationForecasts(String location) {
+        initializeData();
+        Date today = WeatherNewsDateUtils.getNormalizedUtcDateForToday();
+        return mLocationWeatherDao.getForecastsForLocation(location, today);
+    }
+
+    /**
+     * @param location The location, as the user entered it
+     * @param from     First day of the range, in days since the epoch in UTC
+     * @param to       Day after the range
+     * @return The archived weather of the location over the range, oldest first
+     */
+    public LiveData<List<HistoryWeatherEntry>> getHistory(String location, int from, int to) {
+        initializeData();
+        return mHistoryDao.getHistory(location, from, to);
+    }
+
+    /**
+     * @param location The location, as the user entered it
+     * @return The archived weather of the location, newest first, loaded a page at a time on the
+     * read pool as the list is scrolled. Days not loaded yet are null placeholders, so the list
+     * has its full length from the start.
+     */
+    public LiveData<PagedList<HistoryWeatherEntry>> getPagedHistory(String location) {
+        initializeData();
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(HISTORY_PAGE_SIZE)
+                .setPrefetchDistance(HISTORY_PREFETCH_DISTANCE)
+                .setInitialLoadSizeHint(2 * HISTORY_PAGE_SIZE)
+                .setEnablePlaceholders(true)
+                .setMaxSize(HISTORY_MAX_LOADED_DAYS)
+                .build();
+        return new LivePagedListBuilder<>(mHistoryDao.getPagedHistory(location), config)
+                .setFetchExecutor(mExecutors.diskRead())
+                .build();
+    }
+
+    /**
+     * @param location The location, as the user entered it
+     * @param epochDay A day of the week, in days since the epoch in UTC
+     * @return The aggregate of the archived weather of the location over the week of the day
+     */
+    public LiveData<WeeklyWeatherEntry> getWeeklyWeather(String location, int epochDay) {
+        initializeData();
+        return mHistoryDao.getWeeklyWeather(location, WeeklyWeatherEntry.weekOf(epochDay));
+    }
+
+    /**
+     * @param location The location, as the user entered it
+     * @param epochDay A day of the month, in days since the epoch in UTC
+     * @return The aggregate of the archived weather of the location over the month of the day
+     */
+    public LiveData<MonthlyWeatherEntry> getMonthlyWeather(String location, int epochDay) {
+        initializeData();
+        return mHistoryDao.getMonthlyWeather(location, MonthlyWeatherEntry.monthOf(epochDay));
+    }
+
+    /**
+     * @param location The location, as the user entered it
+     * @param from     Start of the range, in UTC milliseconds
+     * @param to       End of the range, exclusive, in UTC milliseconds
+     * @return The 3-hourly forecast of the location over the range, oldest first
+     */
+    public LiveData<List<HourlyWeatherPoint>> getHourlyForecast(String location, long from, long to) {
+        initializeData();
+        return mHourlyWeatherDao.getPoints(location, from, to);
+    }
+
     /**
      * Creates periodic sync tasks and checks to see if an immediate sync is required. If an
      * immediate sync is required, this method will take care of making sure that sync occurs.
@@ -98,8 +218,9 @@ public class WeatherNewsRepository {
         sInitialized = true;
 
         mWeatherNetworkDataSource.scheduleRecurringFetchWeatherSync();
+        mWeatherNetworkDataSource.scheduleHistoryCompaction();
 
-        mExecutors.diskIO().execute(() -> {
+        mExecutors.diskRead().execute(() -> {
             if (isFetchNeeded()) startFetchWeatherService();
         });
     }
@@ -114,11 +235,256 @@ public class WeatherNewsRepository {
      * @return Whether a fetch is needed
      */
     private boolean isFetchNeeded() {
-        Date today = WeatherNewsDateUtils.getNormalizedUtcDateForToday();
+        int today = WeatherNewsDateUtils.getEpochDayForToday();
         int count = mWeatherDao.countAllFutureWeather(today);
         return (count < WeatherNetworkDataSource.NUM_DAYS);
     }
 
+    /**
+     * Merges the forecasts downloaded by {@link WeatherNetworkDataSource} into the stored weather
+     * and notifies the user of today's weather if needed. Stored days the download doesn't cover
+     * are kept as long as they are of the same location. A forecast identical to the last one
+     * merged isn't written at all.
+     *
+     * @param location                The location the forecasts are of
+     * @param newForecastsFromNetwork The downloaded forecasts
+     * @return Future completed once the forecasts are written and the notification is handled
+     */
+    private ListenableFuture<Void> persistForecasts(String location,
+                                                    WeatherEntry[] newForecastsFromNetwork) {
+        ResolvableFuture<Void> persisted = ResolvableFuture.create();
+        mExecutors.diskIO().execute(() -> {
+            try {
+                // The days already published are part of the same forecast, they don't tell how
+                // much it changed
+                boolean publishedProgressively = mPublishingProgressively;
+                mPublishingProgressively = false;
+                mReplacedForecast = null;
+
+                int today = WeatherNewsDateUtils.getEpochDayForToday();
+                // The days which have passed are archived before the merge drops them
+                archivePastWeather(today);
+
+                if (mWeatherDao.isSameAsLastForecast(location, newForecastsFromNetwork)) {
+                    // Writing it again would only wake up every observer of the weather table
+                    mWeatherNetworkDataSource.recordSkippedWrite();
+                    Log.d(LOG_TAG, "Forecast unchanged, write skipped");
+                } else {
+                    // Keep the forecast being replaced to tell how much the new one changed it. The
+                    // forecast of another location tells nothing about that.
+                    List<WeatherEntry> storedForecasts = publishedProgressively
+                            || !location.equals(mWeatherDao.getForecastLocation())
+                            ? Collections.<WeatherEntry>emptyList()
+                            : mWeatherDao.getFutureWeatherEntries(today);
+
+                    // Writes only the days the download changed and deletes old historical
+                    // data, because we don't need to keep multiple days' data
+                    WeatherDao.MergeResult merged =
+                            mWeatherDao.mergeForecasts(location, newForecastsFromNetwork, today);
+                    Log.d(LOG_TAG, "New values merged: " + merged);
+
+                    if (!storedForecasts.isEmpty()) {
+                        mWeatherNetworkDataSource.recordForecastChange(SyncScheduler
+                                .getForecastChangeScore(storedForecasts, newForecastsFromNetwork));
+                    }
+                }
+
+                WeatherEntry weatherEntry = mWeatherDao.getWeatherEntryByDay(today);
+
+                if (weatherEntry != null) {
+                    int weatherId = weatherEntry.getWeatherIconId();
+                    double high = weatherEntry.getMax();
+                    double low = weatherEntry.getMin();
+                    long todaysTimestamp = weatherEntry.getDateMillis();
+
+                    mWeatherNetworkDataSource.notifyUserIfNeeded(weatherId, high, low, todaysTimestamp);
+                }
+                persisted.set(null);
+            } catch (RuntimeException e) {
+                persisted.setException(e);
+            }
+        });
+        return persisted;
+    }
+
+    /**
+     * Archives the stored days which have passed, along with the weekly and monthly aggregates.
+     * They are archived under the location stored with them, as the preferred location may have
+     * changed since they were written. Runs on the disk thread, before any write which could drop
+     * them. Days archived already are skipped, so a merge which fails afterwards leaves nothing
+     * to undo.
+     *
+     * @param today Today, in days since the epoch in UTC
+     */
+    private void archivePastWeather(int today) {
+        String location = mWeatherDao.getForecastLocation();
+        // Rows stored before their location was recorded can't be told apart
+        if (location == null) return;
+        List<HistoryWeatherEntry> pastDays = new ArrayList<>();
+        for (WeatherEntry entry : mWeatherDao.getPastWeatherEntries(today)) {
+            pastDays.add(new HistoryWeatherEntry(location, entry));
+        }
+        if (pastDays.isEmpty()) return;
+        int archived = mHistoryDao.archive(pastDays);
+        Log.d(LOG_TAG, archived + " past days archived");
+    }
+
+    /**
+     * Deletes the archived days older than the retention period. The weekly and monthly
+     * aggregates are kept.
+     *
+     * @return Future of the number of days deleted
+     */
+    public ListenableFuture<Integer> compactHistory() {
+        ResolvableFuture<Integer> compacted = ResolvableFuture.create();
+        mExecutors.diskIO().execute(() -> {
+            try {
+                int keepFrom = WeatherNewsDateUtils.getEpochDayForToday() - HISTORY_RETENTION_DAYS;
+                int deleted = mHistoryDao.compact(keepFrom);
+                Log.d(LOG_TAG, deleted + " archived days compacted");
+                compacted.set(deleted);
+            } catch (RuntimeException e) {
+                compacted.setException(e);
+            }
+        });
+        return compacted;
+    }
+
+    /**
+     * Called on the network thread for every day of the preferred location's forecast as soon as
+     * it has been parsed, today first. If there is no weather for today to show, e.g. on a fresh
+     * install, the days are written as they arrive, so that today's row shows up long before the
+     * whole forecast has been downloaded. The rest of the list fills in as the other days follow.
+     * The whole forecast is then merged as usual by {@link #persistForecasts(String, WeatherEntry[])}.
+     *
+     * @param location     The location the forecast is of
+     * @param dayIndex     Index of the day in the forecast, 0 for today
+     * @param weatherEntry The forecast of the day
+     */
+    private void onForecastEntryParsed(String location, int dayIndex, WeatherEntry weatherEntry) {
+        if (dayIndex == 0) {
+            // A new download, or a new attempt of the same one
+            long parsedAtMillis = SystemClock.elapsedRealtime();
+            mParsedEntries.clear();
+            mExecutors.diskIO().execute(() -> {
+                int today = WeatherNewsDateUtils.getEpochDayForToday();
+                mPublishingProgressively = mWeatherDao.getWeatherEntryByDay(today) == null;
+                mPublishingLocation = location;
+                mFirstEntryParsedAtMillis = parsedAtMillis;
+                mReplacedForecast = null;
+            });
+        }
+        mParsedEntries.add(weatherEntry);
+        // Whatever has been parsed by the time the disk thread gets to it is written in one go
+        if (mPublishPending.compareAndSet(false, true)) {
+            mExecutors.diskIO().execute(this::publishParsedEntries);
+        }
+    }
+
+    private void publishParsedEntries() {
+        mPublishPending.set(false);
+        List<WeatherEntry> entries = new ArrayList<>();
+        WeatherEntry weatherEntry;
+        while ((weatherEntry = mParsedEntries.poll()) != null) entries.add(weatherEntry);
+        if (!mPublishingProgressively || entries.isEmpty()) return;
+
+        // Rows of another location are dropped along with the first days written, so the days
+        // which have passed are archived first
+        int today = WeatherNewsDateUtils.getEpochDayForToday();
+        archivePastWeather(today);
+        if (mReplacedForecast == null) {
+            mReplacedLocation = mWeatherDao.getForecastLocation();
+            mReplacedForecast = mWeatherDao.getFutureWeatherEntries(today);
+        }
+        mWeatherDao.publishForecastEntries(mPublishingLocation,
+                entries.toArray(new WeatherEntry[0]));
+        if (mFirstEntryParsedAtMillis != 0) {
+            Log.d(LOG_TAG, "First row written " + (SystemClock.elapsedRealtime()
+                    - mFirstEntryParsedAtMillis) + " ms after it was parsed");
+            mFirstEntryParsedAtMillis = 0;
+        }
+    }
+
+    /**
+     * Called on the network thread when a download whose days were passed to
+     * {@link #onForecastEntryParsed(String, int, WeatherEntry)} fails. The days written so far are
+     * replaced with the ones stored before, so the table never shows part of a forecast next to an
+     * older one, and the next forecast is merged whole.
+     */
+    private void onForecastDownloadFailed() {
+        mParsedEntries.clear();
+        mExecutors.diskIO().execute(() -> {
+            mPublishingProgressively = false;
+            if (mReplacedForecast == null) return;
+            mWeatherDao.restoreForecast(mReplacedLocation, mReplacedForecast,
+                    WeatherNewsDateUtils.getEpochDayForToday());
+            Log.d(LOG_TAG, "Download failed, " + mReplacedForecast.size()
+                    + " stored days put back");
+            mReplacedForecast = null;
+        });
+    }
+
+    /**
+     * Merges the new forecasts of the refreshed saved locations into the stored ones, all in one
+     * transaction. The rows are bound straight from the columns of the batch.
+     *
+     * @param newForecastsFromNetwork The new forecasts of all the refreshed locations
+     * @return Future completed once the forecasts are written
+     */
+    private ListenableFuture<Void> persistLocationForecasts(ForecastBatch newForecastsFromNetwork) {
+        ResolvableFuture<Void> persisted = ResolvableFuture.create();
+        mExecutors.diskIO().execute(() -> {
+            try {
+                long startNanos = System.nanoTime();
+                Date today = WeatherNewsDateUtils.getNormalizedUtcDateForToday();
+                List<HistoryWeatherEntry> pastDays = new ArrayList<>();
+                for (LocationWeatherEntry entry : mLocationWeatherDao.getPastForecasts(
+                        newForecastsFromNetwork.getLocations(), today)) {
+                    pastDays.add(new HistoryWeatherEntry(entry));
+                }
+                if (!pastDays.isEmpty()) mHistoryDao.archive(pastDays);
+                mLocationWeatherDao.mergeBatch(newForecastsFromNetwork, today);
+                long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+                int rows = newForecastsFromNetwork.size();
+                Log.d(LOG_TAG, rows + " values inserted for "
+                        + newForecastsFromNetwork.getLocations().size() + " saved locations in "
+                        + elapsedMicros + " us, "
+                        + (elapsedMicros == 0 ? rows : rows * 1000000L / elapsedMicros)
+                        + " rows/s");
+                persisted.set(null);
+            } catch (RuntimeException e) {
+                persisted.setException(e);
+            }
+        });
+        return persisted;
+    }
+
+    /**
+     * Merges the downloaded 3-hourly forecast of a location into the stored one. Steps which
+     * have already passed are deleted along the way.
+     *
+     * @param location                The location the forecast was downloaded for
+     * @param newForecastsFromNetwork The downloaded forecast
+     * @return Future completed once the forecast is written
+     */
+    private ListenableFuture<Void> persistHourlyForecasts(
+            String location, List<HourlyWeatherEntry> newForecastsFromNetwork) {
+        ResolvableFuture<Void> persisted = ResolvableFuture.create();
+        mExecutors.diskIO().execute(() -> {
+            try {
+                // The step under way is kept until it has passed
+                long keepFrom = System.currentTimeMillis() - HOURLY_STEP_MILLIS;
+                mHourlyWeatherDao.mergeForecast(location, newForecastsFromNetwork, keepFrom);
+                Log.d(LOG_TAG, newForecastsFromNetwork.size() + " hourly values merged for "
+                        + location);
+                persisted.set(null);
+            } catch (RuntimeException e) {
+                persisted.setException(e);
+            }
+        });
+        return persisted;
+    }
+
     /**
      * Network related operation
      */
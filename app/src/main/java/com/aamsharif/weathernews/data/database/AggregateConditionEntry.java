@@ -0,0 +1,54 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+// The number of archived days of a period which had a condition, from which the dominant
+// condition of the period's aggregate is kept
+@Entity(tableName = "aggregate_condition",
+        primaryKeys = {"location", "periodType", "period", "conditionId"})
+public class AggregateConditionEntry {
+
+    // The tables the period is of
+    static final String WEEK = "week";
+    static final String MONTH = "month";
+
+    @NonNull
+    private String location;
+    @NonNull
+    private String periodType;
+    private int period;
+    private int conditionId;
+    private int days;
+
+    // to be used by Room
+    public AggregateConditionEntry(@NonNull String location, @NonNull String periodType, int period, int conditionId, int days) {
+        this.location = location;
+        this.periodType = periodType;
+        this.period = period;
+        this.conditionId = conditionId;
+        this.days = days;
+    }
+
+    @NonNull
+    public String getLocation() {
+        return location;
+    }
+
+    @NonNull
+    public String getPeriodType() {
+        return periodType;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public int getConditionId() {
+        return conditionId;
+    }
+
+    public int getDays() {
+        return days;
+    }
+}
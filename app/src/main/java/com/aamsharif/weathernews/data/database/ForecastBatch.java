@@ -0,0 +1,181 @@
+package com.aamsharif.weathernews.data.database;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Forecast days of any number of locations, kept column by column in primitive arrays rather than
+ * as one {@link WeatherEntry} per day. The parser appends to it directly and
+ * {@link LocationWeatherDao#mergeBatch(ForecastBatch, java.util.Date)} binds straight from it, so
+ * a bulk refresh allocates nothing per day once the arrays have grown to size.
+ *
+ * The values are kept as the doubles the parser read. Floats would halve the size of those
+ * columns, but a float widened to a double when bound is no longer the value as sent, 21.37f
+ * becoming 21.3700008, and the rows would differ from the ones the single-row path stores.
+ *
+ * Not thread safe.
+ */
+public final class ForecastBatch {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int mSize;
+    // The location of each row. Rows of the same location share the same String.
+    private String[] mLocation;
+    // Days since the epoch, in UTC
+    private int[] mEpochDay;
+    // Weather condition code, see WeatherUtils
+    private int[] mConditionId;
+    // NaN if the range of the day isn't known, e.g. for current conditions, in which case the
+    // stored range is kept
+    private double[] mMin;
+    private double[] mMax;
+    private short[] mHumidity;
+    private double[] mPressure;
+    private double[] mWind;
+    private double[] mDegrees;
+
+    public ForecastBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of rows to make room for up front
+     */
+    public ForecastBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        mLocation = new String[capacity];
+        mEpochDay = new int[capacity];
+        mConditionId = new int[capacity];
+        mMin = new double[capacity];
+        mMax = new double[capacity];
+        mHumidity = new short[capacity];
+        mPressure = new double[capacity];
+        mWind = new double[capacity];
+        mDegrees = new double[capacity];
+    }
+
+    /**
+     * Appends the forecast of one day of a location.
+     */
+    public void add(String location, int epochDay, int conditionId, double min, double max,
+                    short humidity, double pressure, double wind, double degrees) {
+        if (mSize == mEpochDay.length) grow(mSize * 2);
+        mLocation[mSize] = location;
+        mEpochDay[mSize] = epochDay;
+        mConditionId[mSize] = conditionId;
+        mMin[mSize] = min;
+        mMax[mSize] = max;
+        mHumidity[mSize] = humidity;
+        mPressure[mSize] = pressure;
+        mWind[mSize] = wind;
+        mDegrees[mSize] = degrees;
+        mSize++;
+    }
+
+    /**
+     * Appends every row of another batch.
+     */
+    public void addAll(ForecastBatch other) {
+        if (mSize + other.mSize > mEpochDay.length) {
+            grow(Math.max(mSize + other.mSize, mSize * 2));
+        }
+        System.arraycopy(other.mLocation, 0, mLocation, mSize, other.mSize);
+        System.arraycopy(other.mEpochDay, 0, mEpochDay, mSize, other.mSize);
+        System.arraycopy(other.mConditionId, 0, mConditionId, mSize, other.mSize);
+        System.arraycopy(other.mMin, 0, mMin, mSize, other.mSize);
+        System.arraycopy(other.mMax, 0, mMax, mSize, other.mSize);
+        System.arraycopy(other.mHumidity, 0, mHumidity, mSize, other.mSize);
+        System.arraycopy(other.mPressure, 0, mPressure, mSize, other.mSize);
+        System.arraycopy(other.mWind, 0, mWind, mSize, other.mSize);
+        System.arraycopy(other.mDegrees, 0, mDegrees, mSize, other.mSize);
+        mSize += other.mSize;
+    }
+
+    private void grow(int capacity) {
+        mLocation = Arrays.copyOf(mLocation, capacity);
+        mEpochDay = Arrays.copyOf(mEpochDay, capacity);
+        mConditionId = Arrays.copyOf(mConditionId, capacity);
+        mMin = Arrays.copyOf(mMin, capacity);
+        mMax = Arrays.copyOf(mMax, capacity);
+        mHumidity = Arrays.copyOf(mHumidity, capacity);
+        mPressure = Arrays.copyOf(mPressure, capacity);
+        mWind = Arrays.copyOf(mWind, capacity);
+        mDegrees = Arrays.copyOf(mDegrees, capacity);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return Whether any row belongs to the location
+     */
+    public boolean containsLocation(String location) {
+        for (int row = 0; row < mSize; row++) {
+            if (mLocation[row].equals(location)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The distinct locations of the rows, in the order they first appear
+     */
+    public List<String> getLocations() {
+        List<String> locations = new ArrayList<>();
+        for (int row = 0; row < mSize; row++) {
+            if (!locations.contains(mLocation[row])) locations.add(mLocation[row]);
+        }
+        return locations;
+    }
+
+    public String getLocation(int row) {
+        return mLocation[row];
+    }
+
+    public int getEpochDay(int row) {
+        return mEpochDay[row];
+    }
+
+    /**
+     * @return The day of the row as a normalized UTC timestamp, as the date columns store it
+     */
+    public long getDateMillis(int row) {
+        return mEpochDay[row] * WeatherNewsDateUtils.DAY_IN_MILLIS;
+    }
+
+    public int getConditionId(int row) {
+        return mConditionId[row];
+    }
+
+    public double getMin(int row) {
+        return mMin[row];
+    }
+
+    public double getMax(int row) {
+        return mMax[row];
+    }
+
+    public short getHumidity(int row) {
+        return mHumidity[row];
+    }
+
+    public double getPressure(int row) {
+        return mPressure[row];
+    }
+
+    public double getWind(int row) {
+        return mWind[row];
+    }
+
+    public double getDegrees(int row) {
+        return mDegrees[row];
+    }
+}
@@ -0,0 +1,87 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// The location the rows of a table are of, and the content hash of the last forecast written to
+// it, so that an identical forecast isn't written again
+@Entity(tableName = "forecast_hash")
+public class ForecastHashEntry {
+
+    // The forecast of the weather table
+    static final String WEATHER_FORECAST = "weather";
+
+    // 64 bit FNV-1a
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @PrimaryKey
+    @NonNull
+    private String forecast;
+    // Every row of the table is of this location
+    @NonNull
+    private String location;
+    // Null while the rows aren't exactly one forecast which was written whole
+    @Nullable
+    private Long contentHash;
+
+    /**
+     * @param forecast    The forecast the hash is of, e.g. {@link #WEATHER_FORECAST}
+     * @param location    The location the rows of the table are of
+     * @param contentHash The hash, see {@link #computeContentHash(WeatherEntry[])}
+     */
+    public ForecastHashEntry(@NonNull String forecast, @NonNull String location,
+                             @Nullable Long contentHash) {
+        this.forecast = forecast;
+        this.location = location;
+        this.contentHash = contentHash;
+    }
+
+    @NonNull
+    public String getForecast() {
+        return forecast;
+    }
+
+    @NonNull
+    public String getLocation() {
+        return location;
+    }
+
+    @Nullable
+    public Long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Hashes every stored field of every day, in the order given, which is by date. The same
+     * forecast always gets the same hash, across processes and devices.
+     *
+     * @param weather The forecast
+     * @return The hash of the forecast
+     */
+    public static long computeContentHash(WeatherEntry[] weather) {
+        long hash = FNV_OFFSET_BASIS;
+        for (WeatherEntry weatherEntry : weather) {
+            hash = mix(hash, weatherEntry.getEpochDay());
+            hash = mix(hash, weatherEntry.getWeatherIconId());
+            hash = mix(hash, Double.doubleToLongBits(weatherEntry.getMin()));
+            hash = mix(hash, Double.doubleToLongBits(weatherEntry.getMax()));
+            hash = mix(hash, Double.doubleToLongBits(weatherEntry.getHumidity()));
+            hash = mix(hash, Double.doubleToLongBits(weatherEntry.getPressure()));
+            hash = mix(hash, Double.doubleToLongBits(weatherEntry.getWind()));
+            hash = mix(hash, Double.doubleToLongBits(weatherEntry.getDegrees()));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xff;
+            hash *= FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,115 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class HistoryDao {
+
+    // A day which is archived already is left as it is
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract long insertDay(HistoryWeatherEntry day);
+
+    @Query("SELECT * FROM weekly_weather WHERE location = :location AND period = :week")
+    abstract WeeklyWeatherEntry getWeek(String location, int week);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void putWeek(WeeklyWeatherEntry week);
+
+    @Query("SELECT * FROM monthly_weather WHERE location = :location AND period = :month")
+    abstract MonthlyWeatherEntry getMonth(String location, int month);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void putMonth(MonthlyWeatherEntry month);
+
+    @Query("SELECT days FROM aggregate_condition WHERE location = :location "
+            + "AND periodType = :periodType AND period = :period AND conditionId = :conditionId")
+    abstract Integer getConditionDays(String location, String periodType, int period, int conditionId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void putConditionDays(AggregateConditionEntry conditionDays);
+
+    @Query("DELETE FROM weather_history WHERE epochDay < :epochDay")
+    abstract int deleteDaysBefore(int epochDay);
+
+    @Query("DELETE FROM aggregate_condition WHERE periodType = :periodType AND period < :period")
+    abstract void deleteConditionDaysBefore(String periodType, int period);
+
+    @Query("SELECT * FROM weather_history WHERE location = :location "
+            + "AND epochDay >= :from AND epochDay < :to ORDER BY epochDay")
+    public abstract LiveData<List<HistoryWeatherEntry>> getHistory(String location, int from, int to);
+
+    // Walks the primary key index, so no page needs a sort
+    @Query("SELECT * FROM weather_history WHERE location = :location ORDER BY epochDay DESC")
+    public abstract DataSource.Factory<Integer, HistoryWeatherEntry> getPagedHistory(String location);
+
+    @Query("SELECT * FROM weekly_weather WHERE location = :location AND period = :week")
+    public abstract LiveData<WeeklyWeatherEntry> getWeeklyWeather(String location, int week);
+
+    @Query("SELECT * FROM monthly_weather WHERE location = :location AND period = :month")
+    public abstract LiveData<MonthlyWeatherEntry> getMonthlyWeather(String location, int month);
+
+    /**
+     * Archives days which have passed, in a single transaction, and adds each of them to the
+     * weekly and monthly aggregates of its location. Days archived already are skipped, so
+     * archiving the same day twice doesn't count it twice.
+     *
+     * @param days The days to archive
+     * @return The number of days newly archived
+     */
+    @Transaction
+    public int archive(List<HistoryWeatherEntry> days) {
+        int archived = 0;
+        for (HistoryWeatherEntry day : days) {
+            if (insertDay(day) == -1) continue;
+            archived++;
+
+            String location = day.getLocation();
+            int week = WeeklyWeatherEntry.weekOf(day.getEpochDay());
+            WeeklyWeatherEntry weekly = getWeek(location, week);
+            if (weekly == null) weekly = new WeeklyWeatherEntry(location, week, 0, 0, 0, 0, 0, 0);
+            weekly.add(day, addConditionDay(location, AggregateConditionEntry.WEEK, week,
+                    day.getWeatherIconId()));
+            putWeek(weekly);
+
+            int month = MonthlyWeatherEntry.monthOf(day.getEpochDay());
+            MonthlyWeatherEntry monthly = getMonth(location, month);
+            if (monthly == null) monthly = new MonthlyWeatherEntry(location, month, 0, 0, 0, 0, 0, 0);
+            monthly.add(day, addConditionDay(location, AggregateConditionEntry.MONTH, month,
+                    day.getWeatherIconId()));
+            putMonth(monthly);
+        }
+        return archived;
+    }
+
+    private int addConditionDay(String location, String periodType, int period, int conditionId) {
+        Integer days = getConditionDays(location, periodType, period, conditionId);
+        int conditionDays = (days != null ? days : 0) + 1;
+        putConditionDays(new AggregateConditionEntry(location, periodType, period, conditionId,
+                conditionDays));
+        return conditionDays;
+    }
+
+    /**
+     * Deletes the archived days before a day, in a single transaction. The weekly and monthly
+     * aggregates are kept; only the condition counts of periods which can't get any more days
+     * are dropped along with the days.
+     *
+     * @param epochDay The first day kept, in days since the epoch in UTC
+     * @return The number of days deleted
+     */
+    @Transaction
+    public int compact(int epochDay) {
+        int deleted = deleteDaysBefore(epochDay);
+        deleteConditionDaysBefore(AggregateConditionEntry.WEEK, WeeklyWeatherEntry.weekOf(epochDay));
+        deleteConditionDaysBefore(AggregateConditionEntry.MONTH, MonthlyWeatherEntry.monthOf(epochDay));
+        return deleted;
+    }
+}
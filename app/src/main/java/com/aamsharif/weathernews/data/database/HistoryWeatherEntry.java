@@ -0,0 +1,104 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+// The last forecast of a day which has passed, one row per location and day
+@Entity(tableName = "weather_history", primaryKeys = {"location", "epochDay"})
+public class HistoryWeatherEntry {
+
+    @NonNull
+    private String location;
+    // Days since the epoch, in UTC
+    private int epochDay;
+    private int weatherIconId;
+    private double min;
+    private double max;
+    private double humidity;
+    private double pressure;
+    private double wind;
+    private double degrees;
+
+    // to be used by Room
+    public HistoryWeatherEntry(@NonNull String location, int epochDay, int weatherIconId, double min, double max, double humidity, double pressure, double wind, double degrees) {
+        this.location = location;
+        this.epochDay = epochDay;
+        this.weatherIconId = weatherIconId;
+        this.min = min;
+        this.max = max;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.wind = wind;
+        this.degrees = degrees;
+    }
+
+    /**
+     * @param location The location the weather is of
+     * @param weather  The weather of a day which has passed
+     */
+    @Ignore
+    public HistoryWeatherEntry(@NonNull String location, WeatherEntry weather) {
+        this(location, weather.getEpochDay(), weather.getWeatherIconId(), weather.getMin(),
+                weather.getMax(), weather.getHumidity(), weather.getPressure(), weather.getWind(),
+                weather.getDegrees());
+    }
+
+    /**
+     * @param weather The weather of a saved location on a day which has passed
+     */
+    @Ignore
+    public HistoryWeatherEntry(LocationWeatherEntry weather) {
+        this(weather.getLocation(),
+                WeatherNewsDateUtils.toEpochDay(weather.getDate().getTime()),
+                weather.getWeatherIconId(), weather.getMin(), weather.getMax(),
+                weather.getHumidity(), weather.getPressure(), weather.getWind(),
+                weather.getDegrees());
+    }
+
+    @NonNull
+    public String getLocation() {
+        return location;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * @return The day of weather as a normalized UTC timestamp
+     */
+    public long getDateMillis() {
+        return epochDay * WeatherNewsDateUtils.DAY_IN_MILLIS;
+    }
+
+    public int getWeatherIconId() {
+        return weatherIconId;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getHumidity() {
+        return humidity;
+    }
+
+    public double getPressure() {
+        return pressure;
+    }
+
+    public double getWind() {
+        return wind;
+    }
+
+    public double getDegrees() {
+        return degrees;
+    }
+}
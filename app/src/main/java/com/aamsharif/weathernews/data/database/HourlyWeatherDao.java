@@ -0,0 +1,48 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class HourlyWeatherDao {
+
+    // if row exists already replace with new row
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void bulkInsert(List<HourlyWeatherEntry> weather);
+
+    @Query("DELETE FROM hourly_weather WHERE location = :location AND timestamp < :timestamp")
+    abstract void deleteBefore(String location, long timestamp);
+
+    @Query("SELECT timestamp, weatherIconId, temperature FROM hourly_weather "
+            + "WHERE location = :location AND timestamp >= :from AND timestamp < :to ORDER BY timestamp")
+    public abstract LiveData<List<HourlyWeatherPoint>> getPoints(String location, long from, long to);
+
+    @Query("SELECT timestamp, weatherIconId, temperature FROM hourly_weather "
+            + "WHERE location = :location AND timestamp >= :from AND timestamp < :to ORDER BY timestamp")
+    public abstract List<HourlyWeatherPoint> getPointsNow(String location, long from, long to);
+
+    @Query("SELECT * FROM hourly_weather "
+            + "WHERE location = :location AND timestamp >= :from AND timestamp < :to ORDER BY timestamp")
+    public abstract List<HourlyWeatherEntry> getEntries(String location, long from, long to);
+
+    /**
+     * Merges a new hourly forecast of a location into the stored one, in a single transaction.
+     * Steps present in the new forecast replace the stored ones and steps which have already
+     * passed are dropped.
+     *
+     * @param location The location whose forecast is merged
+     * @param weather  The new forecast of the location
+     * @param keepFrom Stored steps starting before this time are dropped, in UTC milliseconds
+     */
+    @Transaction
+    public void mergeForecast(String location, List<HourlyWeatherEntry> weather, long keepFrom) {
+        deleteBefore(location, keepFrom);
+        bulkInsert(weather);
+    }
+}
@@ -0,0 +1,77 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// There is one row per location and 3-hour step. The index covers the columns of
+// HourlyWeatherPoint, so that range reads are answered from the index alone.
+@Entity(tableName = "hourly_weather", primaryKeys = {"location", "timestamp"},
+        indices = {@Index(value = {"location", "timestamp", "weatherIconId", "temperature"})})
+public class HourlyWeatherEntry {
+
+    @NonNull
+    private String location;
+    // Start of the 3-hour step, in UTC milliseconds
+    private long timestamp;
+    private int weatherIconId;
+    private double temperature;
+    private double humidity;
+    private double pressure;
+    private double wind;
+    private double degrees;
+
+    /**
+     * @param location The location, as the user entered it
+     * @param timestamp Start of the 3-hour step, in UTC milliseconds
+     * @param weatherIconId Image id for weather
+     * @param temperature Temperature
+     * @param humidity Humidity
+     * @param pressure Barometric pressure
+     * @param wind Wind speed
+     * @param degrees Wind direction
+     */
+    public HourlyWeatherEntry(@NonNull String location, long timestamp, int weatherIconId, double temperature, double humidity, double pressure, double wind, double degrees) {
+        this.location = location;
+        this.timestamp = timestamp;
+        this.weatherIconId = weatherIconId;
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.wind = wind;
+        this.degrees = degrees;
+    }
+
+    @NonNull
+    public String getLocation() {
+        return location;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWeatherIconId() {
+        return weatherIconId;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getHumidity() {
+        return humidity;
+    }
+
+    public double getPressure() {
+        return pressure;
+    }
+
+    public double getWind() {
+        return wind;
+    }
+
+    public double getDegrees() {
+        return degrees;
+    }
+}
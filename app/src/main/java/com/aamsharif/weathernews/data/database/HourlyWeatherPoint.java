@@ -0,0 +1,30 @@
+package com.aamsharif.weathernews.data.database;
+
+/**
+ * Simplified {@link HourlyWeatherEntry} which only contains the details needed to plot the weather
+ * over a day.
+ */
+public class HourlyWeatherPoint {
+    private long timestamp;
+    private int weatherIconId;
+    private double temperature;
+
+    // Room can use this constructor as all fields are matched by name
+    public HourlyWeatherPoint(long timestamp, int weatherIconId, double temperature) {
+        this.timestamp = timestamp;
+        this.weatherIconId = weatherIconId;
+        this.temperature = temperature;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWeatherIconId() {
+        return weatherIconId;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+}
@@ -1,6 +1,6 @@
 package com.aamsharif.weathernews.data.database;
 
-import java.util.Date;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 
 /**
  * Created by A. A. M. Sharif on 28-Jan-19.
@@ -9,14 +9,15 @@ public class ListWeatherEntry {
 
     private int id;
     private int weatherIconId;
-    private Date date;
+    // Days since the epoch, in UTC
+    private int epochDay;
     private double min;
     private double max;
 
-    public ListWeatherEntry(int id, int weatherIconId, Date date, double min, double max) {
+    public ListWeatherEntry(int id, int weatherIconId, int epochDay, double min, double max) {
         this.id = id;
         this.weatherIconId = weatherIconId;
-        this.date = date;
+        this.epochDay = epochDay;
         this.min = min;
         this.max = max;
     }
@@ -29,8 +30,15 @@ public class ListWeatherEntry {
         return weatherIconId;
     }
 
-    public Date getDate() {
-        return date;
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * @return The day of weather as a normalized UTC timestamp
+     */
+    public long getDateMillis() {
+        return epochDay * WeatherNewsDateUtils.DAY_IN_MILLIS;
     }
 
     public double getMin() {
@@ -0,0 +1,102 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+@Dao
+public abstract class LocationWeatherDao {
+
+    // if row exists already replace with new row
+    private static final String INSERT_OR_REPLACE = "INSERT OR REPLACE INTO location_weather "
+            + "(location, weatherIconId, date, min, max, humidity, pressure, wind, degrees) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Current conditions, which leave the stored range of the day alone
+    private static final String UPDATE_CONDITIONS = "UPDATE location_weather "
+            + "SET weatherIconId = ?, humidity = ?, pressure = ?, wind = ?, degrees = ? "
+            + "WHERE location = ? AND date = ?";
+
+    private final RoomDatabase mDatabase;
+
+    // to be used by Room
+    public LocationWeatherDao(RoomDatabase database) {
+        mDatabase = database;
+    }
+
+    @Query("DELETE FROM location_weather WHERE location IN (:locations) AND date < :date")
+    abstract void deletePastDays(List<String> locations, Date date);
+
+    @Query("SELECT * FROM location_weather WHERE location IN (:locations) AND date < :date")
+    public abstract List<LocationWeatherEntry> getPastForecasts(List<String> locations, Date date);
+
+    @Query("SELECT * FROM location_weather WHERE location = :location AND date >= :date ORDER BY date")
+    public abstract LiveData<List<LocationWeatherEntry>> getForecastsForLocation(String location, Date date);
+
+    /**
+     * Merges new forecasts into the stored ones, in a single transaction. Days present in the
+     * batch replace the stored ones, other future days are kept and days before today are dropped
+     * for every location in the batch. Days whose minimum or maximum isn't known only update the
+     * conditions of the stored day, if there is one.
+     *
+     * The rows are bound straight from the columns of the batch through one compiled statement,
+     * without a {@link LocationWeatherEntry} or a boxed date per row.
+     *
+     * @param batch The new forecasts
+     * @param today Normalized UTC date of today
+     */
+    public void mergeBatch(ForecastBatch batch, Date today) {
+        mDatabase.beginTransaction();
+        SupportSQLiteStatement insert = null;
+        SupportSQLiteStatement update = null;
+        try {
+            insert = mDatabase.compileStatement(INSERT_OR_REPLACE);
+            update = mDatabase.compileStatement(UPDATE_CONDITIONS);
+            deletePastDays(batch.getLocations(), today);
+            for (int row = 0; row < batch.size(); row++) {
+                if (Double.isNaN(batch.getMin(row)) || Double.isNaN(batch.getMax(row))) {
+                    update.bindLong(1, batch.getConditionId(row));
+                    update.bindLong(2, batch.getHumidity(row));
+                    update.bindDouble(3, batch.getPressure(row));
+                    update.bindDouble(4, batch.getWind(row));
+                    update.bindDouble(5, batch.getDegrees(row));
+                    update.bindString(6, batch.getLocation(row));
+                    update.bindLong(7, batch.getDateMillis(row));
+                    update.executeUpdateDelete();
+                    continue;
+                }
+                insert.bindString(1, batch.getLocation(row));
+                insert.bindLong(2, batch.getConditionId(row));
+                insert.bindLong(3, batch.getDateMillis(row));
+                insert.bindDouble(4, batch.getMin(row));
+                insert.bindDouble(5, batch.getMax(row));
+                insert.bindLong(6, batch.getHumidity(row));
+                insert.bindDouble(7, batch.getPressure(row));
+                insert.bindDouble(8, batch.getWind(row));
+                insert.bindDouble(9, batch.getDegrees(row));
+                insert.executeInsert();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            close(insert);
+            close(update);
+            mDatabase.endTransaction();
+        }
+    }
+
+    // Statements are Closeable, but closing one only releases it and never does I/O
+    private static void close(@Nullable SupportSQLiteStatement statement) {
+        if (statement == null) return;
+        try {
+            statement.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
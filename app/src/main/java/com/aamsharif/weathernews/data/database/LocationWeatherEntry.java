@@ -0,0 +1,82 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Date;
+
+// There is one row per saved location and day
+@Entity(tableName = "location_weather",
+        indices = {@Index(value = {"location", "date"}, unique = true)})
+public class LocationWeatherEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    @NonNull
+    private String location;
+    private int weatherIconId;
+    private Date date;
+    private double min;
+    private double max;
+    private double humidity;
+    private double pressure;
+    private double wind;
+    private double degrees;
+
+    // to be used by Room
+    public LocationWeatherEntry(int id, @NonNull String location, int weatherIconId, Date date, double min, double max, double humidity, double pressure, double wind, double degrees) {
+        this.id = id;
+        this.location = location;
+        this.weatherIconId = weatherIconId;
+        this.date = date;
+        this.min = min;
+        this.max = max;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.wind = wind;
+        this.degrees = degrees;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getLocation() {
+        return location;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public int getWeatherIconId() {
+        return weatherIconId;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getHumidity() {
+        return humidity;
+    }
+
+    public double getPressure() {
+        return pressure;
+    }
+
+    public double getWind() {
+        return wind;
+    }
+
+    public double getDegrees() {
+        return degrees;
+    }
+}
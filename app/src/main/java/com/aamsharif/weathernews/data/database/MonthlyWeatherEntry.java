@@ -0,0 +1,29 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+// The archived weather of a location over a calendar month, one row per location and month
+@Entity(tableName = "monthly_weather", primaryKeys = {"location", "period"})
+public class MonthlyWeatherEntry extends WeatherAggregate {
+
+    // to be used by Room
+    public MonthlyWeatherEntry(@NonNull String location, int period, int days, double temperatureSum, double min, double max, int dominantConditionId, int dominantConditionDays) {
+        super(location, period, days, temperatureSum, min, max, dominantConditionId, dominantConditionDays);
+    }
+
+    /**
+     * @param epochDay A day, in days since the epoch in UTC
+     * @return The month the day falls in, as year * 12 + month, with January being 0
+     */
+    public static int monthOf(int epochDay) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(epochDay * WeatherNewsDateUtils.DAY_IN_MILLIS);
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+}
@@ -0,0 +1,95 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Summary of the archived weather of a location over a period, see {@link WeeklyWeatherEntry}
+ * and {@link MonthlyWeatherEntry}. Each archived day is added to it once, as it is archived, so
+ * the summary never has to be recomputed from the days themselves and outlives them.
+ */
+public abstract class WeatherAggregate {
+
+    @NonNull
+    private String location;
+    private int period;
+    // Number of days added
+    private int days;
+    // Sum of the mean temperatures of the days
+    private double temperatureSum;
+    private double min;
+    private double max;
+    // The condition most days had, and on how many days
+    private int dominantConditionId;
+    private int dominantConditionDays;
+
+    WeatherAggregate(@NonNull String location, int period, int days, double temperatureSum, double min, double max, int dominantConditionId, int dominantConditionDays) {
+        this.location = location;
+        this.period = period;
+        this.days = days;
+        this.temperatureSum = temperatureSum;
+        this.min = min;
+        this.max = max;
+        this.dominantConditionId = dominantConditionId;
+        this.dominantConditionDays = dominantConditionDays;
+    }
+
+    /**
+     * Adds the weather of a day.
+     *
+     * @param day           The weather of the day
+     * @param conditionDays The number of days of the period which had the condition of the day,
+     *                      that day included
+     */
+    void add(HistoryWeatherEntry day, int conditionDays) {
+        min = days == 0 ? day.getMin() : Math.min(min, day.getMin());
+        max = days == 0 ? day.getMax() : Math.max(max, day.getMax());
+        temperatureSum += (day.getMin() + day.getMax()) / 2;
+        days++;
+        // Counts only ever grow, so the condition which just overtook the others is the one most
+        // days had
+        if (conditionDays > dominantConditionDays) {
+            dominantConditionId = day.getWeatherIconId();
+            dominantConditionDays = conditionDays;
+        }
+    }
+
+    @NonNull
+    public String getLocation() {
+        return location;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public double getTemperatureSum() {
+        return temperatureSum;
+    }
+
+    /**
+     * @return The mean of the daily mean temperatures
+     */
+    public double getMeanTemperature() {
+        return days == 0 ? Double.NaN : temperatureSum / days;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getDominantConditionId() {
+        return dominantConditionId;
+    }
+
+    public int getDominantConditionDays() {
+        return dominantConditionDays;
+    }
+}
@@ -1,35 +1,220 @@
 package com.aamsharif.weathernews.data.database;
 
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 /**
  * Created by A. A. M. Sharif on 28-Jan-19.
  */
 @Dao
-public interface WeatherDao {
+public abstract class WeatherDao {
 
     // if row exists already replace with new row
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void bulkInsert(WeatherEntry... weather);
+    public abstract void bulkInsert(WeatherEntry... weather);
 
-    @Query("SELECT * FROM weather WHERE date = :date")
-    LiveData<WeatherEntry> getWeatherByDate(Date date);
+    @Query("SELECT * FROM weather WHERE epochDay = :epochDay")
+    public abstract LiveData<WeatherEntry> getWeatherByDay(int epochDay);
 
-    @Query("SELECT * FROM weather WHERE date = :date")
-    WeatherEntry getWeatherEntryByDate(Date date);
+    @Query("SELECT * FROM weather WHERE epochDay = :epochDay")
+    public abstract WeatherEntry getWeatherEntryByDay(int epochDay);
 
-    @Query("SELECT id, weatherIconId, date, min, max FROM weather WHERE date >= :date")
-    LiveData<List<ListWeatherEntry>> getCurrentWeatherForecasts(Date date);
+    @Query("SELECT id, weatherIconId, epochDay, min, max FROM weather WHERE epochDay >= :epochDay ORDER BY epochDay")
+    public abstract LiveData<List<ListWeatherEntry>> getCurrentWeatherForecasts(int epochDay);
 
-    @Query("SELECT COUNT(id) FROM weather WHERE date >= :date")
-    int countAllFutureWeather(Date date);
+    @Query("SELECT * FROM weather WHERE epochDay >= :epochDay ORDER BY epochDay")
+    public abstract List<WeatherEntry> getFutureWeatherEntries(int epochDay);
+
+    @Query("SELECT * FROM weather WHERE epochDay < :epochDay")
+    public abstract List<WeatherEntry> getPastWeatherEntries(int epochDay);
+
+    @Query("SELECT COUNT(id) FROM weather WHERE epochDay >= :epochDay")
+    public abstract int countAllFutureWeather(int epochDay);
+
+    @Update
+    abstract int update(List<WeatherEntry> weather);
+
+    @Insert
+    abstract void insert(List<WeatherEntry> weather);
+
+    @Query("DELETE FROM weather WHERE epochDay < :epochDay")
+    abstract int deletePastWeather(int epochDay);
 
     @Query("DELETE FROM weather")
-    void deleteAllData();
-}
\ No newline at end of file
+    abstract int deleteAllWeather();
+
+    @Query("DELETE FROM weather WHERE epochDay >= :epochDay")
+    abstract int deleteFutureWeather(int epochDay);
+
+    @Query("SELECT * FROM forecast_hash WHERE forecast = :forecast")
+    abstract ForecastHashEntry getForecastHash(String forecast);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void putForecastHash(ForecastHashEntry forecastHash);
+
+    @Query("DELETE FROM forecast_hash WHERE forecast = :forecast")
+    abstract void deleteForecastHash(String forecast);
+
+    /**
+     * @return The location the stored weather is of, null if that isn't known, e.g. as nothing
+     * has been stored yet
+     */
+    @Nullable
+    public String getForecastLocation() {
+        ForecastHashEntry forecastHash = getForecastHash(ForecastHashEntry.WEATHER_FORECAST);
+        return forecastHash != null ? forecastHash.getLocation() : null;
+    }
+
+    /**
+     * @param location The location the forecast is of
+     * @param weather  A new forecast
+     * @return Whether the forecast is the same as the last one merged, so that merging it again
+     * would change nothing
+     */
+    public boolean isSameAsLastForecast(String location, WeatherEntry[] weather) {
+        ForecastHashEntry last = getForecastHash(ForecastHashEntry.WEATHER_FORECAST);
+        return last != null && last.getLocation().equals(location)
+                && last.getContentHash() != null
+                && last.getContentHash() == ForecastHashEntry.computeContentHash(weather);
+    }
+
+    /**
+     * Merges a new forecast into the stored one, in a single transaction, so observers never see
+     * the table half written. Days missing from the stored forecast are inserted, days whose
+     * weather changed are updated in place and days whose weather is the same are left alone,
+     * so a forecast which changed nothing writes no rows at all. Other future days are kept and
+     * days before today are dropped, so a forecast covering only the next few days leaves the
+     * rest of the stored horizon in place. The location and content hash of the forecast are
+     * stored along with it.
+     *
+     * The stored days are only kept if they are of the same location. If the location changed,
+     * or it isn't known which location they are of, every stored day is dropped, so the table
+     * never shows the days of two locations at once.
+     *
+     * @param location The location the forecast is of
+     * @param weather  The new forecast
+     * @param today    Today, in days since the epoch in UTC
+     * @return What the merge did to the rows
+     */
+    @Transaction
+    public MergeResult mergeForecasts(String location, WeatherEntry[] weather, int today) {
+        int deleted = location.equals(getForecastLocation())
+                ? deletePastWeather(today)
+                : deleteAllWeather();
+
+        Map<Integer, WeatherEntry> storedByDay = new HashMap<>();
+        for (WeatherEntry entry : getFutureWeatherEntries(today)) {
+            storedByDay.put(entry.getEpochDay(), entry);
+        }
+
+        List<WeatherEntry> inserts = new ArrayList<>();
+        List<WeatherEntry> updates = new ArrayList<>();
+        int unchanged = 0;
+        for (WeatherEntry entry : weather) {
+            WeatherEntry stored = storedByDay.get(entry.getEpochDay());
+            if (stored == null) {
+                inserts.add(entry);
+            } else if (stored.hasSameWeatherAs(entry)) {
+                unchanged++;
+            } else {
+                updates.add(entry.withId(stored.getId()));
+            }
+        }
+        if (!inserts.isEmpty()) insert(inserts);
+        if (!updates.isEmpty()) update(updates);
+
+        putForecastHash(new ForecastHashEntry(ForecastHashEntry.WEATHER_FORECAST, location,
+                ForecastHashEntry.computeContentHash(weather)));
+        return new MergeResult(inserts.size(), updates.size(), unchanged, deleted);
+    }
+
+    /**
+     * Writes days of a forecast still being downloaded, in a single transaction. If the stored
+     * days are of another location, or it isn't known which location they are of, they are all
+     * dropped first, like {@link #mergeForecasts(String, WeatherEntry[], int)} does. The content
+     * hash is cleared, as the table now holds part of a forecast, so the merge of the whole
+     * forecast which follows is never skipped.
+     *
+     * @param location The location the forecast is of
+     * @param weather  The days parsed so far
+     * @return The number of stored days dropped
+     */
+    @Transaction
+    public int publishForecastEntries(String location, WeatherEntry... weather) {
+        int deleted = location.equals(getForecastLocation()) ? 0 : deleteAllWeather();
+        bulkInsert(weather);
+        putForecastHash(new ForecastHashEntry(ForecastHashEntry.WEATHER_FORECAST, location, null));
+        return deleted;
+    }
+
+    /**
+     * Puts back the future days which were stored before days of a forecast were written with
+     * {@link #publishForecastEntries(String, WeatherEntry...)}, once the download of that forecast
+     * failed. The content hash stays cleared, so the next forecast is merged whole however
+     * it compares to the last one.
+     *
+     * @param location The location the days put back are of, null if that isn't known
+     * @param weather  The future days stored before the first days were written
+     * @param today    Today, in days since the epoch in UTC
+     */
+    @Transaction
+    public void restoreForecast(@Nullable String location, List<WeatherEntry> weather, int today) {
+        deleteFutureWeather(today);
+        if (!weather.isEmpty()) bulkInsert(weather.toArray(new WeatherEntry[0]));
+        if (location != null) {
+            putForecastHash(new ForecastHashEntry(ForecastHashEntry.WEATHER_FORECAST, location,
+                    null));
+        } else {
+            deleteForecastHash(ForecastHashEntry.WEATHER_FORECAST);
+        }
+    }
+
+    /**
+     * The number of rows a merge inserted, updated, left unchanged and deleted.
+     */
+    public static class MergeResult {
+        private final int mInserted;
+        private final int mUpdated;
+        private final int mUnchanged;
+        private final int mDeleted;
+
+        MergeResult(int inserted, int updated, int unchanged, int deleted) {
+            mInserted = inserted;
+            mUpdated = updated;
+            mUnchanged = unchanged;
+            mDeleted = deleted;
+        }
+
+        public int getInserted() {
+            return mInserted;
+        }
+
+        public int getUpdated() {
+            return mUpdated;
+        }
+
+        public int getUnchanged() {
+            return mUnchanged;
+        }
+
+        public int getDeleted() {
+            return mDeleted;
+        }
+
+        @Override
+        public String toString() {
+            return mInserted + " inserted, " + mUpdated + " updated, " + mUnchanged
+                    + " unchanged, " + mDeleted + " deleted";
+        }
+    }
+}
@@ -5,19 +5,21 @@ import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-import java.util.Date;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
 /**
  * Created by A. A. M. Sharif on 28-Jan-19.
  */
 
-// date column is unique
-@Entity(tableName = "weather", indices = {@Index(value = {"date"}, unique = true)})
+// epochDay column is unique
+@Entity(tableName = "weather", indices = {@Index(value = {"epochDay"}, unique = true)})
 public class WeatherEntry {
 
     @PrimaryKey(autoGenerate = true)
     private int id;
     private int weatherIconId;
-    private Date date;
+    // Days since the epoch, in UTC
+    private int epochDay;
     private double min;
     private double max;
     private double humidity;
@@ -26,10 +28,10 @@ public class WeatherEntry {
     private double degrees;
 
     // to be used by Room
-    public WeatherEntry(int id, int weatherIconId, Date date, double min, double max, double humidity, double pressure, double wind, double degrees) {
+    public WeatherEntry(int id, int weatherIconId, int epochDay, double min, double max, double humidity, double pressure, double wind, double degrees) {
         this.id = id;
         this.weatherIconId = weatherIconId;
-        this.date = date;
+        this.epochDay = epochDay;
         this.min = min;
         this.max = max;
         this.humidity = humidity;
@@ -42,7 +44,7 @@ public class WeatherEntry {
      * This constructor is used by OpenWeatherJsonParser. When the network fetch has JSON data, it
      * converts this data to WeatherEntry objects using this constructor.
      * @param weatherIconId Image id for weather
-     * @param date Date of weather
+     * @param epochDay Day of weather, in days since the epoch in UTC
      * @param min Min temperature
      * @param max Max temperature
      * @param humidity Humidity for the day
@@ -51,9 +53,9 @@ public class WeatherEntry {
      * @param degrees Wind direction
      */
     @Ignore
-    public WeatherEntry(int weatherIconId, Date date, double min, double max, double humidity, double pressure, double wind, double degrees) {
+    public WeatherEntry(int weatherIconId, int epochDay, double min, double max, double humidity, double pressure, double wind, double degrees) {
         this.weatherIconId = weatherIconId;
-        this.date = date;
+        this.epochDay = epochDay;
         this.min = min;
         this.max = max;
         this.humidity = humidity;
@@ -66,8 +68,15 @@ public class WeatherEntry {
         return id;
     }
 
-    public Date getDate() {
-        return date;
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * @return The day of weather as a normalized UTC timestamp
+     */
+    public long getDateMillis() {
+        return epochDay * WeatherNewsDateUtils.DAY_IN_MILLIS;
     }
 
     public int getWeatherIconId() {
@@ -97,5 +106,28 @@ public class WeatherEntry {
     public double getDegrees() {
         return degrees;
     }
+
+    /**
+     * @param other The weather of the same day
+     * @return Whether the other entry holds exactly the same weather, ignoring the row id
+     */
+    boolean hasSameWeatherAs(WeatherEntry other) {
+        return weatherIconId == other.weatherIconId
+                && Double.compare(min, other.min) == 0
+                && Double.compare(max, other.max) == 0
+                && Double.compare(humidity, other.humidity) == 0
+                && Double.compare(pressure, other.pressure) == 0
+                && Double.compare(wind, other.wind) == 0
+                && Double.compare(degrees, other.degrees) == 0;
+    }
+
+    /**
+     * @param id The id of the stored row of the same day
+     * @return A copy of this entry which updates that row
+     */
+    WeatherEntry withId(int id) {
+        return new WeatherEntry(id, weatherIconId, epochDay, min, max, humidity, pressure, wind,
+                degrees);
+    }
 }
 
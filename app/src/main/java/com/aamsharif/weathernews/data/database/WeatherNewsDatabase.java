@@ -4,12 +4,20 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import android.content.Context;
+import androidx.annotation.NonNull;
+
+import com.aamsharif.weathernews.AppExecutors;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 
 /**
  * Created by A. A. M. Sharif on 28-Jan-19.
  */
-@Database(entities = {WeatherEntry.class}, version = 1, exportSchema = false)
+@Database(entities = {WeatherEntry.class, LocationWeatherEntry.class, HourlyWeatherEntry.class,
+        ForecastHashEntry.class, HistoryWeatherEntry.class, WeeklyWeatherEntry.class,
+        MonthlyWeatherEntry.class, AggregateConditionEntry.class}, version = 7)
 @TypeConverters(DateConverter.class)
 public abstract class WeatherNewsDatabase extends RoomDatabase {
 
@@ -19,12 +27,128 @@ public abstract class WeatherNewsDatabase extends RoomDatabase {
     private static final Object LOCK = new Object();
     private static volatile WeatherNewsDatabase sInstance;
 
+    // Version 2 adds the forecasts of the saved locations
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `location_weather` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`location` TEXT NOT NULL, `weatherIconId` INTEGER NOT NULL, "
+                    + "`date` INTEGER, `min` REAL NOT NULL, `max` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS "
+                    + "`index_location_weather_location_date` ON `location_weather` (`location`, `date`)");
+        }
+    };
+
+    // Version 3 adds the 3-hourly forecasts
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `hourly_weather` ("
+                    + "`location` TEXT NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`weatherIconId` INTEGER NOT NULL, `temperature` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL, "
+                    + "PRIMARY KEY(`location`, `timestamp`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS "
+                    + "`index_hourly_weather_location_timestamp_weatherIconId_temperature` "
+                    + "ON `hourly_weather` (`location`, `timestamp`, `weatherIconId`, `temperature`)");
+        }
+    };
+
+    // Version 4 adds the content hashes of the stored forecasts
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `forecast_hash` ("
+                    + "`forecast` TEXT NOT NULL, `contentHash` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`forecast`))");
+        }
+    };
+
+    // Version 5 keys the weather by an integer day since the epoch instead of a timestamp. SQLite
+    // can't change a column, so the table is copied over.
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `weather_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`weatherIconId` INTEGER NOT NULL, `epochDay` INTEGER NOT NULL, "
+                    + "`min` REAL NOT NULL, `max` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL)");
+            // The stored dates are normalized, so the division is exact
+            database.execSQL("INSERT OR REPLACE INTO `weather_new` (`id`, `weatherIconId`, "
+                    + "`epochDay`, `min`, `max`, `humidity`, `pressure`, `wind`, `degrees`) "
+                    + "SELECT `id`, `weatherIconId`, `date` / " + WeatherNewsDateUtils.DAY_IN_MILLIS
+                    + ", `min`, `max`, `humidity`, `pressure`, `wind`, `degrees` "
+                    + "FROM `weather` WHERE `date` IS NOT NULL");
+            database.execSQL("DROP TABLE `weather`");
+            database.execSQL("ALTER TABLE `weather_new` RENAME TO `weather`");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_weather_epochDay` "
+                    + "ON `weather` (`epochDay`)");
+            // The hash covered the dates, so it has to be taken again
+            database.execSQL("DELETE FROM `forecast_hash` WHERE `forecast` = 'weather'");
+        }
+    };
+
+    // Version 6 adds the archive of past days and its weekly and monthly aggregates
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `weather_history` ("
+                    + "`location` TEXT NOT NULL, `epochDay` INTEGER NOT NULL, "
+                    + "`weatherIconId` INTEGER NOT NULL, `min` REAL NOT NULL, `max` REAL NOT NULL, "
+                    + "`humidity` REAL NOT NULL, `pressure` REAL NOT NULL, "
+                    + "`wind` REAL NOT NULL, `degrees` REAL NOT NULL, "
+                    + "PRIMARY KEY(`location`, `epochDay`))");
+            for (String table : new String[]{"weekly_weather", "monthly_weather"}) {
+                database.execSQL("CREATE TABLE IF NOT EXISTS `" + table + "` ("
+                        + "`location` TEXT NOT NULL, `period` INTEGER NOT NULL, "
+                        + "`days` INTEGER NOT NULL, `temperatureSum` REAL NOT NULL, "
+                        + "`min` REAL NOT NULL, `max` REAL NOT NULL, "
+                        + "`dominantConditionId` INTEGER NOT NULL, "
+                        + "`dominantConditionDays` INTEGER NOT NULL, "
+                        + "PRIMARY KEY(`location`, `period`))");
+            }
+            database.execSQL("CREATE TABLE IF NOT EXISTS `aggregate_condition` ("
+                    + "`location` TEXT NOT NULL, `periodType` TEXT NOT NULL, "
+                    + "`period` INTEGER NOT NULL, `conditionId` INTEGER NOT NULL, "
+                    + "`days` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`location`, `periodType`, `period`, `conditionId`))");
+        }
+    };
+
+    // Version 7 records the location the weather table is of along with its hash, which may now be
+    // missing. Nothing tells which location the stored rows are of, so the hash is simply dropped
+    // and the next forecast replaces them.
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP TABLE IF EXISTS `forecast_hash`");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `forecast_hash` ("
+                    + "`forecast` TEXT NOT NULL, `location` TEXT NOT NULL, "
+                    + "`contentHash` INTEGER, PRIMARY KEY(`forecast`))");
+        }
+    };
+
     public static WeatherNewsDatabase getInstance(Context context) {
         if (sInstance == null) {
             synchronized (LOCK) {
                 if (sInstance == null) {
                     sInstance = Room.databaseBuilder(context.getApplicationContext(),
-                            WeatherNewsDatabase.class, WeatherNewsDatabase.DATABASE_NAME).build();
+                            WeatherNewsDatabase.class, WeatherNewsDatabase.DATABASE_NAME)
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                                    MIGRATION_5_6, MIGRATION_6_7)
+                            // Readers see the last commit while a write is going on instead of
+                            // waiting for it. Ignored below API 16, where WAL isn't available.
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            // LiveData queries run on the read pool; the writes are handed to
+                            // the single writer by the repository
+                            .setQueryExecutor(AppExecutors.getInstance().diskRead())
+                            .build();
                 }
             }
         }
@@ -32,4 +156,10 @@ public abstract class WeatherNewsDatabase extends RoomDatabase {
     }
 
     public abstract WeatherDao weatherDao();
+
+    public abstract LocationWeatherDao locationWeatherDao();
+
+    public abstract HourlyWeatherDao hourlyWeatherDao();
+
+    public abstract HistoryDao historyDao();
 }
@@ -0,0 +1,28 @@
+package com.aamsharif.weathernews.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+// The archived weather of a location over a week, one row per location and week
+@Entity(tableName = "weekly_weather", primaryKeys = {"location", "period"})
+public class WeeklyWeatherEntry extends WeatherAggregate {
+
+    // Days from the first Monday on or before the epoch to the epoch, a Thursday
+    private static final int DAYS_FROM_MONDAY = 3;
+
+    // to be used by Room
+    public WeeklyWeatherEntry(@NonNull String location, int period, int days, double temperatureSum, double min, double max, int dominantConditionId, int dominantConditionDays) {
+        super(location, period, days, temperatureSum, min, max, dominantConditionId, dominantConditionDays);
+    }
+
+    /**
+     * @param epochDay A day, in days since the epoch in UTC
+     * @return The week the day falls in, as the number of weeks, starting on Mondays, since the
+     * epoch
+     */
+    public static int weekOf(int epochDay) {
+        int daysFromMonday = epochDay + DAYS_FROM_MONDAY;
+        // Rounded down for days before the epoch as well
+        return daysFromMonday >= 0 ? daysFromMonday / 7 : (daysFromMonday - 6) / 7;
+    }
+}
@@ -0,0 +1,35 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+/**
+ * Tells whether the battery is running low. Tests pass a subclass reporting the battery they
+ * simulate.
+ */
+class BatteryConditions {
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private final Context mContext;
+
+    BatteryConditions(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return true if the device runs on a battery below 15%
+     */
+    boolean isLow() {
+        // The battery status is a sticky broadcast, so no receiver is needed to read it
+        Intent batteryStatus = mContext.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus == null) return false;
+        boolean charging = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (charging || level < 0 || scale <= 0) return false;
+        return level * 100 / scale < LOW_BATTERY_PERCENT;
+    }
+}
@@ -0,0 +1,86 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.os.SystemClock;
+
+/**
+ * Keeps fetch triggers away from the weather server once it has failed repeatedly.
+ *
+ * After {@code failureThreshold} consecutive failed fetches the breaker opens and every request
+ * is refused for {@code openMillis}. The first request after that is let through as a trial: its
+ * success closes the breaker again, its failure keeps it open for another period. Only failures
+ * of the server count, see {@link #isServerFailure(Exception)}; a request which says nothing
+ * about the server's health, e.g. one refused with a 404, is released with
+ * {@link #recordIgnored()}.
+ */
+class CircuitBreaker {
+
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+
+    private int mConsecutiveFailures;
+    // SystemClock.elapsedRealtime() at which the breaker lets a trial request through
+    private long mOpenUntilMillis;
+    private boolean mTrialInFlight;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+    }
+
+    /**
+     * @return true if a request may be sent to the server now
+     */
+    synchronized boolean allowRequest() {
+        if (mConsecutiveFailures < mFailureThreshold) return true;
+        if (SystemClock.elapsedRealtime() < mOpenUntilMillis || mTrialInFlight) return false;
+        mTrialInFlight = true;
+        return true;
+    }
+
+    synchronized void recordSuccess() {
+        mConsecutiveFailures = 0;
+        mTrialInFlight = false;
+    }
+
+    synchronized void recordFailure() {
+        mConsecutiveFailures++;
+        mTrialInFlight = false;
+        if (mConsecutiveFailures >= mFailureThreshold) {
+            mOpenUntilMillis = SystemClock.elapsedRealtime() + mOpenMillis;
+        }
+    }
+
+    /**
+     * Ends a request which tells nothing about the server, e.g. as it was never sent or the server
+     * refused it for reasons of its own, so that another trial may be let through.
+     */
+    synchronized void recordIgnored() {
+        mTrialInFlight = false;
+    }
+
+    /**
+     * Records how a request let through by {@link #allowRequest()} ended.
+     *
+     * @param e The reason it failed
+     */
+    synchronized void recordFailure(Exception e) {
+        if (isServerFailure(e)) {
+            recordFailure();
+        } else {
+            recordIgnored();
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return mConsecutiveFailures >= mFailureThreshold;
+    }
+
+    /**
+     * @param e The reason a request failed
+     * @return true if the failure says the server is unreachable or unwell, which are the same
+     * failures a request is retried for, see {@link TransientFailures#isTransient(Exception)}
+     */
+    static boolean isServerFailure(Exception e) {
+        return TransientFailures.isTransient(e);
+    }
+}
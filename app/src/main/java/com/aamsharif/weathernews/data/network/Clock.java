@@ -0,0 +1,31 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.os.SystemClock;
+
+/**
+ * The time, as read by the classes whose decisions depend on it, so that tests can set it.
+ */
+interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * @return Milliseconds since boot, for measuring durations
+     */
+    long elapsedRealtime();
+
+    /**
+     * @return The wall clock time, in UTC milliseconds
+     */
+    long currentTimeMillis();
+}
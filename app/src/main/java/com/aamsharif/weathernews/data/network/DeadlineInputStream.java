@@ -0,0 +1,47 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.os.SystemClock;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * An {@link InputStream} which fails once a deadline has passed, so that a slow but never quite
+ * stalled response cannot outlive the total timeout of a request.
+ */
+class DeadlineInputStream extends FilterInputStream {
+
+    // Deadline on the SystemClock.elapsedRealtime() clock
+    private final long mDeadlineMillis;
+
+    DeadlineInputStream(InputStream in, long deadlineMillis) {
+        super(in);
+        mDeadlineMillis = deadlineMillis;
+    }
+
+    private void checkDeadline() throws SocketTimeoutException {
+        if (SystemClock.elapsedRealtime() > mDeadlineMillis) {
+            throw new SocketTimeoutException("Total request timeout elapsed");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkDeadline();
+        return super.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        checkDeadline();
+        return super.read(buffer, offset, count);
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        checkDeadline();
+        return super.skip(count);
+    }
+}
@@ -0,0 +1,14 @@
+package com.aamsharif.weathernews.data.network;
+
+/**
+ * How a forecast fetch ended, from best to worst.
+ */
+public enum FetchOutcome {
+    // The forecast was downloaded, or the one we have is still current
+    SUCCESS,
+    // The fetch failed for a reason that may go away on its own (timeout, 5xx, 429), or the
+    // circuit breaker is keeping us away from the server for now
+    RETRY,
+    // The fetch failed for a reason that trying again won't fix
+    FAILURE
+}
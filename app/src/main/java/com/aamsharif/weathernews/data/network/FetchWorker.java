@@ -1,6 +1,7 @@
 package com.aamsharif.weathernews.data.network;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.aamsharif.weathernews.utilities.InjectorUtils;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -13,10 +14,17 @@ import androidx.work.ListenableWorker;
 
 import androidx.work.WorkerParameters;
 
+import java.util.concurrent.ExecutionException;
+
 /**
  * Created by A. A. M. Sharif on 23-Feb-19.
  */
 public class FetchWorker extends ListenableWorker {
+    private static final String LOG_TAG = FetchWorker.class.getSimpleName();
+
+    // Input of a one-off run which only fills in the days a short fetch left out
+    static final String KEY_FILL_HORIZON = "fill_horizon";
+
     /**
      * @param appContext   The application {@link Context}
      * @param workerParams Parameters to setup the internal state of this worker
@@ -28,13 +36,67 @@ public class FetchWorker extends ListenableWorker {
     @NonNull
     @Override
     public ListenableFuture<Result> startWork() {
-        // do fetching
         WeatherNetworkDataSource networkDataSource = InjectorUtils.provideNetworkDataSource(getApplicationContext());
-        networkDataSource.fetchWeather();
-
         ResolvableFuture<Result> mFuture = ResolvableFuture.create();
-        mFuture.set(Result.success());
+        if (getInputData().getBoolean(KEY_FILL_HORIZON, false)) {
+            // Runs on an unmetered network, so the full forecast is fetched
+            ListenableFuture<FetchOutcome> fill = networkDataSource.fetchWeather(RequestPriority.BACKGROUND);
+            fill.addListener(() -> {
+                try {
+                    mFuture.set(toResult(fill.get()));
+                } catch (ExecutionException | InterruptedException e) {
+                    Log.e(LOG_TAG, "Fetch did not complete", e);
+                    mFuture.set(Result.failure());
+                }
+            }, getBackgroundExecutor());
+            return mFuture;
+        }
+
+        // Only sync once the scheduler finds the current interval between syncs has passed
+        SyncScheduler.Decision decision =
+                SyncScheduler.getInstance(getApplicationContext()).decide();
+        if (!decision.syncDue) {
+            mFuture.set(Result.success());
+            return mFuture;
+        }
+
+        // do fetching
+        ListenableFuture<FetchOutcome> fetch = networkDataSource.fetchWeather(RequestPriority.BACKGROUND);
+        ListenableFuture<FetchOutcome> savedLocationsFetch =
+                networkDataSource.fetchSavedLocationsWeather(RequestPriority.BACKGROUND);
+        ListenableFuture<FetchOutcome> hourlyFetch =
+                networkDataSource.fetchHourlyWeather(RequestPriority.BACKGROUND);
+
+        // Report back to WorkManager only once all fetches have ended, with how they ended
+        Runnable onFetchDone = () -> {
+            if (!fetch.isDone() || !savedLocationsFetch.isDone() || !hourlyFetch.isDone()) return;
+            try {
+                mFuture.set(toResult(worstOf(worstOf(fetch.get(), savedLocationsFetch.get()),
+                        hourlyFetch.get())));
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(LOG_TAG, "Fetch did not complete", e);
+                mFuture.set(Result.failure());
+            }
+        };
+        fetch.addListener(onFetchDone, getBackgroundExecutor());
+        savedLocationsFetch.addListener(onFetchDone, getBackgroundExecutor());
+        hourlyFetch.addListener(onFetchDone, getBackgroundExecutor());
         return mFuture;
     }
 
+    private static FetchOutcome worstOf(FetchOutcome first, FetchOutcome second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    private static Result toResult(FetchOutcome outcome) {
+        switch (outcome) {
+            case SUCCESS:
+                return Result.success();
+            case RETRY:
+                return Result.retry();
+            default:
+                return Result.failure();
+        }
+    }
+
 }
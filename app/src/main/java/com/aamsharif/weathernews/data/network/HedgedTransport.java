@@ -0,0 +1,193 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link HttpTransport} which hedges slow requests. A request is sent to the primary host
+ * first; if it hasn't answered within the 95th percentile of the recent primary latencies, the
+ * same request is sent to one of the mirror hosts as well. Whichever answers first is used, and
+ * the other response is closed as soon as it arrives.
+ *
+ * Without mirror hosts, the hedged request goes to the primary host again. The first request
+ * still holds its connection, so the second one goes out over a connection of its own, which the
+ * server's load balancer will usually hand to another backend.
+ */
+public class HedgedTransport implements HttpTransport {
+    private static final String LOG_TAG = HedgedTransport.class.getSimpleName();
+
+    // Until enough latencies have been seen, hedge after a second
+    private static final int MIN_SAMPLES = 20;
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50;
+    private static final double HEDGE_PERCENTILE = 95;
+    private static final int MAX_SAMPLES = 200;
+
+    /**
+     * Decides whether a hedged request may be sent, e.g. whether there is quota to spare for it.
+     */
+    public interface HedgeGate {
+        boolean allowHedge(URL hedgeUrl);
+    }
+
+    private final HttpTransport mDelegate;
+    private final List<String> mMirrorHosts;
+    private final HedgeGate mHedgeGate;
+    private final Clock mClock;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    // Latencies of the first requests alone, and of the hedged requests as the caller saw them
+    private final LatencySamples mPrimaryLatencies = new LatencySamples(MAX_SAMPLES);
+    private final LatencySamples mHedgedLatencies = new LatencySamples(MAX_SAMPLES);
+    private final AtomicInteger mNextMirror = new AtomicInteger();
+    private final AtomicInteger mHedgeCount = new AtomicInteger();
+    private final AtomicInteger mHedgeWinCount = new AtomicInteger();
+
+    /**
+     * @param delegate    The transport the requests are sent with
+     * @param mirrorHosts Hosts serving the same API as the primary one, as "host" or "host:port"
+     * @param hedgeGate   Asked before every hedged request
+     */
+    public HedgedTransport(HttpTransport delegate, List<String> mirrorHosts, HedgeGate hedgeGate) {
+        this(delegate, mirrorHosts, hedgeGate, Clock.SYSTEM);
+    }
+
+    HedgedTransport(HttpTransport delegate, List<String> mirrorHosts, HedgeGate hedgeGate,
+                    Clock clock) {
+        mDelegate = delegate;
+        mMirrorHosts = new ArrayList<>(mirrorHosts);
+        mHedgeGate = hedgeGate;
+        mClock = clock;
+    }
+
+    @Override
+    public Response execute(URL url, Map<String, String> headers) throws IOException {
+        long startMillis = mClock.elapsedRealtime();
+        CompletionService<Response> completionService = new ExecutorCompletionService<>(mExecutor);
+        List<Future<Response>> pending = new ArrayList<>();
+        Future<Response> primary = completionService.submit(() -> {
+            Response response = mDelegate.execute(url, headers);
+            mPrimaryLatencies.add(mClock.elapsedRealtime() - startMillis);
+            return response;
+        });
+        pending.add(primary);
+
+        try {
+            Future<Response> done = completionService.poll(getHedgeDelayMillis(),
+                    TimeUnit.MILLISECONDS);
+            if (done == null) {
+                URL hedgeUrl = toHedgeUrl(url);
+                if (mHedgeGate.allowHedge(hedgeUrl)) {
+                    mHedgeCount.incrementAndGet();
+                    pending.add(completionService.submit(
+                            () -> mDelegate.execute(hedgeUrl, headers)));
+                }
+            }
+
+            IOException failure = null;
+            while (!pending.isEmpty()) {
+                if (done == null) done = completionService.take();
+                pending.remove(done);
+                try {
+                    Response response = done.get();
+                    if (done != primary) mHedgeWinCount.incrementAndGet();
+                    mHedgedLatencies.add(mClock.elapsedRealtime() - startMillis);
+                    return response;
+                } catch (ExecutionException e) {
+                    // Wait for the other request, if there is one
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                    done = null;
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        } finally {
+            for (Future<Response> loser : pending) discard(loser);
+        }
+    }
+
+    /**
+     * @return How long the first request is given before it is hedged
+     */
+    long getHedgeDelayMillis() {
+        if (mPrimaryLatencies.size() < MIN_SAMPLES) return DEFAULT_HEDGE_DELAY_MILLIS;
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, mPrimaryLatencies.getPercentile(HEDGE_PERCENTILE));
+    }
+
+    private URL toHedgeUrl(URL url) throws MalformedURLException {
+        if (mMirrorHosts.isEmpty()) return url;
+        String host = mMirrorHosts.get(mNextMirror.getAndIncrement() % mMirrorHosts.size());
+        return new URL(url.getProtocol() + "://" + host + url.getFile());
+    }
+
+    /**
+     * Closes the response of a request which lost the race once it arrives. A blocked
+     * HttpURLConnection can't be interrupted, so this is the earliest it can be let go of.
+     */
+    private void discard(Future<Response> loser) {
+        mExecutor.execute(() -> {
+            try {
+                loser.get().close();
+            } catch (ExecutionException | InterruptedException | IOException e) {
+                Log.d(LOG_TAG, "Discarded request did not complete", e);
+            }
+        });
+    }
+
+    /**
+     * @return Number of requests which were sent a second time, to a mirror if there is one
+     */
+    public int getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    /**
+     * @return Number of hedged requests the second request answered first
+     */
+    public int getHedgeWinCount() {
+        return mHedgeWinCount.get();
+    }
+
+    /**
+     * @param percentile The percentile, e.g. 50 or 99
+     * @return The latency of the first requests alone, -1 if nothing was measured yet
+     */
+    public long getPrimaryLatencyMillis(double percentile) {
+        return mPrimaryLatencies.getPercentile(percentile);
+    }
+
+    /**
+     * @param percentile The percentile, e.g. 50 or 99
+     * @return The latency with hedging, -1 if nothing was measured yet
+     */
+    public long getHedgedLatencyMillis(double percentile) {
+        return mHedgedLatencies.getPercentile(percentile);
+    }
+
+    /**
+     * @return The p50 and p99 latencies of the first requests alone and with hedging
+     */
+    public String getLatencyReport() {
+        return "p50 " + getPrimaryLatencyMillis(50) + " -> " + getHedgedLatencyMillis(50)
+                + " ms, p99 " + getPrimaryLatencyMillis(99) + " -> " + getHedgedLatencyMillis(99)
+                + " ms, " + getHedgeWinCount() + " of " + getHedgeCount() + " hedges won";
+    }
+}
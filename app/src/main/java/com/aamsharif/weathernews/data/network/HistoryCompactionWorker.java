@@ -0,0 +1,49 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.aamsharif.weathernews.utilities.InjectorUtils;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import androidx.annotation.NonNull;
+import androidx.concurrent.futures.ResolvableFuture;
+import androidx.work.ListenableWorker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Deletes the archived weather older than the retention period, see
+ * {@link WeatherNetworkDataSource#scheduleHistoryCompaction()}.
+ */
+public class HistoryCompactionWorker extends ListenableWorker {
+    private static final String LOG_TAG = HistoryCompactionWorker.class.getSimpleName();
+
+    /**
+     * @param appContext   The application {@link Context}
+     * @param workerParams Parameters to setup the internal state of this worker
+     */
+    public HistoryCompactionWorker(@NonNull Context appContext, @NonNull WorkerParameters workerParams) {
+        super(appContext, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<Result> startWork() {
+        ResolvableFuture<Result> future = ResolvableFuture.create();
+        ListenableFuture<Integer> compaction =
+                InjectorUtils.provideRepository(getApplicationContext()).compactHistory();
+        compaction.addListener(() -> {
+            try {
+                compaction.get();
+                future.set(Result.success());
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(LOG_TAG, "Compaction did not complete", e);
+                // Tried again on the next run
+                future.set(Result.failure());
+            }
+        }, getBackgroundExecutor());
+        return future;
+    }
+}
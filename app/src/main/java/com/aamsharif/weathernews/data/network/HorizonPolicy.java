@@ -0,0 +1,123 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decides how many days of forecast a fetch asks for. On a metered or slow network only the next
+ * few days are fetched; the rest of the {@link WeatherNetworkDataSource#NUM_DAYS} day window is
+ * filled in later, once an unmetered network is available. The stored days beyond the short
+ * horizon are kept meanwhile.
+ *
+ * Keeps an estimate of the bytes the short fetches saved, by day. The estimate is persisted, as
+ * the fetches mostly run in the short-lived process of a periodic work.
+ */
+public class HorizonPolicy {
+    private static final String LOG_TAG = HorizonPolicy.class.getSimpleName();
+
+    private static final String HORIZON_PREFS_NAME = "horizon_policy";
+    private static final String KEY_BYTES_SAVED_BY_DAY = "bytesSavedByDay";
+
+    // Today, tomorrow and the day after
+    static final int SHORT_HORIZON_DAYS = 3;
+    // The number of most recent days the bytes saved are kept for
+    private static final int MAX_DAYS_REPORTED = 7;
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static HorizonPolicy sInstance;
+    private final NetworkConditions mNetworkConditions;
+    private final SharedPreferences mStore;
+
+    HorizonPolicy(NetworkConditions networkConditions, SharedPreferences store) {
+        mNetworkConditions = networkConditions;
+        mStore = store;
+    }
+
+    public static HorizonPolicy getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    Context applicationContext = context.getApplicationContext();
+                    sInstance = new HorizonPolicy(new NetworkConditions(applicationContext),
+                            applicationContext.getSharedPreferences(HORIZON_PREFS_NAME,
+                                    Context.MODE_PRIVATE));
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return The number of days of forecast to fetch over the current network
+     */
+    int getDaysToFetch() {
+        if (mNetworkConditions.isMetered() || mNetworkConditions.isSlow()) {
+            return SHORT_HORIZON_DAYS;
+        }
+        return WeatherNetworkDataSource.NUM_DAYS;
+    }
+
+    /**
+     * Records a fetch of fewer than the full number of days. The bytes the missing days would
+     * have taken are estimated from the size of the days which were fetched.
+     *
+     * @param transferredBytes The bytes the response took over the wire
+     * @param daysFetched      The number of days the response covered
+     */
+    synchronized void recordShortFetch(long transferredBytes, int daysFetched) {
+        if (daysFetched <= 0) return;
+        long savedBytes = transferredBytes * (WeatherNetworkDataSource.NUM_DAYS - daysFetched)
+                / daysFetched;
+        long today = WeatherNewsDateUtils.getNormalizedUtcMsForToday();
+        TreeMap<Long, Long> bytesSavedByDay = readBytesSavedByDay();
+        Long savedToday = bytesSavedByDay.get(today);
+        bytesSavedByDay.put(today, (savedToday != null ? savedToday : 0) + savedBytes);
+        while (bytesSavedByDay.size() > MAX_DAYS_REPORTED) bytesSavedByDay.pollFirstEntry();
+
+        JSONObject stored = new JSONObject();
+        try {
+            for (Map.Entry<Long, Long> day : bytesSavedByDay.entrySet()) {
+                stored.put(String.valueOf(day.getKey()), (long) day.getValue());
+            }
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Could not store the bytes saved", e);
+            return;
+        }
+        mStore.edit().putString(KEY_BYTES_SAVED_BY_DAY, stored.toString()).apply();
+        Log.d(LOG_TAG, "Fetched " + daysFetched + " days, about " + savedBytes + " bytes saved");
+    }
+
+    /**
+     * @return Estimated bytes saved by fetching fewer days, by normalized UTC day, for the most
+     * recent days, oldest first
+     */
+    public synchronized Map<Long, Long> getBytesSavedByDay() {
+        return new LinkedHashMap<>(readBytesSavedByDay());
+    }
+
+    private TreeMap<Long, Long> readBytesSavedByDay() {
+        TreeMap<Long, Long> bytesSavedByDay = new TreeMap<>();
+        try {
+            JSONObject stored = new JSONObject(mStore.getString(KEY_BYTES_SAVED_BY_DAY, "{}"));
+            for (Iterator<String> days = stored.keys(); days.hasNext(); ) {
+                String day = days.next();
+                bytesSavedByDay.put(Long.parseLong(day), stored.getLong(day));
+            }
+        } catch (JSONException | NumberFormatException e) {
+            Log.w(LOG_TAG, "Dropping unreadable bytes saved", e);
+        }
+        return bytesSavedByDay;
+    }
+}
@@ -0,0 +1,27 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the weather server answers with a status code we cannot use.
+ */
+public class HttpStatusException extends IOException {
+
+    private final int mResponseCode;
+    // Seconds the server asked us to wait before trying again, -1 if it didn't say
+    private final long mRetryAfterSeconds;
+
+    HttpStatusException(int responseCode, long retryAfterSeconds, String message) {
+        super(message);
+        mResponseCode = responseCode;
+        mRetryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    public long getRetryAfterSeconds() {
+        return mRetryAfterSeconds;
+    }
+}
@@ -0,0 +1,47 @@
+package com.aamsharif.weathernews.data.network;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Carries the HTTP requests of {@link NetworkUtils}. The default implementation is
+ * {@link UrlConnectionTransport}; a test double or a transport talking to an in-process server
+ * can be installed with {@link NetworkUtils#setHttpTransport(HttpTransport)}.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends a GET request and returns as soon as the response headers have arrived.
+     *
+     * @param url     The URL to request
+     * @param headers Request headers to send along
+     * @return The response, which must be closed once its body has been read
+     * @throws IOException Related to network, including timeouts
+     */
+    Response execute(URL url, Map<String, String> headers) throws IOException;
+
+    /**
+     * A response whose body has not been read yet. Closing it after the body has been read in
+     * full lets the transport reuse the connection for the next request.
+     */
+    interface Response extends Closeable {
+        int getResponseCode() throws IOException;
+
+        @Nullable
+        String getHeaderField(String name);
+
+        InputStream getBody() throws IOException;
+
+        /**
+         * @return Where the time went up to the response headers, which the reader of the body
+         * completes with the download, null if the transport doesn't time its requests
+         */
+        @Nullable
+        RequestTiming getTiming();
+    }
+}
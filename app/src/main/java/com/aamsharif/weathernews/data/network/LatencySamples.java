@@ -0,0 +1,43 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies of some kind of request, from which percentiles are taken.
+ */
+class LatencySamples {
+
+    private final long[] mSamples;
+    private int mCount;
+    private int mNext;
+
+    /**
+     * @param capacity The number of most recent samples kept
+     */
+    LatencySamples(int capacity) {
+        mSamples = new long[capacity];
+    }
+
+    synchronized void add(long millis) {
+        mSamples[mNext] = millis;
+        mNext = (mNext + 1) % mSamples.length;
+        if (mCount < mSamples.length) mCount++;
+    }
+
+    synchronized int size() {
+        return mCount;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency below which the given percentage of the samples fall, -1 if there are
+     * no samples yet
+     */
+    synchronized long getPercentile(double percentile) {
+        if (mCount == 0) return -1;
+        long[] sorted = Arrays.copyOf(mSamples, mCount);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * mCount);
+        return sorted[Math.max(0, Math.min(mCount - 1, rank - 1))];
+    }
+}
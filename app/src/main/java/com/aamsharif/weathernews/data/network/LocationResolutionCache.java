@@ -0,0 +1,181 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.annotation.Nullable;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Remembers what OpenWeatherMap resolved each location query to, in a store of its own: the id and
+ * coordinates of the city, along with the day the full forecast of the location was last
+ * downloaded. Once a query has been resolved, its forecast is requested by coordinates.
+ */
+public class LocationResolutionCache {
+    private static final String LOG_TAG = LocationResolutionCache.class.getSimpleName();
+
+    private static final String RESOLUTION_PREFS_NAME = "location_resolution";
+
+    private static final String KEY_CITY_ID = "cityId";
+    private static final String KEY_LATITUDE = "lat";
+    private static final String KEY_LONGITUDE = "lon";
+    private static final String KEY_FORECAST_DAY = "forecastDay";
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static LocationResolutionCache sInstance;
+    private final SharedPreferences mStore;
+
+    private LocationResolutionCache(Context context) {
+        mStore = context.getSharedPreferences(RESOLUTION_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static LocationResolutionCache getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new LocationResolutionCache(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param locationQuery The location, as the user entered it
+     * @return What the location was resolved to, null if it hasn't been yet
+     */
+    @Nullable
+    synchronized Entry get(String locationQuery) {
+        String json = mStore.getString(locationQuery, null);
+        if (json == null) return null;
+        try {
+            JSONObject object = new JSONObject(json);
+            return new Entry(object.optInt(KEY_CITY_ID, -1),
+                    object.optDouble(KEY_LATITUDE, Double.NaN),
+                    object.optDouble(KEY_LONGITUDE, Double.NaN),
+                    object.optLong(KEY_FORECAST_DAY, 0));
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Dropping unreadable entry for " + locationQuery, e);
+            mStore.edit().remove(locationQuery).apply();
+            return null;
+        }
+    }
+
+    /**
+     * @param locationQuery The location, as the user entered it
+     * @return The latitude and longitude the location was resolved to, null if it hasn't been yet
+     */
+    @Nullable
+    public double[] getCoordinates(String locationQuery) {
+        Entry entry = get(locationQuery);
+        if (entry == null || !entry.hasCoordinates()) return null;
+        return new double[]{entry.latitude, entry.longitude};
+    }
+
+    /**
+     * Records what the location was resolved to, as reported along with its forecast. The entry
+     * is only written if the resolution changed.
+     *
+     * @param locationQuery The location, as the user entered it
+     * @param response      The forecast of the location
+     */
+    synchronized void putResolution(String locationQuery, WeatherResponse response) {
+        Entry previous = get(locationQuery);
+        long forecastDay = previous != null ? previous.forecastDay : 0;
+        put(locationQuery, response, forecastDay, previous);
+    }
+
+    /**
+     * Records what the location was resolved to, and that its full forecast has just been
+     * downloaded.
+     *
+     * @param locationQuery The location, as the user entered it
+     * @param response      The full forecast of the location
+     */
+    synchronized void putForecastDownloaded(String locationQuery, WeatherResponse response) {
+        put(locationQuery, response, WeatherNewsDateUtils.getNormalizedUtcMsForToday(),
+                get(locationQuery));
+    }
+
+    private void put(String locationQuery, WeatherResponse response, long forecastDay,
+                     @Nullable Entry previous) {
+        int cityId = response.getCityId() != -1 ? response.getCityId()
+                : previous != null ? previous.cityId : -1;
+        double latitude = response.hasCityCoord() ? response.getCityLatitude()
+                : previous != null ? previous.latitude : Double.NaN;
+        double longitude = response.hasCityCoord() ? response.getCityLongitude()
+                : previous != null ? previous.longitude : Double.NaN;
+        Entry entry = new Entry(cityId, latitude, longitude, forecastDay);
+        if (entry.equals(previous)) return;
+
+        try {
+            JSONObject object = new JSONObject()
+                    .put(KEY_CITY_ID, entry.cityId)
+                    .put(KEY_FORECAST_DAY, entry.forecastDay);
+            if (entry.hasCoordinates()) {
+                object.put(KEY_LATITUDE, entry.latitude).put(KEY_LONGITUDE, entry.longitude);
+            }
+            mStore.edit().putString(locationQuery, object.toString()).apply();
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Could not store entry for " + locationQuery, e);
+        }
+    }
+
+    /**
+     * What a location query was resolved to.
+     */
+    static class Entry {
+        // OpenWeatherMap's id of the city, -1 if unknown
+        final int cityId;
+        // Coordinates of the city, NaN if unknown
+        final double latitude;
+        final double longitude;
+        // Normalized UTC day the full forecast was last downloaded, 0 if never
+        final long forecastDay;
+
+        Entry(int cityId, double latitude, double longitude, long forecastDay) {
+            this.cityId = cityId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.forecastDay = forecastDay;
+        }
+
+        boolean hasCoordinates() {
+            return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+        }
+
+        /**
+         * @return true if the full forecast was downloaded today, so that only today's weather
+         * needs refreshing
+         */
+        boolean hasForecastFromToday() {
+            return forecastDay == WeatherNewsDateUtils.getNormalizedUtcMsForToday();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return cityId == other.cityId
+                    && Double.compare(latitude, other.latitude) == 0
+                    && Double.compare(longitude, other.longitude) == 0
+                    && forecastDay == other.forecastDay;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = cityId;
+            long bits = Double.doubleToLongBits(latitude);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            bits = Double.doubleToLongBits(longitude);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            return 31 * result + (int) (forecastDay ^ (forecastDay >>> 32));
+        }
+    }
+}
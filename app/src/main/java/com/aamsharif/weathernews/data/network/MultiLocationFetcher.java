@@ -0,0 +1,220 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.util.Log;
+import androidx.concurrent.futures.ResolvableFuture;
+
+import com.aamsharif.weathernews.data.database.ForecastBatch;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the forecasts of several locations in parallel.
+ *
+ * The work is split into tasks, each covering one or more locations. At most
+ * {@code maxConcurrency} tasks run at a time; as soon as one is done, the next one is started. A
+ * task which hasn't finished within {@code deadlineMillis} of being started is given up on, so a
+ * full refresh takes about as long as the slowest task that makes its deadline rather than the
+ * sum of all of them. A task given up on still holds its slot until its request returns, so no
+ * more than {@code maxConcurrency} requests are ever in flight.
+ */
+class MultiLocationFetcher {
+    private static final String LOG_TAG = MultiLocationFetcher.class.getSimpleName();
+
+    /**
+     * Fetches the weather of one or more locations, usually with a single request.
+     */
+    interface FetchTask {
+        /**
+         * @return The locations the task covers
+         */
+        List<String> getLocations();
+
+        /**
+         * @return The new weather of the locations. Locations without any rows are unchanged.
+         * @throws Exception If the weather cannot be fetched
+         */
+        ForecastBatch fetch() throws Exception;
+
+        /**
+         * Called once the weather the task fetched has been persisted, so that its response can
+         * be committed to the {@link ResponseCache}.
+         */
+        void onPersisted();
+    }
+
+    private final Executor mNetworkIO;
+    private final ScheduledExecutorService mScheduler;
+    private final int mMaxConcurrency;
+    private final long mDeadlineMillis;
+
+    /**
+     * @param networkIO      Executor the downloads run on
+     * @param scheduler      Executor the deadlines are kept on
+     * @param maxConcurrency Maximum number of tasks run at the same time
+     * @param deadlineMillis Time allowed for each task, from the moment it is started
+     */
+    MultiLocationFetcher(Executor networkIO, ScheduledExecutorService scheduler,
+                         int maxConcurrency, long deadlineMillis) {
+        mNetworkIO = networkIO;
+        mScheduler = scheduler;
+        mMaxConcurrency = maxConcurrency;
+        mDeadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * @param tasks The tasks to run
+     * @return Future completed once every task has finished, has failed or has missed its deadline
+     */
+    ListenableFuture<Results> fetchAll(List<FetchTask> tasks) {
+        ResolvableFuture<Results> done = ResolvableFuture.create();
+        Results results = new Results();
+        if (tasks.isEmpty()) {
+            done.set(results);
+            return done;
+        }
+
+        Batch batch = new Batch(new ConcurrentLinkedQueue<>(tasks), tasks.size(), results, done);
+        int lanes = Math.min(mMaxConcurrency, tasks.size());
+        for (int i = 0; i < lanes; i++) startNext(batch);
+        return done;
+    }
+
+    private void startNext(Batch batch) {
+        FetchTask task = batch.pending.poll();
+        if (task == null) return;
+
+        // Whichever comes first, the fetch or the deadline, settles the task. Only the fetch
+        // returning frees its slot for the next task.
+        AtomicBoolean settled = new AtomicBoolean();
+        ScheduledFuture<?> deadline = mScheduler.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                Log.w(LOG_TAG, "Fetch of " + task.getLocations() + " missed its deadline");
+                batch.results.addFailed(task.getLocations(), true);
+                settle(batch);
+            }
+        }, mDeadlineMillis, TimeUnit.MILLISECONDS);
+
+        mNetworkIO.execute(() -> {
+            ForecastBatch weather = null;
+            Exception error = null;
+            try {
+                weather = task.fetch();
+            } catch (Exception e) {
+                error = e;
+            }
+            if (!settled.compareAndSet(false, true)) {
+                startNext(batch);
+                return;
+            }
+            deadline.cancel(false);
+
+            if (error != null) {
+                Log.e(LOG_TAG, "Fetch of " + task.getLocations() + " failed", error);
+                batch.results.addFailed(task.getLocations(),
+                        CircuitBreaker.isServerFailure(error));
+            } else {
+                for (String location : task.getLocations()) {
+                    if (!weather.containsLocation(location)) batch.results.addUnchanged(location);
+                }
+                batch.results.addForecasts(weather);
+                batch.results.addSucceeded(task);
+            }
+            settle(batch);
+            startNext(batch);
+        });
+    }
+
+    private void settle(Batch batch) {
+        if (batch.remaining.decrementAndGet() == 0) batch.done.set(batch.results);
+    }
+
+    private static class Batch {
+        final Queue<FetchTask> pending;
+        final AtomicInteger remaining;
+        final Results results;
+        final ResolvableFuture<Results> done;
+
+        Batch(Queue<FetchTask> pending, int size, Results results, ResolvableFuture<Results> done) {
+            this.pending = pending;
+            this.remaining = new AtomicInteger(size);
+            this.results = results;
+            this.done = done;
+        }
+    }
+
+    /**
+     * What became of each location of a refresh. A forecast may cover only some of the days of a
+     * location, e.g. only today.
+     */
+    static class Results {
+        // The rows of every task, gathered so that they can be written in one go
+        private final ForecastBatch mForecasts = new ForecastBatch();
+        private final List<String> mUnchanged = new ArrayList<>();
+        private final List<String> mFailed = new ArrayList<>();
+        private final List<FetchTask> mSucceeded = new ArrayList<>();
+        private boolean mServerFailed;
+
+        synchronized void addForecasts(ForecastBatch forecasts) {
+            mForecasts.addAll(forecasts);
+        }
+
+        synchronized void addUnchanged(String location) {
+            mUnchanged.add(location);
+        }
+
+        synchronized void addFailed(List<String> locations, boolean serverFailure) {
+            mFailed.addAll(locations);
+            mServerFailed |= serverFailure;
+        }
+
+        synchronized void addSucceeded(FetchTask task) {
+            mSucceeded.add(task);
+        }
+
+        /**
+         * @return The new forecasts of all the locations. Only read once every task has finished.
+         */
+        synchronized ForecastBatch getForecasts() {
+            return mForecasts;
+        }
+
+        /**
+         * @return The locations whose stored forecast is still current
+         */
+        synchronized List<String> getUnchanged() {
+            return new ArrayList<>(mUnchanged);
+        }
+
+        /**
+         * @return The locations which failed or missed their deadline
+         */
+        synchronized List<String> getFailed() {
+            return new ArrayList<>(mFailed);
+        }
+
+        /**
+         * @return Whether any task failed because of the server, see
+         * {@link CircuitBreaker#isServerFailure(Exception)}, or missed its deadline
+         */
+        synchronized boolean hasServerFailure() {
+            return mServerFailed;
+        }
+
+        /**
+         * @return The tasks which made their deadline without failing
+         */
+        synchronized List<FetchTask> getSucceeded() {
+            return new ArrayList<>(mSucceeded);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+import androidx.core.net.ConnectivityManagerCompat;
+
+/**
+ * Tells what kind of network the requests currently go over. Tests pass a subclass reporting the
+ * network they simulate.
+ */
+class NetworkConditions {
+    private final Context mContext;
+
+    NetworkConditions(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return true if the active network is metered, e.g. mobile data
+     */
+    boolean isMetered() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivityManager != null
+                && ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    /**
+     * @return true if the active network is a 2G mobile connection
+     */
+    boolean isSlow() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) return false;
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || networkInfo.getType() != ConnectivityManager.TYPE_MOBILE) {
+            return false;
+        }
+        switch (networkInfo.getSubtype()) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
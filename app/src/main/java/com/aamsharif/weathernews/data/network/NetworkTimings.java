@@ -0,0 +1,224 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a histogram of every phase of the requests to each endpoint, see {@link RequestTiming},
+ * so that a slow sync can be put down to the DNS, the connection, the server or the transfer.
+ * Everything is kept in memory only.
+ */
+public class NetworkTimings {
+    private static final String LOG_TAG = NetworkTimings.class.getSimpleName();
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static NetworkTimings sInstance;
+
+    // By endpoint, in the order they were first requested
+    private final Map<String, EndpointTimings> mEndpointTimings = new LinkedHashMap<>();
+
+    private NetworkTimings() {
+    }
+
+    public static NetworkTimings getInstance() {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new NetworkTimings();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param endpoint The endpoint the request went to, e.g. the path of its URL
+     * @param timing   Where the time of the request went
+     */
+    synchronized void record(String endpoint, RequestTiming timing) {
+        EndpointTimings endpointTimings = mEndpointTimings.get(endpoint);
+        if (endpointTimings == null) {
+            endpointTimings = new EndpointTimings();
+            mEndpointTimings.put(endpoint, endpointTimings);
+        }
+        endpointTimings.add(timing);
+        Log.v(LOG_TAG, endpoint + ": " + timing);
+    }
+
+    /**
+     * @return A copy of the histograms, by endpoint
+     */
+    public synchronized Map<String, EndpointTimings> getEndpointTimings() {
+        Map<String, EndpointTimings> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointTimings> entry : mEndpointTimings.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+
+    /**
+     * @return The median and 95th percentile of every phase and the mean response size, by
+     * endpoint
+     */
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, EndpointTimings> entry : mEndpointTimings.entrySet()) {
+            EndpointTimings timings = entry.getValue();
+            report.append(entry.getKey()).append(" (").append(timings.getRequestCount())
+                    .append(" requests, ").append(timings.getMeanResponseBytes())
+                    .append(" bytes on average)\n");
+            appendPhase(report, "dns estimate", timings.dns);
+            appendPhase(report, "connect", timings.connect);
+            appendPhase(report, "tls", timings.tls);
+            appendPhase(report, "ttfb", timings.ttfb);
+            appendPhase(report, "download", timings.download);
+        }
+        return report.toString();
+    }
+
+    private static void appendPhase(StringBuilder report, String phase, Histogram histogram) {
+        report.append("  ").append(phase).append(": ");
+        if (histogram.getCount() == 0) {
+            report.append("-\n");
+            return;
+        }
+        report.append("p50 ").append(histogram.getPercentile(50))
+                .append(" ms, p95 ").append(histogram.getPercentile(95))
+                .append(" ms (").append(histogram.getCount()).append(")\n");
+    }
+
+    /**
+     * The histograms of the requests to a single endpoint.
+     */
+    public static class EndpointTimings {
+        // Only the first request to each host has one, see RequestTiming#getDnsMillis()
+        public final Histogram dns;
+        public final Histogram connect;
+        public final Histogram tls;
+        public final Histogram ttfb;
+        public final Histogram download;
+        private long mRequestCount;
+        private long mSizedResponseCount;
+        private long mTotalResponseBytes;
+
+        EndpointTimings() {
+            this(new Histogram(), new Histogram(), new Histogram(), new Histogram(),
+                    new Histogram());
+        }
+
+        private EndpointTimings(Histogram dns, Histogram connect, Histogram tls, Histogram ttfb,
+                                Histogram download) {
+            this.dns = dns;
+            this.connect = connect;
+            this.tls = tls;
+            this.ttfb = ttfb;
+            this.download = download;
+        }
+
+        void add(RequestTiming timing) {
+            mRequestCount++;
+            // Phases which didn't happen are left out rather than counted as 0 ms
+            if (timing.dnsMillis >= 0) dns.add(timing.dnsMillis);
+            if (timing.connectMillis >= 0) connect.add(timing.connectMillis);
+            if (timing.tlsMillis >= 0) tls.add(timing.tlsMillis);
+            if (timing.ttfbMillis >= 0) ttfb.add(timing.ttfbMillis);
+            if (timing.downloadMillis >= 0) download.add(timing.downloadMillis);
+            if (timing.responseBytes >= 0) {
+                mSizedResponseCount++;
+                mTotalResponseBytes += timing.responseBytes;
+            }
+        }
+
+        EndpointTimings copy() {
+            EndpointTimings copy = new EndpointTimings(dns.copy(), connect.copy(), tls.copy(),
+                    ttfb.copy(), download.copy());
+            copy.mRequestCount = mRequestCount;
+            copy.mSizedResponseCount = mSizedResponseCount;
+            copy.mTotalResponseBytes = mTotalResponseBytes;
+            return copy;
+        }
+
+        public long getRequestCount() {
+            return mRequestCount;
+        }
+
+        /**
+         * @return The mean size of the response bodies as they came over the wire, -1 if none
+         * was read yet
+         */
+        public long getMeanResponseBytes() {
+            return mSizedResponseCount == 0 ? -1 : mTotalResponseBytes / mSizedResponseCount;
+        }
+    }
+
+    /**
+     * Counts of durations in fixed buckets, each about twice as wide as the one before. Takes the
+     * same little memory however many requests are added.
+     */
+    public static class Histogram {
+        // Upper bounds of the buckets, in milliseconds. The last bucket has no upper bound.
+        private static final long[] BUCKET_BOUNDS =
+                {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+        private final long[] mCounts;
+        private long mCount;
+        private long mMaxMillis;
+
+        Histogram() {
+            mCounts = new long[BUCKET_BOUNDS.length + 1];
+        }
+
+        void add(long millis) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) bucket++;
+            mCounts[bucket]++;
+            mCount++;
+            mMaxMillis = Math.max(mMaxMillis, millis);
+        }
+
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(mCounts, 0, copy.mCounts, 0, mCounts.length);
+            copy.mCount = mCount;
+            copy.mMaxMillis = mMaxMillis;
+            return copy;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @param percentile The percentile, between 0 and 100
+         * @return The upper bound of the bucket the percentile falls in, or the longest duration
+         * seen if that is lower, -1 if nothing was added yet
+         */
+        public long getPercentile(double percentile) {
+            if (mCount == 0) return -1;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_BOUNDS.length; bucket++) {
+                seen += mCounts[bucket];
+                if (seen >= rank) return Math.min(BUCKET_BOUNDS[bucket], mMaxMillis);
+            }
+            return mMaxMillis;
+        }
+
+        /**
+         * @return The number of durations in each bucket, the last one being the open ended bucket
+         */
+        public long[] getBucketCounts() {
+            return mCounts.clone();
+        }
+
+        /**
+         * @return Upper bounds of the buckets, in milliseconds
+         */
+        public static long[] getBucketBounds() {
+            return BUCKET_BOUNDS.clone();
+        }
+    }
+}
@@ -6,15 +6,29 @@ package com.aamsharif.weathernews.data.network;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+import com.aamsharif.weathernews.BuildConfig;
 import com.aamsharif.weathernews.data.WeatherNewsPreferences;
 
 /**
@@ -26,13 +40,18 @@ public final class NetworkUtils {
 
     // Weather News uses OpenWeatherMap's API
     private static final String FORECAST_BASE_URL = "http://api.openweathermap.org/data/2.5/forecast/daily";
+    // Forecast in 3-hour steps over the next five days
+    private static final String HOURLY_BASE_URL = "http://api.openweathermap.org/data/2.5/forecast";
+    // Current weather of several cities at once, by city id
+    private static final String GROUP_BASE_URL = "http://api.openweathermap.org/data/2.5/group";
+
+    // The number of city ids the group endpoint accepts in a single request
+    static final int MAX_GROUP_SIZE = 20;
 
     // The format we want our API to return
     private static final String format = "json";
     // The units we want our API to return
     private static final String units = "metric";
-    // The number of days we want our API to return
-    private static final int numDays = 14;
     // The valid APPID we are registered with OpenWeatherMap's API
     private static final String key = "3267e9a78f37c9405efb1271038f632c";
 
@@ -42,6 +61,9 @@ public final class NetworkUtils {
     private static final String LAT_PARAM = "lat";
     private static final String LON_PARAM = "lon";
 
+    // The id parameter takes a comma separated list of city ids
+    private static final String ID_PARAM = "id";
+
     // The format parameter allows us to designate whether we want JSON or XML from our API
     private static final String FORMAT_PARAM = "mode";
     // The units parameter allows us to designate whether we want metric units or imperial units
@@ -51,23 +73,66 @@ public final class NetworkUtils {
     // The required API key parameter allows us a valid access to OpenWeatherMap's API
     private static final String API_KEY_PARAM = "appid";
 
+    // Headers used to make a request conditional on the last response we have seen
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+    // The compressed encodings we are able to decode
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+    // Sent along with 429 and 503 responses to tell us when to come back
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ACCEPTED_ENCODINGS = ENCODING_GZIP + ", " + ENCODING_DEFLATE;
+
+    // Timeouts of every request. The total timeout bounds how long a slow response can hold on to
+    // one of the network threads.
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(20);
+    private static final long TOTAL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    // Hosts serving the same API as api.openweathermap.org, e.g. caching proxies, set with
+    // FORECAST_MIRROR_HOSTS in the build. Requests the primary host is slow to answer are sent to
+    // these as well, or to the primary host again if there are none.
+    private static final List<String> MIRROR_HOSTS = parseHosts(BuildConfig.FORECAST_MIRROR_HOSTS);
+
+    private static volatile HttpTransport sTransport = new HedgedTransport(
+            new UrlConnectionTransport(CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS,
+                    TOTAL_TIMEOUT_MILLIS),
+            MIRROR_HOSTS,
+            // A hedged request is only sent if it fits in the quota without waiting
+            hedgeUrl -> RequestQuota.getInstance().tryAcquire(key, hedgeUrl.getPath()));
+
     /**
-     * Retrieves the proper URL to query for the weather data. This method will "decide" which URL
-     * to build and return it.
+     * Retrieves the proper URL to query for the weather data of the preferred location.
      *
      * @param context used to access other Utility methods
      * @return URL to query weather service
      */
     public static URL getUrl(Context context) {
-        if (WeatherNewsPreferences.isLocationLatLonAvailable(context)) {
-            double[] preferredCoordinates = WeatherNewsPreferences.getLocationCoordinates(context);
-            double latitude = preferredCoordinates[0];
-            double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
-        } else {
-            String locationQuery = WeatherNewsPreferences.getPreferredWeatherLocation(context);
-            return buildUrlWithLocationQuery(locationQuery);
+        return getUrl(context, WeatherNewsPreferences.getPreferredWeatherLocation(context),
+                WeatherNetworkDataSource.NUM_DAYS);
+    }
+
+    /**
+     * Retrieves the proper URL to query for the weather data of a location. A location which
+     * OpenWeatherMap has resolved before is queried by the coordinates it was resolved to, so only
+     * the very first request for a location is made by name.
+     *
+     * @param context       used to access the {@link LocationResolutionCache}
+     * @param locationQuery The location, as the user entered it
+     * @param numDays       The number of days of forecast to ask for, starting with today
+     * @return URL to query weather service
+     */
+    static URL getUrl(Context context, String locationQuery, int numDays) {
+        double[] coordinates = LocationResolutionCache.getInstance(context)
+                .getCoordinates(locationQuery);
+        if (coordinates != null) {
+            return buildUrlWithLatitudeLongitude(coordinates[0], coordinates[1], numDays);
         }
+        return buildUrlWithLocationQuery(locationQuery, numDays);
     }
 
     /**
@@ -76,9 +141,11 @@ public final class NetworkUtils {
      *
      * @param latitude  The latitude of the location
      * @param longitude The longitude of the location
+     * @param numDays   The number of days of forecast to ask for
      * @return The Url to use to query the weather server.
      */
-    private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude) {
+    private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude,
+                                                     int numDays) {
         Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
                 .appendQueryParameter(LAT_PARAM, String.valueOf(latitude))
                 .appendQueryParameter(LON_PARAM, String.valueOf(longitude))
@@ -103,9 +170,10 @@ public final class NetworkUtils {
      * on the query capabilities of the weather provider that we are using.
      *
      * @param locationQuery The location that will be queried for.
+     * @param numDays       The number of days of forecast to ask for
      * @return The URL to use to query the weather server.
      */
-    private static URL buildUrlWithLocationQuery(String locationQuery) {
+    private static URL buildUrlWithLocationQuery(String locationQuery, int numDays) {
         Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
                 .appendQueryParameter(QUERY_PARAM, locationQuery)
                 .appendQueryParameter(FORMAT_PARAM, format)
@@ -124,6 +192,119 @@ public final class NetworkUtils {
         }
     }
 
+    /**
+     * Builds the URL used to get the forecast of a location in 3-hour steps. Like
+     * {@link #getUrl(Context, String, int)}, a location which has been resolved before is queried
+     * by its coordinates.
+     *
+     * @param context       used to access the {@link LocationResolutionCache}
+     * @param locationQuery The location, as the user entered it
+     * @return The URL to use to query the weather server.
+     */
+    static URL getHourlyUrl(Context context, String locationQuery) {
+        Uri.Builder builder = Uri.parse(HOURLY_BASE_URL).buildUpon();
+        double[] coordinates = LocationResolutionCache.getInstance(context)
+                .getCoordinates(locationQuery);
+        if (coordinates != null) {
+            builder.appendQueryParameter(LAT_PARAM, String.valueOf(coordinates[0]))
+                    .appendQueryParameter(LON_PARAM, String.valueOf(coordinates[1]));
+        } else {
+            builder.appendQueryParameter(QUERY_PARAM, locationQuery);
+        }
+        Uri hourlyQueryUri = builder
+                .appendQueryParameter(FORMAT_PARAM, format)
+                .appendQueryParameter(UNITS_PARAM, units)
+                .appendQueryParameter(API_KEY_PARAM, key)
+                .build();
+
+        try {
+            URL hourlyQueryUrl = new URL(hourlyQueryUri.toString());
+            Log.v(TAG, "URL: " + hourlyQueryUrl);
+            return hourlyQueryUrl;
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Builds the URL used to get the current weather of several cities with one request to the
+     * group endpoint.
+     *
+     * @param cityIds OpenWeatherMap's ids of the cities, at most {@link #MAX_GROUP_SIZE} of them
+     * @return The URL to use to query the weather server.
+     */
+    static URL buildGroupUrl(List<Integer> cityIds) {
+        if (cityIds.size() > MAX_GROUP_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_GROUP_SIZE + " cities per group");
+        }
+        Uri groupQueryUri = Uri.parse(GROUP_BASE_URL).buildUpon()
+                .appendQueryParameter(ID_PARAM, TextUtils.join(",", cityIds))
+                .appendQueryParameter(UNITS_PARAM, units)
+                .appendQueryParameter(API_KEY_PARAM, key)
+                .build();
+
+        try {
+            URL groupQueryUrl = new URL(groupQueryUri.toString());
+            Log.v(TAG, "URL: " + groupQueryUrl);
+            return groupQueryUrl;
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param hosts Hosts separated by commas, may be empty
+     * @return The hosts, without surrounding whitespace
+     */
+    private static List<String> parseHosts(String hosts) {
+        List<String> parsed = new ArrayList<>();
+        for (String host : hosts.split(",")) {
+            if (!host.trim().isEmpty()) parsed.add(host.trim());
+        }
+        return parsed;
+    }
+
+    /**
+     * Splits cities into groups small enough for one request to the group endpoint each, so that
+     * N cities take ceil(N / {@link #MAX_GROUP_SIZE}) requests.
+     *
+     * @param locationsByCityId The locations, by city id, in the order they are requested in
+     * @return The groups, each with at most {@link #MAX_GROUP_SIZE} cities
+     */
+    static List<Map<Integer, String>> splitIntoGroups(Map<Integer, String> locationsByCityId) {
+        List<Map<Integer, String>> groups = new ArrayList<>();
+        Map<Integer, String> group = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> location : locationsByCityId.entrySet()) {
+            group.put(location.getKey(), location.getValue());
+            if (group.size() == MAX_GROUP_SIZE) {
+                groups.add(group);
+                group = new LinkedHashMap<>();
+            }
+        }
+        if (!group.isEmpty()) groups.add(group);
+        return groups;
+    }
+
+    /**
+     * Replaces the transport every request goes through, e.g. with a test double or one talking to
+     * an in-process server.
+     *
+     * @param transport The transport to use from now on
+     */
+    @VisibleForTesting
+    public static void setHttpTransport(HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    /**
+     * @return The transport every request goes through, e.g. to read its latency report
+     */
+    public static HttpTransport getHttpTransport() {
+        return sTransport;
+    }
+
     /**
      * This method returns the entire result from the HTTP response.
      *
@@ -132,22 +313,182 @@ public final class NetworkUtils {
      * @throws IOException Related to network and stream reading
      */
     public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-        try {
-            InputStream in = urlConnection.getInputStream();
+        try (HttpTransport.Response httpResponse = execute(url,
+                Collections.<String, String>emptyMap(), RequestPriority.BACKGROUND)) {
+            CountingInputStream in = new CountingInputStream(httpResponse.getBody());
+            long bodyStartMillis = SystemClock.elapsedRealtime();
+            try {
+                Scanner scanner = new Scanner(in);
+                scanner.useDelimiter("\\A");
+
+                boolean hasInput = scanner.hasNext();
+                String response = null;
+                if (hasInput) {
+                    response = scanner.next();
+                }
+                scanner.close();
+                return response;
+            } finally {
+                recordTiming(url, httpResponse, bodyStartMillis, in.getCount());
+            }
+        }
+    }
+
+    /**
+     * Reads the response from the HTTP URL as a stream. Unlike
+     * {@link #getResponseFromHttpUrl(URL)}, the body is never copied into a String; the reader
+     * consumes it straight from the connection.
+     *
+     * The request is skipped while the last response to the same URL is still fresh according to
+     * its Cache-Control max-age, and is otherwise made conditional on the ETag and Last-Modified
+     * of that response. In both of those cases, the reader is not called. Only responses
+     * committed to the {@link ResponseCache} once they were stored count, so the caller has to
+     * commit the URL after writing what the reader returned.
+     *
+     * @param context  used to access the {@link ResponseCache}
+     * @param url      The URL to fetch the HTTP response from.
+     * @param priority How urgently the response is wanted, see {@link RequestQuota}
+     * @param reader   Consumes the response stream
+     * @return Whatever the reader made of the response, null if the last response is unchanged
+     * @throws IOException Related to network and stream reading
+     */
+    static <T> T readResponseFromHttpUrl(Context context, URL url, RequestPriority priority,
+                                         ResponseReader<T> reader) throws IOException {
+        return readResponse(ResponseCache.getInstance(context), url, priority, reader);
+    }
+
+    /**
+     * Like {@link #readResponseFromHttpUrl(Context, URL, RequestPriority, ResponseReader)}, but
+     * the {@link ResponseCache} is neither consulted nor updated, so the reader is always called.
+     * Used for speculative requests whose response may never be stored, which must not make a
+     * later request to the same URL conditional.
+     */
+    static <T> T readUncachedResponseFromHttpUrl(URL url, RequestPriority priority,
+                                                 ResponseReader<T> reader) throws IOException {
+        return readResponse(null, url, priority, reader);
+    }
+
+    private static <T> T readResponse(@Nullable ResponseCache cache, URL url,
+                                      RequestPriority priority,
+                                      ResponseReader<T> reader) throws IOException {
+        String cacheKey = url.toString();
+        ResponseCache.Entry cached = cache != null ? cache.get(cacheKey) : null;
+        if (cached != null && cached.isFresh()) {
+            cache.recordHit();
+            Log.d(TAG, "Cached response is still fresh");
+            return null;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        // Asking for an encoding ourselves turns off the transparent gzip handling of
+        // HttpURLConnection, which is what lets us count the compressed bytes
+        headers.put(ACCEPT_ENCODING_HEADER, ACCEPTED_ENCODINGS);
+        if (cached != null) {
+            if (cached.etag != null) headers.put(IF_NONE_MATCH_HEADER, cached.etag);
+            if (cached.lastModified != null) headers.put(IF_MODIFIED_SINCE_HEADER, cached.lastModified);
+        }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+        long startMillis = SystemClock.elapsedRealtime();
+        try (HttpTransport.Response httpResponse = execute(url, headers, priority)) {
+            int responseCode = httpResponse.getResponseCode();
+            if (cached != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                recordTiming(url, httpResponse, -1, 0);
+                cache.recordRevalidation();
+                // The entry was committed, so the response is still stored
+                cache.put(cacheKey, httpResponse, true);
+                Log.d(TAG, "Response not modified");
+                return null;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                recordTiming(url, httpResponse, -1, -1);
+                throw new HttpStatusException(responseCode,
+                        parseRetryAfterSeconds(httpResponse.getHeaderField(RETRY_AFTER_HEADER)),
+                        "Unexpected response code " + responseCode + " for " + url);
+            }
 
-            boolean hasInput = scanner.hasNext();
-            String response = null;
-            if (hasInput) {
-                response = scanner.next();
+            String contentEncoding = httpResponse.getHeaderField(CONTENT_ENCODING_HEADER);
+            CountingInputStream compressed = new CountingInputStream(httpResponse.getBody());
+            CountingInputStream decompressed = new CountingInputStream(
+                    decompress(compressed, contentEncoding));
+            T result;
+            long bodyStartMillis = SystemClock.elapsedRealtime();
+            try {
+                result = reader.read(decompressed);
+            } finally {
+                recordTiming(url, httpResponse, bodyStartMillis, compressed.getCount());
+                TransferStats.getInstance().record(new TransferStats.Record(cacheKey,
+                        contentEncoding, compressed.getCount(), decompressed.getCount(),
+                        SystemClock.elapsedRealtime() - startMillis));
+            }
+            if (cache != null) {
+                cache.recordMiss();
+                if (result != null) cache.put(cacheKey, httpResponse, false);
             }
-            scanner.close();
-            return response;
-        } finally {
-            urlConnection.disconnect();
+            return result;
+        }
+    }
+
+    /**
+     * Completes the timing of a request with the download of its body and adds it to the
+     * {@link NetworkTimings} of its endpoint.
+     *
+     * @param bodyStartMillis When reading the body started, -1 if it wasn't read
+     * @param responseBytes   Bytes of the body read off the wire, -1 if it wasn't read
+     */
+    private static void recordTiming(URL url, HttpTransport.Response httpResponse,
+                                     long bodyStartMillis, long responseBytes) {
+        RequestTiming timing = httpResponse.getTiming();
+        if (timing == null) return;
+        if (bodyStartMillis != -1) {
+            timing.downloadMillis = SystemClock.elapsedRealtime() - bodyStartMillis;
+        }
+        timing.responseBytes = responseBytes;
+        NetworkTimings.getInstance().record(url.getPath(), timing);
+    }
+
+    /**
+     * Sends a request once the {@link RequestQuota} lets it through.
+     */
+    private static HttpTransport.Response execute(URL url, Map<String, String> headers,
+                                                  RequestPriority priority) throws IOException {
+        RequestQuota.getInstance().acquire(key, url.getPath(), priority);
+        return sTransport.execute(url, headers);
+    }
+
+    /**
+     * @param retryAfter The Retry-After header of a response, may be null
+     * @return The number of seconds to wait, -1 if the header is missing or is an HTTP date
+     */
+    private static long parseRetryAfterSeconds(String retryAfter) {
+        if (retryAfter == null) return -1;
+        try {
+            return Long.parseLong(retryAfter.trim());
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
+
+    /**
+     * Wraps the response stream so that it is decompressed as it is read.
+     *
+     * @param in              The response stream, as sent over the wire
+     * @param contentEncoding The Content-Encoding of the response, may be null
+     * @return A stream of the decompressed response
+     * @throws IOException If the gzip header cannot be read
+     */
+    private static InputStream decompress(InputStream in, String contentEncoding) throws IOException {
+        if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in);
+        } else if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Consumes the body of an HTTP response.
+     */
+    public interface ResponseReader<T> {
+        T read(InputStream in) throws IOException;
+    }
 }
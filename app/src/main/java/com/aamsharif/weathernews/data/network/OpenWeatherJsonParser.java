@@ -3,17 +3,25 @@ package com.aamsharif.weathernews.data.network;
 /**
  * Created by A. A. M. Sharif on 21-Jan-18.
  */
-import android.content.Context;
+import android.util.JsonReader;
+import android.util.MalformedJsonException;
 import androidx.annotation.Nullable;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import com.aamsharif.weathernews.data.WeatherNewsPreferences;
+import com.aamsharif.weathernews.data.database.ForecastBatch;
+import com.aamsharif.weathernews.data.database.HourlyWeatherEntry;
 import com.aamsharif.weathernews.data.database.WeatherEntry;
 import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 
@@ -24,6 +32,7 @@ public final class OpenWeatherJsonParser {
 
     // Location information
     private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_ID = "id";
     private static final String OWM_COORD = "coord";
 
     // Location coordinate
@@ -50,25 +59,45 @@ public final class OpenWeatherJsonParser {
 
     private static final String OWM_MESSAGE_CODE = "cod";
 
+    // Current weather, as returned by the group endpoint. Temperatures, pressure and humidity
+    // are children of the "main" object, wind speed and direction of the "wind" object.
+    private static final String OWM_MAIN = "main";
+    private static final String OWM_WIND = "wind";
+
+    // Time of a 3-hour step of the hourly forecast, in seconds since the epoch
+    private static final String OWM_DATE_TIME = "dt";
+
+    // The days of a response whose days went into a ForecastBatch instead
+    private static final WeatherEntry[] NO_DAYS = new WeatherEntry[0];
+
+    /**
+     * Receives each day's forecast from the streaming parser as soon as it has been decoded.
+     */
+    public interface OnEntryParsedListener {
+        void onEntryParsed(int dayIndex, WeatherEntry weatherEntry);
+    }
+
     private static boolean hasHttpError(JSONObject forecastJson) throws JSONException {
         if (forecastJson.has(OWM_MESSAGE_CODE)) {
-            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-            switch (errorCode) {
-                case HttpURLConnection.HTTP_OK:
-                    return false;
-                case HttpURLConnection.HTTP_NOT_FOUND:
-                    // Location invalid
-                default:
-                    // Server probably down
-                    return true;
-            }
+            return hasHttpError(forecastJson.getInt(OWM_MESSAGE_CODE));
         }
         return false;
     }
 
+    private static boolean hasHttpError(int errorCode) {
+        switch (errorCode) {
+            case HttpURLConnection.HTTP_OK:
+                return false;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                // Location invalid
+            default:
+                // Server probably down
+                return true;
+        }
+    }
+
     private static WeatherEntry fromJson(final JSONObject dayForecast,
-                                         long dateTimeMillis) throws JSONException {
+                                         int epochDay) throws JSONException {
         // We ignore all the datetime values embedded in the JSON and assume that
         // the values are returned in-order by day (which is not guaranteed to be correct).
         double pressure = dayForecast.getDouble(OWM_PRESSURE);
@@ -89,21 +118,19 @@ public final class OpenWeatherJsonParser {
         double max = temperatureObject.getDouble(OWM_MAX);
 
         // Create the weather entry object
-        return new WeatherEntry(weatherId, new Date(dateTimeMillis), min, max,
+        return new WeatherEntry(weatherId, epochDay, min, max,
                 humidity, pressure, windSpeed, windDirection);
     }
 
-    private static WeatherEntry[] fromJson(Context context, final JSONObject forecastJson) throws JSONException {
+    private static WeatherResponse fromJson(final JSONObject forecastJson) throws JSONException {
         JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
 
         JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+        int cityId = cityJson.optInt(OWM_CITY_ID, -1);
         JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
         double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
         double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
 
-        // Save latitude and longitude in WeatherNewsPreferences from the response
-        WeatherNewsPreferences.setLocationDetails(context, cityLatitude, cityLongitude);
-
         WeatherEntry[] weatherEntries = new WeatherEntry[jsonWeatherArray.length()];
 
         /*
@@ -112,19 +139,18 @@ public final class OpenWeatherJsonParser {
          * Since this data is also sent in-order and the first day is always the current day, we're
          * going to take advantage of that to get a nice normalized UTC date for all of our weather.
          */
-        long normalizedUtcStartDay = WeatherNewsDateUtils.getNormalizedUtcMsForToday();
+        int startEpochDay = WeatherNewsDateUtils.getEpochDayForToday();
 
         for (int i = 0; i < jsonWeatherArray.length(); i++) {
             // Get the JSON object representing the day
             JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
 
             // Create the weather entry object
-            long dateTimeMillis = normalizedUtcStartDay + WeatherNewsDateUtils.DAY_IN_MILLIS * i;
-            WeatherEntry weather = fromJson(dayForecast, dateTimeMillis);
+            WeatherEntry weather = fromJson(dayForecast, startEpochDay + i);
 
             weatherEntries[i] = weather;
         }
-        return weatherEntries;
+        return new WeatherResponse(weatherEntries, cityId, cityLatitude, cityLongitude);
     }
 
     /**
@@ -136,7 +162,7 @@ public final class OpenWeatherJsonParser {
      * @throws JSONException If JSON data cannot be properly parsed
      */
     @Nullable
-    public static WeatherResponse parse(Context context, final String forecastJsonStr) throws JSONException {
+    public static WeatherResponse parse(final String forecastJsonStr) throws JSONException {
         JSONObject forecastJson = new JSONObject(forecastJsonStr);
 
         // Is there an error?
@@ -144,8 +170,486 @@ public final class OpenWeatherJsonParser {
             return null;
         }
 
-        WeatherEntry[] weatherForecast = fromJson(context, forecastJson);
+        return fromJson(forecastJson);
+    }
+
+    /**
+     * Streaming counterpart of {@link #parse(String)}. The forecast is pulled straight from the
+     * response stream with a {@link JsonReader}, so neither the whole body as a String nor a
+     * JSONObject tree is ever held in memory. Fields Weather News doesn't use are skipped without
+     * being decoded.
+     *
+     * The parser has no side effects: what the location was resolved to is returned along with
+     * the forecast, for the caller to store.
+     *
+     * @param forecastJsonStream JSON response stream from server, closed when parsing is done
+     * @param listener           Notified of every day's forecast as soon as it is decoded, may be null
+     * @return Array of WeatherEntry wrapped into WeatherResponse describing weather data
+     * @throws IOException If the stream cannot be read or the JSON is malformed
+     */
+    @Nullable
+    public static WeatherResponse parse(final InputStream forecastJsonStream,
+                                        @Nullable OnEntryParsedListener listener) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(forecastJsonStream, "UTF-8"));
+        try {
+            List<WeatherEntry> weatherEntries = new ArrayList<>(WeatherNetworkDataSource.NUM_DAYS);
+            City city = null;
+
+            // See fromJson(JSONObject) on why the dates are derived from today
+            int startEpochDay = WeatherNewsDateUtils.getEpochDayForToday();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case OWM_MESSAGE_CODE:
+                        // Is there an error?
+                        if (hasHttpError(reader.nextInt())) return null;
+                        break;
+                    case OWM_CITY:
+                        city = readCity(reader);
+                        break;
+                    case OWM_LIST:
+                        reader.beginArray();
+                        DayFields day = new DayFields();
+                        while (reader.hasNext()) {
+                            int dayIndex = weatherEntries.size();
+                            readDayForecast(reader, day);
+                            WeatherEntry weather = day.toWeatherEntry(startEpochDay + dayIndex);
+                            weatherEntries.add(weather);
+                            if (listener != null) listener.onEntryParsed(dayIndex, weather);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            WeatherEntry[] weatherForecast = weatherEntries.toArray(new WeatherEntry[0]);
+            if (city == null) return new WeatherResponse(weatherForecast);
+            return new WeatherResponse(weatherForecast, city.id, city.latitude, city.longitude);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Columnar counterpart of {@link #parse(InputStream, OnEntryParsedListener)} for bulk work.
+     * Every day is appended to the batch as a row of primitives; no WeatherEntry or Date is
+     * created along the way.
+     *
+     * @param forecastJsonStream JSON response stream from server, closed when parsing is done
+     * @param location           The location the forecast was requested for
+     * @param batch              The batch the days are appended to
+     * @return What the location was resolved to, as a response without days, null if the
+     * server reports an error, in which case nothing is appended
+     * @throws IOException If the stream cannot be read or the JSON is malformed
+     */
+    @Nullable
+    public static WeatherResponse parseBatch(final InputStream forecastJsonStream, String location,
+                                             ForecastBatch batch) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(forecastJsonStream, "UTF-8"));
+        try {
+            ForecastBatch days = new ForecastBatch(WeatherNetworkDataSource.NUM_DAYS);
+            City city = null;
+
+            // See fromJson(JSONObject) on why the dates are derived from today
+            int startEpochDay = WeatherNewsDateUtils.getEpochDayForToday();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case OWM_MESSAGE_CODE:
+                        // Is there an error?
+                        if (hasHttpError(reader.nextInt())) return null;
+                        break;
+                    case OWM_CITY:
+                        city = readCity(reader);
+                        break;
+                    case OWM_LIST:
+                        reader.beginArray();
+                        DayFields day = new DayFields();
+                        while (reader.hasNext()) {
+                            readDayForecast(reader, day);
+                            day.addTo(days, location, startEpochDay + days.size());
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            batch.addAll(days);
+            if (city == null) return new WeatherResponse(NO_DAYS);
+            return new WeatherResponse(NO_DAYS, city.id, city.latitude, city.longitude);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static City readCity(JsonReader reader) throws IOException {
+        City city = new City();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case OWM_CITY_ID:
+                    city.id = reader.nextInt();
+                    break;
+                case OWM_COORD:
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_LATITUDE:
+                                city.latitude = reader.nextDouble();
+                                break;
+                            case OWM_LONGITUDE:
+                                city.longitude = reader.nextDouble();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return city;
+    }
+
+    /**
+     * Reads the forecast of one day into the given fields, which are reset first.
+     */
+    private static void readDayForecast(JsonReader reader, DayFields day) throws IOException {
+        day.reset();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case OWM_PRESSURE:
+                    day.pressure = reader.nextDouble();
+                    break;
+                case OWM_HUMIDITY:
+                    day.humidity = (int) reader.nextDouble();
+                    break;
+                case OWM_WINDSPEED:
+                    day.windSpeed = reader.nextDouble();
+                    break;
+                case OWM_WIND_DIRECTION:
+                    day.windDirection = reader.nextDouble();
+                    break;
+                case OWM_WEATHER:
+                    // Only the first element of the "weather" array carries the code we need
+                    reader.beginArray();
+                    if (reader.hasNext()) day.weatherId = readWeatherId(reader);
+                    while (reader.hasNext()) reader.skipValue();
+                    reader.endArray();
+                    break;
+                case OWM_TEMPERATURE:
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_MIN:
+                                day.min = reader.nextDouble();
+                                break;
+                            case OWM_MAX:
+                                day.max = reader.nextDouble();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (day.weatherId == -1 || Double.isNaN(day.min) || Double.isNaN(day.max)) {
+            throw new MalformedJsonException("Day forecast without weather id or temperature");
+        }
+    }
+
+    private static int readWeatherId(JsonReader reader) throws IOException {
+        int weatherId = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (OWM_WEATHER_ID.equals(reader.nextName())) {
+                weatherId = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return weatherId;
+    }
+
+    /**
+     * Parses the response of the group endpoint, which holds the current weather of several
+     * cities, requested by their city id. Each city's weather becomes the row for today of its
+     * location. The temp_min and temp_max of the current weather are the spread across the city
+     * at this moment rather than the range of the day, so the minimum and maximum of the rows are
+     * left unknown and the stored range of the day is kept.
+     *
+     * @param groupJsonStream    JSON response stream from server, closed when parsing is done
+     * @param locationsByCityId  The locations requested, by city id. Cities not in here are skipped.
+     * @return Today's weather of each location, null if the server reports an error
+     * @throws IOException If the stream cannot be read or the JSON is malformed
+     */
+    @Nullable
+    public static ForecastBatch parseGroup(final InputStream groupJsonStream,
+                                           Map<Integer, String> locationsByCityId) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(groupJsonStream, "UTF-8"));
+        try {
+            ForecastBatch batch = new ForecastBatch(locationsByCityId.size());
+            int today = WeatherNewsDateUtils.getEpochDayForToday();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case OWM_MESSAGE_CODE:
+                        // Is there an error?
+                        if (hasHttpError(reader.nextInt())) return null;
+                        break;
+                    case OWM_LIST:
+                        reader.beginArray();
+                        DayFields day = new DayFields();
+                        while (reader.hasNext()) {
+                            readCurrentWeather(reader, day);
+                            String location = locationsByCityId.get(day.cityId);
+                            if (location != null) day.addTo(batch, location, today);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return batch;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the current weather of one city into the given fields, which are reset first.
+     */
+    private static void readCurrentWeather(JsonReader reader, DayFields day) throws IOException {
+        day.reset();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case OWM_CITY_ID:
+                    day.cityId = reader.nextInt();
+                    break;
+                case OWM_WEATHER:
+                    reader.beginArray();
+                    if (reader.hasNext()) day.weatherId = readWeatherId(reader);
+                    while (reader.hasNext()) reader.skipValue();
+                    reader.endArray();
+                    break;
+                case OWM_MAIN:
+                    // Pressure and humidity of the current weather are in "main". Its temperatures
+                    // aren't the range of the day, so they are skipped.
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_PRESSURE:
+                                day.pressure = reader.nextDouble();
+                                break;
+                            case OWM_HUMIDITY:
+                                day.humidity = (int) reader.nextDouble();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case OWM_WIND:
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_WINDSPEED:
+                                day.windSpeed = reader.nextDouble();
+                                break;
+                            case OWM_WIND_DIRECTION:
+                                day.windDirection = reader.nextDouble();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // The range of the day is left unknown, see parseGroup
+        if (day.cityId == -1 || day.weatherId == -1) {
+            throw new MalformedJsonException("Current weather without city id or weather id");
+        }
+    }
+
+    /**
+     * Parses the response of the 5 day / 3 hour forecast endpoint, streaming it like
+     * {@link #parse(InputStream, OnEntryParsedListener)}.
+     *
+     * @param hourlyJsonStream JSON response stream from server, closed when parsing is done
+     * @param location         The location the forecast was requested for
+     * @return One HourlyWeatherEntry per 3-hour step, in the order of the response, null if the
+     * server reports an error
+     * @throws IOException If the stream cannot be read or the JSON is malformed
+     */
+    @Nullable
+    public static List<HourlyWeatherEntry> parseHourly(final InputStream hourlyJsonStream,
+                                                       String location) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(hourlyJsonStream, "UTF-8"));
+        try {
+            // The endpoint returns 8 steps a day for 5 days
+            List<HourlyWeatherEntry> hourlyEntries = new ArrayList<>(40);
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case OWM_MESSAGE_CODE:
+                        // Is there an error? This endpoint sends the code as a string, which
+                        // nextInt() reads all the same
+                        if (hasHttpError(reader.nextInt())) return null;
+                        break;
+                    case OWM_LIST:
+                        reader.beginArray();
+                        while (reader.hasNext()) hourlyEntries.add(readHourlyForecast(reader, location));
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return hourlyEntries;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static HourlyWeatherEntry readHourlyForecast(JsonReader reader,
+                                                         String location) throws IOException {
+        long timestamp = -1;
+        double pressure = 0;
+        double humidity = 0;
+        double windSpeed = 0;
+        double windDirection = 0;
+        int weatherId = -1;
+        double temperature = Double.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case OWM_DATE_TIME:
+                    timestamp = TimeUnit.SECONDS.toMillis(reader.nextLong());
+                    break;
+                case OWM_WEATHER:
+                    reader.beginArray();
+                    if (reader.hasNext()) weatherId = readWeatherId(reader);
+                    while (reader.hasNext()) reader.skipValue();
+                    reader.endArray();
+                    break;
+                case OWM_MAIN:
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_TEMPERATURE:
+                                temperature = reader.nextDouble();
+                                break;
+                            case OWM_PRESSURE:
+                                pressure = reader.nextDouble();
+                                break;
+                            case OWM_HUMIDITY:
+                                humidity = reader.nextDouble();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case OWM_WIND:
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_WINDSPEED:
+                                windSpeed = reader.nextDouble();
+                                break;
+                            case OWM_WIND_DIRECTION:
+                                windDirection = reader.nextDouble();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (timestamp == -1 || weatherId == -1 || Double.isNaN(temperature)) {
+            throw new MalformedJsonException("Hourly forecast without time, weather id or temperature");
+        }
+        return new HourlyWeatherEntry(location, timestamp, weatherId, temperature,
+                humidity, pressure, windSpeed, windDirection);
+    }
+
+    // The fields of one day's weather as they are read, reused from one day to the next
+    private static class DayFields {
+        int cityId;
+        int weatherId;
+        double min;
+        double max;
+        int humidity;
+        double pressure;
+        double windSpeed;
+        double windDirection;
+
+        void reset() {
+            cityId = -1;
+            weatherId = -1;
+            min = Double.NaN;
+            max = Double.NaN;
+            humidity = 0;
+            pressure = 0;
+            windSpeed = 0;
+            windDirection = 0;
+        }
+
+        WeatherEntry toWeatherEntry(int epochDay) {
+            return new WeatherEntry(weatherId, epochDay, min, max, humidity, pressure, windSpeed,
+                    windDirection);
+        }
+
+        void addTo(ForecastBatch batch, String location, int epochDay) {
+            batch.add(location, epochDay, weatherId, min, max, (short) humidity, pressure,
+                    windSpeed, windDirection);
+        }
+    }
 
-        return new WeatherResponse(weatherForecast);
+    // What the "city" object of a forecast tells us about the city
+    private static class City {
+        int id = -1;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
     }
 }
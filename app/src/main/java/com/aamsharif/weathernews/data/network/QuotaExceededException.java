@@ -0,0 +1,14 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request couldn't get within the rate limit of the weather server in the time it
+ * was allowed to wait, so it was never sent.
+ */
+public class QuotaExceededException extends IOException {
+
+    QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How urgently a request is wanted, which decides the order the {@link RequestQuota} serves
+ * requests in and how long a request may wait for it.
+ */
+enum RequestPriority {
+    // The user is waiting for the weather, e.g. the app was opened or the location was changed
+    USER_INITIATED(TimeUnit.SECONDS.toMillis(10)),
+    // Nobody is waiting, e.g. a periodic sync
+    BACKGROUND(TimeUnit.SECONDS.toMillis(60));
+
+    // The longest a request waits for the quota before giving up
+    final long maxWaitMillis;
+
+    RequestPriority(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+}
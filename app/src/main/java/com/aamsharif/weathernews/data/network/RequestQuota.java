@@ -0,0 +1,203 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the requests to the weather server within its rate limit. Every request has to take a
+ * token from the bucket of the API key it is made with and from the bucket of the endpoint it
+ * goes to; a request which finds either bucket empty waits for it to refill.
+ *
+ * User initiated requests are served first: background requests wait while any user initiated
+ * request is waiting, and leave a part of every bucket for user initiated requests.
+ */
+public class RequestQuota {
+    private static final String LOG_TAG = RequestQuota.class.getSimpleName();
+
+    // OpenWeatherMap allows 60 requests a minute per API key
+    private static final int KEY_CAPACITY = 60;
+    private static final double KEY_TOKENS_PER_SECOND = 1;
+    // No single endpoint may use up more than half of that
+    private static final int ENDPOINT_CAPACITY = 30;
+    private static final double ENDPOINT_TOKENS_PER_SECOND = 0.5;
+    // The part of every bucket background requests leave for user initiated ones
+    private static final double BACKGROUND_RESERVE = 0.2;
+
+    // Lower bound of a single wait, so that a waiting request doesn't spin
+    private static final long MIN_WAIT_MILLIS = 50;
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static RequestQuota sInstance;
+
+    private final Map<String, TokenBucket> mKeyBuckets = new HashMap<>();
+    private final Map<String, TokenBucket> mEndpointBuckets = new HashMap<>();
+    private int mWaitingUserRequests;
+
+    private final AtomicInteger mDeferredCount = new AtomicInteger();
+    private final AtomicInteger mThrottledCount = new AtomicInteger();
+
+    private RequestQuota() {
+    }
+
+    public static RequestQuota getInstance() {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new RequestQuota();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Takes a token for a request, waiting for one as long as the priority allows.
+     *
+     * @param apiKey   The API key the request is made with
+     * @param endpoint The endpoint the request goes to, e.g. the path of its URL
+     * @param priority How urgently the request is wanted
+     * @throws QuotaExceededException If no token became available in time
+     * @throws InterruptedIOException If the thread was interrupted while waiting
+     */
+    synchronized void acquire(String apiKey, String endpoint, RequestPriority priority)
+            throws QuotaExceededException, InterruptedIOException {
+        TokenBucket keyBucket = getBucket(mKeyBuckets, apiKey, KEY_CAPACITY, KEY_TOKENS_PER_SECOND);
+        TokenBucket endpointBucket = getBucket(mEndpointBuckets, endpoint, ENDPOINT_CAPACITY,
+                ENDPOINT_TOKENS_PER_SECOND);
+        boolean userInitiated = priority == RequestPriority.USER_INITIATED;
+        double reserve = userInitiated ? 0 : BACKGROUND_RESERVE;
+        long deadline = SystemClock.elapsedRealtime() + priority.maxWaitMillis;
+        boolean deferred = false;
+
+        if (userInitiated) mWaitingUserRequests++;
+        try {
+            while (true) {
+                long now = SystemClock.elapsedRealtime();
+                boolean yieldToUser = !userInitiated && mWaitingUserRequests > 0;
+                if (!yieldToUser && keyBucket.hasToken(now, reserve)
+                        && endpointBucket.hasToken(now, reserve)) {
+                    keyBucket.take();
+                    endpointBucket.take();
+                    return;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    mThrottledCount.incrementAndGet();
+                    throw new QuotaExceededException("No quota for " + endpoint + " within "
+                            + priority.maxWaitMillis + " ms");
+                }
+                if (!deferred) {
+                    deferred = true;
+                    mDeferredCount.incrementAndGet();
+                    Log.d(LOG_TAG, priority + " request to " + endpoint + " deferred");
+                }
+                long waitMillis = Math.max(MIN_WAIT_MILLIS, Math.max(
+                        keyBucket.getMillisUntilToken(now, reserve),
+                        endpointBucket.getMillisUntilToken(now, reserve)));
+                wait(Math.min(waitMillis, remaining));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for quota");
+        } finally {
+            if (userInitiated) {
+                mWaitingUserRequests--;
+                // Background requests may have been held back by this one
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes a token for an optional request, e.g. a hedged one, but only if one is available
+     * right away. Like a background request, it leaves a part of every bucket unused.
+     *
+     * @param apiKey   The API key the request is made with
+     * @param endpoint The endpoint the request goes to
+     * @return true if a token was taken and the request may be sent
+     */
+    synchronized boolean tryAcquire(String apiKey, String endpoint) {
+        TokenBucket keyBucket = getBucket(mKeyBuckets, apiKey, KEY_CAPACITY, KEY_TOKENS_PER_SECOND);
+        TokenBucket endpointBucket = getBucket(mEndpointBuckets, endpoint, ENDPOINT_CAPACITY,
+                ENDPOINT_TOKENS_PER_SECOND);
+        long now = SystemClock.elapsedRealtime();
+        if (mWaitingUserRequests > 0 || !keyBucket.hasToken(now, BACKGROUND_RESERVE)
+                || !endpointBucket.hasToken(now, BACKGROUND_RESERVE)) {
+            return false;
+        }
+        keyBucket.take();
+        endpointBucket.take();
+        return true;
+    }
+
+    private static TokenBucket getBucket(Map<String, TokenBucket> buckets, String name,
+                                         int capacity, double tokensPerSecond) {
+        TokenBucket bucket = buckets.get(name);
+        if (bucket == null) {
+            bucket = new TokenBucket(capacity, tokensPerSecond);
+            buckets.put(name, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * @return Number of requests which had to wait for quota
+     */
+    public int getDeferredCount() {
+        return mDeferredCount.get();
+    }
+
+    /**
+     * @return Number of requests which gave up waiting for quota and were never sent
+     */
+    public int getThrottledCount() {
+        return mThrottledCount.get();
+    }
+
+    /**
+     * A bucket of tokens which starts full and refills at a steady rate.
+     */
+    private static class TokenBucket {
+        private final int mCapacity;
+        private final double mTokensPerMilli;
+        private double mTokens;
+        private long mLastRefillMillis;
+
+        TokenBucket(int capacity, double tokensPerSecond) {
+            mCapacity = capacity;
+            mTokensPerMilli = tokensPerSecond / 1000;
+            mTokens = capacity;
+            mLastRefillMillis = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * @param reserve The part of the capacity which has to be left in the bucket
+         */
+        boolean hasToken(long now, double reserve) {
+            refill(now);
+            return mTokens >= 1 + reserve * mCapacity;
+        }
+
+        void take() {
+            mTokens--;
+        }
+
+        long getMillisUntilToken(long now, double reserve) {
+            refill(now);
+            double missing = 1 + reserve * mCapacity - mTokens;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / mTokensPerMilli);
+        }
+
+        private void refill(long now) {
+            mTokens = Math.min(mCapacity, mTokens + (now - mLastRefillMillis) * mTokensPerMilli);
+            mLastRefillMillis = now;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.aamsharif.weathernews.data.network;
+
+/**
+ * Where the time of a single request went. The phases follow each other: the DNS lookup, the TCP
+ * connection, the TLS handshake, the wait for the response headers, and the download of the body.
+ *
+ * A phase which didn't happen is -1, e.g. the handshake of a plain HTTP request or of a request
+ * sent over a pooled connection. The connection of a pooled request takes next to no time.
+ */
+public class RequestTiming {
+    long dnsMillis = -1;
+    long connectMillis = -1;
+    long tlsMillis = -1;
+    long ttfbMillis = -1;
+    long downloadMillis = -1;
+    long responseBytes = -1;
+
+    /**
+     * @return An estimate of the DNS lookup, taken from a separate lookup of the host ahead of the
+     * first request to it in the process, -1 for the other requests
+     */
+    public long getDnsMillis() {
+        return dnsMillis;
+    }
+
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    public long getTlsMillis() {
+        return tlsMillis;
+    }
+
+    /**
+     * @return Time from the request being sent until the response headers arrived
+     */
+    public long getTtfbMillis() {
+        return ttfbMillis;
+    }
+
+    /**
+     * @return Time taken to read the body. The body is parsed as it is read, so this includes
+     * the parsing
+     */
+    public long getDownloadMillis() {
+        return downloadMillis;
+    }
+
+    /**
+     * @return Size of the body as it came over the wire, before decompression
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "dns estimate " + dnsMillis + ", connect " + connectMillis + ", tls " + tlsMillis
+                + ", ttfb " + ttfbMillis + ", download " + downloadMillis + " ms, "
+                + responseBytes + " bytes";
+    }
+}
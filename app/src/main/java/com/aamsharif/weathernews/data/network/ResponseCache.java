@@ -0,0 +1,297 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.annotation.Nullable;
+
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small, bounded on-disk cache of the HTTP validators (ETag, Last-Modified) and freshness
+ * lifetime of the forecast responses, keyed by the request URL.
+ *
+ * The parsed body of a response already lives in the database, so only what is needed to decide
+ * whether a request can be skipped or made conditional is kept here. An entry is only used once
+ * it has been committed, after its response has been written to the database, so a fresh entry
+ * or a 304 always means the response is already stored.
+ */
+public class ResponseCache {
+    private static final String LOG_TAG = ResponseCache.class.getSimpleName();
+
+    private static final String CACHE_PREFS_NAME = "forecast_response_cache";
+    // The number of distinct URLs (locations) we keep validators for
+    private static final int MAX_ENTRIES = 16;
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String MAX_AGE = "max-age=";
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_EXPIRES_AT = "expiresAt";
+    private static final String KEY_STORED_DAY = "storedDay";
+    private static final String KEY_LAST_USED = "lastUsed";
+    private static final String KEY_COMMITTED = "committed";
+    private static final String KEY_SLOT = "slot";
+
+    /**
+     * The slot of the responses stored in the weather table, which holds the forecast of a single
+     * location at a time
+     */
+    static final String SLOT_WEATHER = "weather";
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static ResponseCache sInstance;
+    private final SharedPreferences mStore;
+
+    private final AtomicInteger mHitCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+    private final AtomicInteger mRevalidationCount = new AtomicInteger();
+
+    private ResponseCache(Context context) {
+        mStore = context.getSharedPreferences(CACHE_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static ResponseCache getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new ResponseCache(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached validators for the URL. Entries which haven't been committed are
+     * ignored, as their response may never have been stored. Entries stored on a previous day
+     * are ignored too: the forecast dates are derived from the day the response was parsed, so
+     * such a response has to be downloaded and parsed again.
+     *
+     * @param url The request URL
+     * @return The cache entry, null if there is none that can be used
+     */
+    @Nullable
+    synchronized Entry get(String url) {
+        String json = mStore.getString(url, null);
+        if (json == null) return null;
+        try {
+            JSONObject object = new JSONObject(json);
+            if (!object.optBoolean(KEY_COMMITTED)) return null;
+            if (object.getLong(KEY_STORED_DAY) != WeatherNewsDateUtils.getNormalizedUtcMsForToday()) {
+                return null;
+            }
+            return new Entry(object.optString(KEY_ETAG, null),
+                    object.optString(KEY_LAST_MODIFIED, null),
+                    object.getLong(KEY_EXPIRES_AT));
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Dropping unreadable cache entry for " + url, e);
+            mStore.edit().remove(url).apply();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the validators of a complete response to the URL, evicting the least recently used
+     * entry once the cache is full.
+     *
+     * @param url       The request URL
+     * @param response  The response to the request
+     * @param committed Whether the response is already stored, e.g. as it is a 304 to a
+     *                  committed entry. Otherwise the entry is only used once it is committed
+     *                  with {@link #commit(String, String)}.
+     */
+    synchronized void put(String url, HttpTransport.Response response, boolean committed) {
+        String cacheControl = response.getHeaderField(HEADER_CACHE_CONTROL);
+        if (cacheControl != null && cacheControl.contains(NO_STORE)) {
+            mStore.edit().remove(url).apply();
+            return;
+        }
+
+        String etag = response.getHeaderField(HEADER_ETAG);
+        String lastModified = response.getHeaderField(HEADER_LAST_MODIFIED);
+        long now = System.currentTimeMillis();
+
+        try {
+            JSONObject object = new JSONObject()
+                    .put(KEY_EXPIRES_AT, now + getMaxAgeMillis(cacheControl))
+                    .put(KEY_STORED_DAY, WeatherNewsDateUtils.getNormalizedUtcMsForToday())
+                    .put(KEY_LAST_USED, now)
+                    .put(KEY_COMMITTED, committed);
+            // A 304 may omit validators which are still valid, so keep the old ones
+            Entry previous = get(url);
+            if (etag == null && previous != null) etag = previous.etag;
+            if (lastModified == null && previous != null) lastModified = previous.lastModified;
+            if (etag != null) object.put(KEY_ETAG, etag);
+            if (lastModified != null) object.put(KEY_LAST_MODIFIED, lastModified);
+            String slot = previous != null ? getSlot(url) : null;
+            if (slot != null) object.put(KEY_SLOT, slot);
+
+            SharedPreferences.Editor editor = mStore.edit();
+            editor.putString(url, object.toString());
+            Map<String, ?> entries = mStore.getAll();
+            if (!entries.containsKey(url) && entries.size() >= MAX_ENTRIES) {
+                String eldest = findLeastRecentlyUsed(entries);
+                if (eldest != null) editor.remove(eldest);
+            }
+            editor.apply();
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Could not cache response for " + url, e);
+        }
+    }
+
+    /**
+     * Commits the entry of the URL once its response has been written to the database. If the
+     * response went to a table which holds a single response at a time, every other entry of
+     * that slot is evicted, as the table no longer holds their responses.
+     *
+     * @param url  The request URL
+     * @param slot The slot of the table the response was written to, null if the table keeps
+     *             the responses of every URL
+     */
+    synchronized void commit(String url, @Nullable String slot) {
+        String json = mStore.getString(url, null);
+        SharedPreferences.Editor editor = mStore.edit();
+        if (slot != null) removeSlot(editor, slot, url);
+        if (json != null) {
+            try {
+                JSONObject object = new JSONObject(json).put(KEY_COMMITTED, true);
+                if (slot != null) object.put(KEY_SLOT, slot);
+                editor.putString(url, object.toString());
+            } catch (JSONException e) {
+                Log.w(LOG_TAG, "Dropping unreadable cache entry for " + url, e);
+                editor.remove(url);
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Evicts every entry of the slot, e.g. when its table was written with a response which
+     * didn't go through the cache.
+     *
+     * @param slot The slot of the table
+     */
+    synchronized void evict(String slot) {
+        SharedPreferences.Editor editor = mStore.edit();
+        removeSlot(editor, slot, null);
+        editor.apply();
+    }
+
+    private void removeSlot(SharedPreferences.Editor editor, String slot, @Nullable String keep) {
+        for (String url : mStore.getAll().keySet()) {
+            if (!url.equals(keep) && slot.equals(getSlot(url))) editor.remove(url);
+        }
+    }
+
+    @Nullable
+    private String getSlot(String url) {
+        String json = mStore.getString(url, null);
+        if (json == null) return null;
+        try {
+            return new JSONObject(json).optString(KEY_SLOT, null);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static long getMaxAgeMillis(@Nullable String cacheControl) {
+        if (cacheControl == null || cacheControl.contains(NO_CACHE)) return 0;
+        int start = cacheControl.indexOf(MAX_AGE);
+        if (start == -1) return 0;
+        start += MAX_AGE.length();
+        int end = start;
+        while (end < cacheControl.length() && Character.isDigit(cacheControl.charAt(end))) end++;
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(cacheControl.substring(start, end)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Nullable
+    private static String findLeastRecentlyUsed(Map<String, ?> entries) {
+        String eldest = null;
+        long eldestLastUsed = Long.MAX_VALUE;
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            long lastUsed = 0;
+            try {
+                lastUsed = new JSONObject(String.valueOf(entry.getValue())).optLong(KEY_LAST_USED);
+            } catch (JSONException ignored) {
+                // Unreadable entries are the first to go
+            }
+            if (lastUsed < eldestLastUsed) {
+                eldestLastUsed = lastUsed;
+                eldest = entry.getKey();
+            }
+        }
+        return eldest;
+    }
+
+    void recordHit() {
+        mHitCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    void recordRevalidation() {
+        mRevalidationCount.incrementAndGet();
+    }
+
+    /**
+     * @return Number of requests skipped because the cached response was still fresh
+     */
+    public int getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return Number of requests which downloaded and parsed a full response
+     */
+    public int getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return Number of conditional requests answered with 304 Not Modified
+     */
+    public int getRevalidationCount() {
+        return mRevalidationCount.get();
+    }
+
+    /**
+     * Validators and freshness lifetime of a cached response.
+     */
+    static class Entry {
+        @Nullable
+        final String etag;
+        @Nullable
+        final String lastModified;
+        final long expiresAt;
+
+        Entry(@Nullable String etag, @Nullable String lastModified, long expiresAt) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+}
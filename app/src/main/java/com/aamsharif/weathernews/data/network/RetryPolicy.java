@@ -0,0 +1,67 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a failed forecast request is worth repeating, and how long to wait before doing
+ * so. Delays grow exponentially up to a cap, and a random "full jitter" is applied so that
+ * clients which failed together don't all come back at the same moment.
+ */
+class RetryPolicy {
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom = new Random();
+
+    /**
+     * @param maxAttempts     Total number of attempts, including the first one
+     * @param baseDelayMillis Delay cap before the first retry, doubled for every retry after it
+     * @param maxDelayMillis  Upper bound of any single delay
+     */
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param e The reason the request failed
+     * @return true if the same request may well succeed a little later, see
+     * {@link TransientFailures#isTransient(Exception)}
+     */
+    boolean isRetryable(Exception e) {
+        return TransientFailures.isTransient(e);
+    }
+
+    /**
+     * A server asking for more time than a single delay may last is retried later rather than
+     * in-process, as coming back any sooner would be ignoring it.
+     *
+     * @param attempt Zero based number of the attempt that just failed
+     * @param e       The reason it failed
+     * @return true if another attempt may be made in-process
+     */
+    boolean canRetry(int attempt, Exception e) {
+        return attempt + 1 < mMaxAttempts && getRetryAfterMillis(e) <= mMaxDelayMillis;
+    }
+
+    /**
+     * @param attempt Zero based number of the attempt that just failed
+     * @param e       The reason it failed, which {@link #canRetry(int, Exception)} allowed
+     * @return How long to wait before the next attempt
+     */
+    long getDelayMillis(int attempt, Exception e) {
+        long cap = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(attempt, 20));
+        long delay = (long) (mRandom.nextDouble() * cap);
+        // Never come back sooner than the server asked us to
+        return Math.max(delay, getRetryAfterMillis(e));
+    }
+
+    private static long getRetryAfterMillis(Exception e) {
+        if (!(e instanceof HttpStatusException)) return 0;
+        long retryAfterSeconds = ((HttpStatusException) e).getRetryAfterSeconds();
+        return retryAfterSeconds > 0 ? TimeUnit.SECONDS.toMillis(retryAfterSeconds) : 0;
+    }
+}
@@ -0,0 +1,276 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.aamsharif.weathernews.data.database.WeatherEntry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the weather is synced next. The periodic work only wakes the app up every hour;
+ * each time, the scheduler works out how long the interval between syncs should currently be and
+ * tells whether a sync is due.
+ *
+ * The interval starts at 3 hours and is
+ * <ul>
+ *     <li>halved while the last syncs kept changing the forecast, and stretched while they didn't</li>
+ *     <li>doubled at night</li>
+ *     <li>halved while the app has been used in the last few hours</li>
+ *     <li>doubled on a metered network and on a low battery</li>
+ * </ul>
+ * and always kept between 1 and 12 hours. Every decision is kept in a log which can be inspected.
+ */
+public class SyncScheduler {
+    private static final String LOG_TAG = SyncScheduler.class.getSimpleName();
+
+    private static final String SCHEDULER_PREFS_NAME = "sync_scheduler";
+
+    // How often the periodic work wakes up to ask whether a sync is due
+    static final long CHECK_INTERVAL_MINUTES = 60;
+    static final long CHECK_FLEXTIME_MINUTES = 15;
+
+    private static final long BASE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(3);
+    private static final long MIN_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long MAX_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    // A forecast whose temperatures moved less than half a degree is considered unchanged, one
+    // which moved 3 degrees or more is considered volatile. A change of conditions counts as 2.
+    private static final double STABLE_CHANGE_SCORE = 0.5;
+    private static final double VOLATILE_CHANGE_SCORE = 3;
+    private static final double CONDITION_CHANGE_SCORE = 2;
+    // Weight of the latest change in the running change score
+    private static final double CHANGE_SCORE_WEIGHT = 0.5;
+
+    // Night is from midnight to 6 am, local time
+    private static final int NIGHT_END_HOUR = 6;
+    private static final long RECENT_FOREGROUND_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    private static final int MAX_LOG_ENTRIES = 50;
+
+    private static final String KEY_LAST_SYNC_MILLIS = "lastSyncMillis";
+    private static final String KEY_CHANGE_SCORE = "changeScore";
+    private static final String KEY_LAST_FOREGROUND_MILLIS = "lastForegroundMillis";
+    private static final String KEY_DECISION_LOG = "decisionLog";
+
+    private static final String KEY_TIME = "time";
+    private static final String KEY_SYNC_DUE = "syncDue";
+    private static final String KEY_INTERVAL = "interval";
+    private static final String KEY_REASONS = "reasons";
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static SyncScheduler sInstance;
+    private final SharedPreferences mStore;
+    private final Clock mClock;
+    private final NetworkConditions mNetworkConditions;
+    private final BatteryConditions mBatteryConditions;
+
+    SyncScheduler(SharedPreferences store, Clock clock, NetworkConditions networkConditions,
+                  BatteryConditions batteryConditions) {
+        mStore = store;
+        mClock = clock;
+        mNetworkConditions = networkConditions;
+        mBatteryConditions = batteryConditions;
+    }
+
+    public static SyncScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    Context applicationContext = context.getApplicationContext();
+                    sInstance = new SyncScheduler(
+                            applicationContext.getSharedPreferences(SCHEDULER_PREFS_NAME,
+                                    Context.MODE_PRIVATE),
+                            Clock.SYSTEM, new NetworkConditions(applicationContext),
+                            new BatteryConditions(applicationContext));
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Works out the current interval between syncs and whether one is due, and logs the decision.
+     *
+     * @return The decision
+     */
+    synchronized Decision decide() {
+        long now = mClock.currentTimeMillis();
+        List<String> reasons = new ArrayList<>();
+        double interval = BASE_INTERVAL_MILLIS;
+
+        double changeScore = mStore.getFloat(KEY_CHANGE_SCORE, (float) STABLE_CHANGE_SCORE);
+        if (changeScore >= VOLATILE_CHANGE_SCORE) {
+            interval /= 2;
+            reasons.add("forecast volatile");
+        } else if (changeScore < STABLE_CHANGE_SCORE) {
+            interval *= 1.5;
+            reasons.add("forecast stable");
+        }
+
+        boolean recentlyUsed = now - mStore.getLong(KEY_LAST_FOREGROUND_MILLIS, 0)
+                < RECENT_FOREGROUND_MILLIS;
+        if (recentlyUsed) {
+            interval /= 2;
+            reasons.add("app recently used");
+        } else if (isNight(now)) {
+            interval *= 2;
+            reasons.add("night");
+        }
+
+        if (mNetworkConditions.isMetered()) {
+            interval *= 2;
+            reasons.add("metered network");
+        }
+        if (mBatteryConditions.isLow()) {
+            interval *= 2;
+            reasons.add("battery low");
+        }
+
+        long intervalMillis = Math.max(MIN_INTERVAL_MILLIS,
+                Math.min(MAX_INTERVAL_MILLIS, (long) interval));
+        // The periodic work may run up to its flex time early, so allow for that
+        long sinceLastSync = now - mStore.getLong(KEY_LAST_SYNC_MILLIS, 0);
+        boolean syncDue = sinceLastSync
+                >= intervalMillis - TimeUnit.MINUTES.toMillis(CHECK_FLEXTIME_MINUTES);
+
+        Decision decision = new Decision(now, syncDue, intervalMillis, reasons.toString());
+        Log.i(LOG_TAG, decision.toString());
+        appendToLog(decision);
+        return decision;
+    }
+
+    /**
+     * Records that the weather has just been synced.
+     */
+    synchronized void recordSync() {
+        mStore.edit().putLong(KEY_LAST_SYNC_MILLIS, mClock.currentTimeMillis()).apply();
+    }
+
+    /**
+     * Records how much a sync changed the forecast.
+     *
+     * @param changeScore The change, as returned by {@link #getForecastChangeScore}
+     */
+    synchronized void recordForecastChange(double changeScore) {
+        double previous = mStore.getFloat(KEY_CHANGE_SCORE, (float) STABLE_CHANGE_SCORE);
+        double updated = CHANGE_SCORE_WEIGHT * changeScore + (1 - CHANGE_SCORE_WEIGHT) * previous;
+        mStore.edit().putFloat(KEY_CHANGE_SCORE, (float) updated).apply();
+    }
+
+    /**
+     * Records that the app has just come to the foreground.
+     */
+    public synchronized void recordForeground() {
+        mStore.edit().putLong(KEY_LAST_FOREGROUND_MILLIS, mClock.currentTimeMillis()).apply();
+    }
+
+    /**
+     * Measures how much a downloaded forecast differs from the stored one: the largest change of
+     * temperature of any day, in degrees, plus a fixed amount for each day whose conditions
+     * changed.
+     *
+     * @param stored     The stored forecast
+     * @param downloaded The downloaded forecast
+     * @return The change score, 0 if no day of the downloaded forecast is stored
+     */
+    public static double getForecastChangeScore(List<WeatherEntry> stored, WeatherEntry[] downloaded) {
+        Map<Integer, WeatherEntry> storedByDay = new HashMap<>();
+        for (WeatherEntry entry : stored) storedByDay.put(entry.getEpochDay(), entry);
+
+        double largestTemperatureChange = 0;
+        int conditionChanges = 0;
+        for (WeatherEntry entry : downloaded) {
+            WeatherEntry previous = storedByDay.get(entry.getEpochDay());
+            if (previous == null) continue;
+            largestTemperatureChange = Math.max(largestTemperatureChange,
+                    Math.max(Math.abs(entry.getMin() - previous.getMin()),
+                            Math.abs(entry.getMax() - previous.getMax())));
+            if (entry.getWeatherIconId() != previous.getWeatherIconId()) conditionChanges++;
+        }
+        return largestTemperatureChange + conditionChanges * CONDITION_CHANGE_SCORE;
+    }
+
+    /**
+     * @return The most recent decisions, oldest first
+     */
+    public synchronized List<Decision> getDecisionLog() {
+        List<Decision> decisions = new ArrayList<>();
+        JSONArray log = readLog();
+        for (int i = 0; i < log.length(); i++) {
+            JSONObject object = log.optJSONObject(i);
+            if (object == null) continue;
+            decisions.add(new Decision(object.optLong(KEY_TIME), object.optBoolean(KEY_SYNC_DUE),
+                    object.optLong(KEY_INTERVAL), object.optString(KEY_REASONS)));
+        }
+        return decisions;
+    }
+
+    private void appendToLog(Decision decision) {
+        JSONArray log = readLog();
+        JSONArray trimmed = new JSONArray();
+        for (int i = Math.max(0, log.length() - MAX_LOG_ENTRIES + 1); i < log.length(); i++) {
+            trimmed.put(log.opt(i));
+        }
+        try {
+            trimmed.put(new JSONObject()
+                    .put(KEY_TIME, decision.timeMillis)
+                    .put(KEY_SYNC_DUE, decision.syncDue)
+                    .put(KEY_INTERVAL, decision.intervalMillis)
+                    .put(KEY_REASONS, decision.reasons));
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Could not log decision", e);
+        }
+        mStore.edit().putString(KEY_DECISION_LOG, trimmed.toString()).apply();
+    }
+
+    private JSONArray readLog() {
+        try {
+            return new JSONArray(mStore.getString(KEY_DECISION_LOG, "[]"));
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Dropping unreadable decision log", e);
+            return new JSONArray();
+        }
+    }
+
+    private static boolean isNight(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return calendar.get(Calendar.HOUR_OF_DAY) < NIGHT_END_HOUR;
+    }
+
+    /**
+     * A decision of the scheduler: the interval between syncs it settled on, why, and whether a
+     * sync was due.
+     */
+    public static class Decision {
+        public final long timeMillis;
+        public final boolean syncDue;
+        public final long intervalMillis;
+        public final String reasons;
+
+        Decision(long timeMillis, boolean syncDue, long intervalMillis, String reasons) {
+            this.timeMillis = timeMillis;
+            this.syncDue = syncDue;
+            this.intervalMillis = intervalMillis;
+            this.reasons = reasons;
+        }
+
+        @Override
+        public String toString() {
+            return (syncDue ? "Sync" : "Skip") + " at " + timeMillis + ", interval "
+                    + TimeUnit.MILLISECONDS.toMinutes(intervalMillis) + " min " + reasons;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps count of how many bytes the forecast requests moved over the wire and how many bytes
+ * they expanded to once decompressed.
+ */
+public class TransferStats {
+
+    // The number of most recent requests we keep the individual records of
+    private static final int MAX_RECORDS = 32;
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static TransferStats sInstance;
+
+    private final ArrayDeque<Record> mRecentRecords = new ArrayDeque<>(MAX_RECORDS);
+    private long mRequestCount;
+    private long mTotalCompressedBytes;
+    private long mTotalDecompressedBytes;
+    private long mTotalMillis;
+
+    private TransferStats() {
+    }
+
+    public static TransferStats getInstance() {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new TransferStats();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    synchronized void record(Record record) {
+        if (mRecentRecords.size() == MAX_RECORDS) mRecentRecords.removeFirst();
+        mRecentRecords.addLast(record);
+        mRequestCount++;
+        mTotalCompressedBytes += record.compressedBytes;
+        mTotalDecompressedBytes += record.decompressedBytes;
+        mTotalMillis += record.durationMillis;
+    }
+
+    /**
+     * @return The records of the most recent requests, oldest first
+     */
+    public synchronized List<Record> getRecentRecords() {
+        return new ArrayList<>(mRecentRecords);
+    }
+
+    /**
+     * @param url The request URL
+     * @return The record of the most recent request to the URL, null if there is none
+     */
+    public synchronized Record findLastRecord(String url) {
+        Iterator<Record> records = mRecentRecords.descendingIterator();
+        while (records.hasNext()) {
+            Record record = records.next();
+            if (record.url.equals(url)) return record;
+        }
+        return null;
+    }
+
+    public synchronized long getRequestCount() {
+        return mRequestCount;
+    }
+
+    public synchronized long getTotalCompressedBytes() {
+        return mTotalCompressedBytes;
+    }
+
+    public synchronized long getTotalDecompressedBytes() {
+        return mTotalDecompressedBytes;
+    }
+
+    public synchronized long getTotalMillis() {
+        return mTotalMillis;
+    }
+
+    /**
+     * Byte counts and duration of a single request.
+     */
+    public static class Record {
+        public final String url;
+        // The encoding the body was sent with, null if it was sent uncompressed
+        public final String contentEncoding;
+        public final long compressedBytes;
+        public final long decompressedBytes;
+        public final long durationMillis;
+
+        Record(String url, String contentEncoding, long compressedBytes, long decompressedBytes,
+               long durationMillis) {
+            this.url = url;
+            this.contentEncoding = contentEncoding;
+            this.compressedBytes = compressedBytes;
+            this.decompressedBytes = decompressedBytes;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return url + ": " + compressedBytes + " bytes (" + contentEncoding + ") -> "
+                    + decompressedBytes + " bytes in " + durationMillis + " ms";
+        }
+    }
+}
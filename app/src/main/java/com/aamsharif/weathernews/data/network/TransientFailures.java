@@ -0,0 +1,33 @@
+package com.aamsharif.weathernews.data.network;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Tells which failures of a request are transient: the ones which say the server is unreachable
+ * or unwell for now. Both the {@link RetryPolicy} and the {@link CircuitBreaker} go by it, so a
+ * failure which counts against the server is always one worth retrying, and the other way round.
+ */
+final class TransientFailures {
+
+    // HTTP 429, which HttpURLConnection has no constant for
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private TransientFailures() {
+    }
+
+    /**
+     * @param e The reason a request failed
+     * @return true for a network error, e.g. a timeout, an unknown host, a refused or reset
+     * connection, and for a 429 or a 5xx. Other responses, like a 404 for an unknown city, and
+     * requests which were never sent as the quota was exceeded aren't.
+     */
+    static boolean isTransient(Exception e) {
+        if (e instanceof HttpStatusException) {
+            int responseCode = ((HttpStatusException) e).getResponseCode();
+            return responseCode == HTTP_TOO_MANY_REQUESTS
+                    || responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+        return e instanceof IOException && !(e instanceof QuotaExceededException);
+    }
+}
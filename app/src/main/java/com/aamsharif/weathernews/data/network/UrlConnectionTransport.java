@@ -0,0 +1,252 @@
+package com.aamsharif.weathernews.data.network;
+
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The default {@link HttpTransport}, built on {@link HttpURLConnection}.
+ *
+ * Connections are not disconnected after a request. Closing a fully read response stream hands
+ * the connection back to the keep-alive pool shared by every HttpURLConnection in the process,
+ * so consecutive requests to the same host skip the TCP (and TLS) handshake. The pool is left at
+ * the platform defaults: keep-alive is on unless http.keepAlive says otherwise, and up to 5 idle
+ * connections (http.maxConnections) are kept, more than the network threads can use at a time.
+ *
+ * Every request is timed phase by phase, see {@link RequestTiming}. HttpURLConnection doesn't
+ * report its phases and has no hook into its own lookup, so the DNS time is only an estimate: the
+ * host is looked up separately, once per host and process, ahead of the first connection to it.
+ * The start of the TLS handshake is taken from the moment the TCP socket is handed to the SSL
+ * socket factory.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    private final int mConnectTimeoutMillis;
+    private final int mReadTimeoutMillis;
+    private final long mTotalTimeoutMillis;
+
+    // The hosts whose lookup has been estimated already
+    private static final Set<String> ESTIMATED_HOSTS =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // The same factory for every connection, so that pooled connections can still be reused
+    private static final TimingSslSocketFactory SSL_SOCKET_FACTORY =
+            new TimingSslSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+
+    /**
+     * @param connectTimeoutMillis Time allowed to establish the connection
+     * @param readTimeoutMillis    Time allowed for any single read, including the response headers
+     * @param totalTimeoutMillis   Time allowed for the whole request, from connecting until the
+     *                             last byte of the body has been read
+     */
+    public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis,
+                                  long totalTimeoutMillis) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+        mTotalTimeoutMillis = totalTimeoutMillis;
+    }
+
+    @Override
+    public Response execute(URL url, Map<String, String> headers) throws IOException {
+        long startMillis = SystemClock.elapsedRealtime();
+        long deadlineMillis = startMillis + mTotalTimeoutMillis;
+        RequestTiming timing = new RequestTiming();
+
+        // Later requests find the address in the resolver cache, so only the first one is timed
+        if (ESTIMATED_HOSTS.add(url.getHost())) {
+            try {
+                InetAddress.getAllByName(url.getHost());
+            } catch (IOException e) {
+                ESTIMATED_HOSTS.remove(url.getHost());
+                throw e;
+            }
+            timing.dnsMillis = SystemClock.elapsedRealtime() - startMillis;
+        }
+        long resolvedMillis = SystemClock.elapsedRealtime();
+
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        if (urlConnection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) urlConnection).setSSLSocketFactory(SSL_SOCKET_FACTORY);
+        }
+        urlConnection.setConnectTimeout(mConnectTimeoutMillis);
+        urlConnection.setReadTimeout(mReadTimeoutMillis);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            urlConnection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        try {
+            SSL_SOCKET_FACTORY.startTiming();
+            urlConnection.connect();
+            long connectedMillis = SystemClock.elapsedRealtime();
+            long handshakeStartMillis = SSL_SOCKET_FACTORY.stopTiming();
+
+            // Wait for the response headers here, so that connect and read timeouts surface
+            // from execute() rather than later from whoever reads the body
+            urlConnection.getResponseCode();
+            long headersMillis = SystemClock.elapsedRealtime();
+
+            if (handshakeStartMillis != 0) {
+                timing.connectMillis = handshakeStartMillis - resolvedMillis;
+                timing.tlsMillis = connectedMillis - handshakeStartMillis;
+            } else {
+                timing.connectMillis = connectedMillis - resolvedMillis;
+            }
+            timing.ttfbMillis = headersMillis - connectedMillis;
+        } catch (IOException e) {
+            urlConnection.disconnect();
+            throw e;
+        } finally {
+            SSL_SOCKET_FACTORY.stopTiming();
+        }
+        return new UrlConnectionResponse(urlConnection, deadlineMillis, timing);
+    }
+
+    private static class UrlConnectionResponse implements Response {
+        private final HttpURLConnection mUrlConnection;
+        private final long mDeadlineMillis;
+        private final RequestTiming mTiming;
+        private InputStream mBody;
+
+        UrlConnectionResponse(HttpURLConnection urlConnection, long deadlineMillis,
+                              RequestTiming timing) {
+            mUrlConnection = urlConnection;
+            mDeadlineMillis = deadlineMillis;
+            mTiming = timing;
+        }
+
+        @Override
+        public RequestTiming getTiming() {
+            return mTiming;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return mUrlConnection.getResponseCode();
+        }
+
+        @Nullable
+        @Override
+        public String getHeaderField(String name) {
+            return mUrlConnection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                mBody = new DeadlineInputStream(mUrlConnection.getInputStream(), mDeadlineMillis);
+            }
+            return mBody;
+        }
+
+        @Override
+        public void close() {
+            try {
+                // Even a response nobody read (a 304, an error) has to have its stream closed
+                // for the connection to go back to the pool
+                InputStream body = mBody;
+                if (body == null) {
+                    body = mUrlConnection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST
+                            ? mUrlConnection.getErrorStream() : mUrlConnection.getInputStream();
+                }
+                if (body != null) {
+                    body.close();
+                } else {
+                    mUrlConnection.disconnect();
+                }
+            } catch (IOException e) {
+                mUrlConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Passes everything to the default SSL socket factory, noting the time the TCP socket of a
+     * new connection is handed over to have TLS layered on top of it. That is when the handshake
+     * starts.
+     */
+    private static class TimingSslSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory mDelegate;
+        // Start of the handshake on the connecting thread, 0 if none has started
+        private final ThreadLocal<long[]> mHandshakeStartMillis = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+
+        TimingSslSocketFactory(SSLSocketFactory delegate) {
+            mDelegate = delegate;
+        }
+
+        void startTiming() {
+            mHandshakeStartMillis.get()[0] = 0;
+        }
+
+        /**
+         * @return The time the handshake started on this thread since {@link #startTiming()},
+         * 0 if it didn't
+         */
+        long stopTiming() {
+            long[] handshakeStartMillis = mHandshakeStartMillis.get();
+            long millis = handshakeStartMillis[0];
+            handshakeStartMillis[0] = 0;
+            return millis;
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
+                throws IOException {
+            mHandshakeStartMillis.get()[0] = SystemClock.elapsedRealtime();
+            return mDelegate.createSocket(socket, host, port, autoClose);
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return mDelegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return mDelegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return mDelegate.createSocket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return mDelegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+                throws IOException {
+            return mDelegate.createSocket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return mDelegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress,
+                                   int localPort) throws IOException {
+            return mDelegate.createSocket(address, port, localAddress, localPort);
+        }
+    }
+}
@@ -4,26 +4,46 @@ package com.aamsharif.weathernews.data.network;
  * Created by A. A. M. Sharif on 29-Jan-19.
  */
 
-import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
+import androidx.concurrent.futures.ResolvableFuture;
+import androidx.annotation.Nullable;
+import androidx.work.BackoffPolicy;
 import androidx.work.Constraints;
+import androidx.work.Data;
 import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
 import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
 import android.text.format.DateUtils;
 import android.util.Log;
 
 import com.aamsharif.weathernews.AppExecutors;
 import com.aamsharif.weathernews.data.WeatherNewsPreferences;
+import com.aamsharif.weathernews.data.database.ForecastBatch;
+import com.aamsharif.weathernews.data.database.HourlyWeatherEntry;
 import com.aamsharif.weathernews.data.database.WeatherEntry;
 import com.aamsharif.weathernews.utilities.NotificationUtils;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -34,12 +54,40 @@ public class WeatherNetworkDataSource {
     public static final int NUM_DAYS = 14;
     private static final String LOG_TAG = WeatherNetworkDataSource.class.getSimpleName();
 
-    // Interval at which to sync with the weather. Use TimeUnit for convenience, rather than
-    // writing out a bunch of multiplication ourselves and risk making a silly mistake.
-    private static final int SYNC_INTERVAL_HOURS = 3;
-    private static final long SYNC_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(SYNC_INTERVAL_HOURS);
-    private static final long SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
-    private static final String WEATHER_NEWS_SYNC_TAG = "weathernews-sync";
+    // The periodic work only checks whether a sync is due, the SyncScheduler decides when it is
+    private static final String WEATHER_NEWS_SYNC_TAG = "weathernews-adaptive-sync";
+    // Name of the fixed 3-hourly sync, which older versions enqueued
+    private static final String LEGACY_SYNC_TAG = "weathernews-sync";
+    // Fetches the days left out of a forecast fetched over a metered or slow network
+    private static final String HORIZON_FILL_TAG = "weathernews-fill-horizon";
+    private static final String HISTORY_COMPACTION_TAG = "weathernews-compact-history";
+    // How often the archived weather is compacted
+    private static final int HISTORY_COMPACTION_INTERVAL_DAYS = 1;
+    // Initial delay WorkManager waits before rerunning a sync which asked to be retried
+    private static final long SYNC_BACKOFF_MINUTES = 10;
+
+    // Retries within a single fetch: at most 3 attempts, 2 and then 4 seconds apart at most
+    private static final int FETCH_MAX_ATTEMPTS = 3;
+    private static final long FETCH_RETRY_BASE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long FETCH_RETRY_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // After 5 failed fetches in a row, leave the server alone for 30 minutes
+    private static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_BREAKER_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    // Fetches of a forecast fetched less than a minute ago are dropped
+    private static final long FETCH_FRESHNESS_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // The saved locations are fetched 3 at a time, and each gets 20 seconds
+    private static final int MAX_CONCURRENT_LOCATION_FETCHES = 3;
+    private static final long LOCATION_FETCH_DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(20);
+
+    // A forecast fetched ahead of a location change is promoted for up to 10 minutes
+    private static final long STAGED_FORECAST_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // The number of most recent location changes the time to first forecast is kept of
+    private static final int MAX_LOCATION_CHANGE_SAMPLES = 20;
+
+    // Runs listeners of completed futures on the thread that completed them
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
 
     // For Singleton instantiation
     private static final Object LOCK = new Object();
@@ -48,13 +96,50 @@ public class WeatherNetworkDataSource {
 
     private final AppExecutors mExecutors;
 
-    // LiveData storing the latest downloaded weather forecasts
-    private final MutableLiveData<WeatherEntry[]> mDownloadedWeatherForecasts;
+    // Persist the downloaded weather forecasts
+    private volatile DownloadedForecastsHandler mDownloadedForecastsHandler;
+    private volatile LocationForecastsHandler mLocationForecastsHandler;
+    private volatile HourlyForecastsHandler mHourlyForecastsHandler;
+    // Receives every day of the preferred location's forecast as soon as it is parsed
+    private volatile ForecastEntryParsedListener mEntryParsedListener;
+
+    private final MultiLocationFetcher mMultiLocationFetcher;
+
+    private final RetryPolicy mRetryPolicy;
+    private final CircuitBreaker mCircuitBreaker;
+
+    // Fetches under way and the time of the last successful fetch, by request URL
+    private final Map<String, ListenableFuture<FetchOutcome>> mInFlightFetches = new HashMap<>();
+    private final Map<String, Long> mLastFetchMillis = new HashMap<>();
+    private final AtomicInteger mCoalescedFetchCount = new AtomicInteger();
+    private final AtomicInteger mSkippedFetchCount = new AtomicInteger();
+    private final AtomicInteger mSkippedWriteCount = new AtomicInteger();
+
+    // The forecast prefetched while the user edits the location. It stays out of the database
+    // until the location is changed to the same query.
+    private final Object mStagingLock = new Object();
+    private String mStagedLocation;
+    private ListenableFuture<WeatherResponse> mStagedForecast;
+    private long mStagedAtMillis;
+
+    // Time of the last location change whose forecast isn't in the database yet, 0 if none
+    private volatile long mLocationChangedAtMillis;
+    // Time from a location change to its forecast being in the database, by how it got there
+    private final LatencySamples mPromotedLocationChanges =
+            new LatencySamples(MAX_LOCATION_CHANGE_SAMPLES);
+    private final LatencySamples mFetchedLocationChanges =
+            new LatencySamples(MAX_LOCATION_CHANGE_SAMPLES);
 
     private WeatherNetworkDataSource(Context context, AppExecutors executors) {
         mContext = context;
         mExecutors = executors;
-        mDownloadedWeatherForecasts = new MutableLiveData<>();
+        mRetryPolicy = new RetryPolicy(FETCH_MAX_ATTEMPTS, FETCH_RETRY_BASE_DELAY_MILLIS,
+                FETCH_RETRY_MAX_DELAY_MILLIS);
+        mCircuitBreaker = new CircuitBreaker(CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+                CIRCUIT_BREAKER_OPEN_MILLIS);
+        mMultiLocationFetcher = new MultiLocationFetcher(executors.networkIO(),
+                executors.scheduler(), MAX_CONCURRENT_LOCATION_FETCHES,
+                LOCATION_FETCH_DEADLINE_MILLIS);
     }
 
     /**
@@ -71,8 +156,60 @@ public class WeatherNetworkDataSource {
         return sInstance;
     }
 
-    public LiveData<WeatherEntry[]> getCurrentWeatherForecasts() {
-        return mDownloadedWeatherForecasts;
+    /**
+     * Receives the forecasts of every successful download.
+     */
+    public interface DownloadedForecastsHandler {
+        /**
+         * @param location  The location the forecasts were downloaded for
+         * @param forecasts The downloaded forecasts
+         * @return Future completed once the forecasts have been persisted and the user notified
+         */
+        ListenableFuture<Void> onForecastsDownloaded(String location, WeatherEntry[] forecasts);
+    }
+
+    /**
+     * Receives every day of the preferred location's forecast as soon as it has been parsed, and
+     * is told if the download then fails, so that the days received can be dropped.
+     */
+    public interface ForecastEntryParsedListener {
+        /**
+         * @param location     The location the forecast is being downloaded for
+         * @param dayIndex     Index of the day in the forecast, 0 for today
+         * @param weatherEntry The forecast of the day
+         */
+        void onForecastEntryParsed(String location, int dayIndex, WeatherEntry weatherEntry);
+
+        /**
+         * @param location The location the forecast was being downloaded for
+         */
+        void onForecastDownloadFailed(String location);
+    }
+
+    /**
+     * Receives the forecasts of the saved locations after each refresh.
+     */
+    public interface LocationForecastsHandler {
+        /**
+         * @param forecasts The new forecasts of all the refreshed locations. A forecast may cover
+         *                  only some days, which replace the stored ones. Locations whose
+         *                  forecast could not be fetched or hasn't changed are left out.
+         * @return Future completed once the forecasts have been persisted
+         */
+        ListenableFuture<Void> onLocationForecastsDownloaded(ForecastBatch forecasts);
+    }
+
+    /**
+     * Receives the 3-hourly forecast of every successful download.
+     */
+    public interface HourlyForecastsHandler {
+        /**
+         * @param location  The location the forecast was downloaded for
+         * @param forecasts The downloaded forecast, one entry per 3-hour step
+         * @return Future completed once the forecast has been persisted
+         */
+        ListenableFuture<Void> onHourlyForecastsDownloaded(String location,
+                                                           List<HourlyWeatherEntry> forecasts);
     }
 
     /**
@@ -85,63 +222,690 @@ public class WeatherNetworkDataSource {
     }
 
     /**
-     * Schedules a repeating job service which fetches Weather News's weather data using FirebaseJobDispatcher.
+     * Fetches the forecast of a location the user may be about to change to, without storing it.
+     * The forecast is kept aside and only written to the database if the location is then changed
+     * to the same query, see {@link #onLocationChanged(String)}. Like any other fetch, only the
+     * next few days are fetched on a metered or slow network, see {@link HorizonPolicy}.
+     *
+     * @param locationQuery The location, as the user is typing it
+     */
+    public void prefetchLocationWeather(String locationQuery) {
+        int numDays = HorizonPolicy.getInstance(mContext).getDaysToFetch();
+        URL locationRequestUrl = NetworkUtils.getUrl(mContext, locationQuery, numDays);
+        ResolvableFuture<WeatherResponse> staged = ResolvableFuture.create();
+        synchronized (mStagingLock) {
+            if (locationQuery.equals(mStagedLocation) && !isStagedForecastExpired()) return;
+            mStagedLocation = locationQuery;
+            mStagedForecast = staged;
+            mStagedAtMillis = SystemClock.elapsedRealtime();
+        }
+        Log.d(LOG_TAG, "Prefetching the weather of " + locationQuery);
+        mExecutors.networkIO().execute(() -> {
+            try {
+                // The response is never stored if the location isn't changed to this one, so it
+                // must not make the next request to the same URL conditional
+                staged.set(NetworkUtils.readUncachedResponseFromHttpUrl(locationRequestUrl,
+                        RequestPriority.USER_INITIATED, in -> OpenWeatherJsonParser.parse(in, null)));
+            } catch (IOException | RuntimeException e) {
+                Log.w(LOG_TAG, "Prefetch of " + locationQuery + " failed", e);
+                staged.setException(e);
+            }
+        });
+    }
+
+    private boolean isStagedForecastExpired() {
+        return SystemClock.elapsedRealtime() - mStagedAtMillis > STAGED_FORECAST_LIFETIME_MILLIS;
+    }
+
+    /**
+     * Gets the weather of the location the user has just changed to. The forecast prefetched for
+     * the same query is written to the database straight away, waiting for the prefetch to finish
+     * if need be, and the rest of the new location's weather is then refreshed; without one, the
+     * weather is fetched as usual.
+     *
+     * @param locationQuery The new location
+     */
+    public void onLocationChanged(String locationQuery) {
+        mLocationChangedAtMillis = SystemClock.elapsedRealtime();
+        ListenableFuture<WeatherResponse> staged = null;
+        synchronized (mStagingLock) {
+            if (locationQuery.equals(mStagedLocation) && !isStagedForecastExpired()) {
+                staged = mStagedForecast;
+            }
+            mStagedLocation = null;
+            mStagedForecast = null;
+        }
+        if (staged == null) {
+            startFetchWeatherService();
+            return;
+        }
+
+        ListenableFuture<WeatherResponse> prefetched = staged;
+        prefetched.addListener(() -> {
+            WeatherResponse response;
+            try {
+                response = prefetched.get();
+            } catch (ExecutionException | InterruptedException e) {
+                response = null;
+            }
+            DownloadedForecastsHandler handler = mDownloadedForecastsHandler;
+            if (response == null || response.getWeatherForecast().length == 0 || handler == null) {
+                startFetchWeatherService();
+                return;
+            }
+            promoteStagedForecast(locationQuery, response, handler);
+        }, DIRECT_EXECUTOR);
+    }
+
+    private void promoteStagedForecast(String locationQuery, WeatherResponse response,
+                                       DownloadedForecastsHandler handler) {
+        LocationResolutionCache.getInstance(mContext).putResolution(locationQuery, response);
+        // The weather table no longer holds the response of any cached URL
+        ResponseCache.getInstance(mContext).evict(ResponseCache.SLOT_WEATHER);
+        ListenableFuture<Void> persisted = handler.onForecastsDownloaded(locationQuery,
+                response.getWeatherForecast());
+        persisted.addListener(() -> {
+            try {
+                persisted.get();
+                recordFirstForecastAfterLocationChange(mPromotedLocationChanges);
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(LOG_TAG, "Prefetched forecasts could not be persisted", e);
+                startFetchWeatherService();
+                return;
+            }
+            // The rest of what a fetch refreshes, as the service isn't started for it
+            if (response.getWeatherForecast().length < NUM_DAYS) scheduleHorizonFill();
+            fetchSavedLocationsWeather(RequestPriority.USER_INITIATED);
+            fetchHourlyWeather(RequestPriority.USER_INITIATED);
+        }, DIRECT_EXECUTOR);
+    }
+
+    private void recordFirstForecastAfterLocationChange(LatencySamples samples) {
+        long changedAtMillis = mLocationChangedAtMillis;
+        if (changedAtMillis == 0) return;
+        mLocationChangedAtMillis = 0;
+        long elapsedMillis = SystemClock.elapsedRealtime() - changedAtMillis;
+        samples.add(elapsedMillis);
+        Log.i(LOG_TAG, "First forecast after the location change in " + elapsedMillis + " ms, "
+                + (samples == mPromotedLocationChanges ? "prefetched" : "fetched"));
+    }
+
+    /**
+     * @return Median time from a location change to its forecast being in the database when the
+     * forecast had been prefetched, -1 if there was no such change yet
+     */
+    public long getPromotedTimeToFirstForecastMillis() {
+        return mPromotedLocationChanges.getPercentile(50);
+    }
+
+    /**
+     * @return Median time from a location change to its forecast being in the database when the
+     * forecast had to be fetched after the change, -1 if there was no such change yet
+     */
+    public long getFetchedTimeToFirstForecastMillis() {
+        return mFetchedLocationChanges.getPercentile(50);
+    }
+
+    /**
+     * Schedules the periodic work which syncs the weather whenever the {@link SyncScheduler} finds
+     * a sync due. Work which is already scheduled is kept, so its schedule survives the app
+     * being restarted.
      */
     public void scheduleRecurringFetchWeatherSync() {
         Constraints constraints = new Constraints.Builder()
                 // Any working network connection is required for this work
                 .setRequiredNetworkType(NetworkType.CONNECTED)
                 .build();
-        // We want the weather data to be synced every 3 to 4 hours
+        // Wake up every hour or so to ask the scheduler whether a sync is due
         PeriodicWorkRequest workRequest = new PeriodicWorkRequest.Builder(FetchWorker.class,
-                SYNC_INTERVAL_SECONDS + SYNC_FLEXTIME_SECONDS, TimeUnit.SECONDS,
-                SYNC_FLEXTIME_SECONDS, TimeUnit.SECONDS)
+                SyncScheduler.CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES,
+                SyncScheduler.CHECK_FLEXTIME_MINUTES, TimeUnit.MINUTES)
                 .setConstraints(constraints)
+                // Syncs which failed for a transient reason are rerun with growing delays
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, SYNC_BACKOFF_MINUTES, TimeUnit.MINUTES)
                 .build();
 
-        WorkManager.getInstance()
-                // If any pending (uncompleted) work with the same unique name already exists,
-                // then, replace that pending work with the newly-specified work.
-                // Also, set the UNIQUE tag used to identify this work
-                .enqueueUniquePeriodicWork(WEATHER_NEWS_SYNC_TAG, ExistingPeriodicWorkPolicy.REPLACE, workRequest);
+        WorkManager workManager = WorkManager.getInstance();
+        workManager.cancelUniqueWork(LEGACY_SYNC_TAG);
+        // If work with the same unique name is already scheduled, keep it rather than
+        // restarting its schedule
+        workManager.enqueueUniquePeriodicWork(WEATHER_NEWS_SYNC_TAG,
+                ExistingPeriodicWorkPolicy.KEEP, workRequest);
+    }
+
+    /**
+     * Schedules the periodic work which deletes the archived weather older than the retention
+     * period. It only runs while the device is idle and charging, so it never competes with the
+     * app for the database.
+     */
+    public void scheduleHistoryCompaction() {
+        Constraints.Builder constraints = new Constraints.Builder()
+                .setRequiresCharging(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) constraints.setRequiresDeviceIdle(true);
+        PeriodicWorkRequest workRequest = new PeriodicWorkRequest.Builder(
+                HistoryCompactionWorker.class, HISTORY_COMPACTION_INTERVAL_DAYS, TimeUnit.DAYS)
+                .setConstraints(constraints.build())
+                .build();
+        WorkManager.getInstance().enqueueUniquePeriodicWork(HISTORY_COMPACTION_TAG,
+                ExistingPeriodicWorkPolicy.KEEP, workRequest);
     }
 
     /**
-     * Gets the newest weather by fetching from Open Weather Map server
+     * Gets the newest weather by fetching from Open Weather Map server. Requests failing for
+     * transient reasons are retried with exponential backoff, and no request is made at all while
+     * the circuit breaker is open.
+     *
+     * Callers asking for a forecast which is already being fetched share that fetch, and a fetch
+     * of a forecast which was fetched successfully less than a minute ago is dropped.
+     *
+     * On a metered or slow network only the next few days are fetched, see {@link HorizonPolicy},
+     * and the rest of the days are fetched once an unmetered network is available.
+     *
+     * @param priority How urgently the forecast is wanted
+     * @return Future completed with the outcome of the fetch once the forecasts have been
+     * downloaded, parsed, written to the database and the user notified of them
      */
-    void fetchWeather() {
+    ListenableFuture<FetchOutcome> fetchWeather(RequestPriority priority) {
+        // The getUrl method will return the URL that we need to get the forecast JSON for the
+        // weather. It will decide whether to create a URL based off of the latitude and
+        // longitude or off of a simple location as a String. As it holds both the location
+        // and the units, it also identifies the fetch.
+        String locationQuery = WeatherNewsPreferences.getPreferredWeatherLocation(mContext);
+        int numDays = HorizonPolicy.getInstance(mContext).getDaysToFetch();
+        URL weatherRequestUrl = NetworkUtils.getUrl(mContext, locationQuery, numDays);
+        String fetchKey = String.valueOf(weatherRequestUrl);
+
+        ResolvableFuture<FetchOutcome> outcome;
+        synchronized (mInFlightFetches) {
+            // Join a fetch of the same forecast which is already under way
+            ListenableFuture<FetchOutcome> inFlight = mInFlightFetches.get(fetchKey);
+            if (inFlight != null) {
+                Log.d(LOG_TAG, "Fetch weather joined the one in flight");
+                mCoalescedFetchCount.incrementAndGet();
+                return inFlight;
+            }
+
+            outcome = ResolvableFuture.create();
+
+            // Drop the fetch if the same forecast was fetched only moments ago
+            Long lastFetchMillis = mLastFetchMillis.get(fetchKey);
+            if (lastFetchMillis != null
+                    && SystemClock.elapsedRealtime() - lastFetchMillis < FETCH_FRESHNESS_WINDOW_MILLIS) {
+                Log.d(LOG_TAG, "Forecast was fetched moments ago, fetch skipped");
+                mSkippedFetchCount.incrementAndGet();
+                outcome.set(FetchOutcome.SUCCESS);
+                return outcome;
+            }
+
+            if (!mCircuitBreaker.allowRequest()) {
+                Log.w(LOG_TAG, "Circuit breaker is open, fetch skipped");
+                outcome.set(FetchOutcome.RETRY);
+                return outcome;
+            }
+
+            mInFlightFetches.put(fetchKey, outcome);
+        }
+
         Log.d(LOG_TAG, "Fetch weather started");
+        long startMillis = SystemClock.elapsedRealtime();
+        outcome.addListener(() -> {
+            Log.d(LOG_TAG, "Fetch weather completed in "
+                    + (SystemClock.elapsedRealtime() - startMillis) + " ms\n"
+                    + NetworkTimings.getInstance().getReport());
+            synchronized (mInFlightFetches) {
+                mInFlightFetches.remove(fetchKey);
+                if (isSuccessful(outcome)) {
+                    mLastFetchMillis.put(fetchKey, SystemClock.elapsedRealtime());
+                    SyncScheduler.getInstance(mContext).recordSync();
+                }
+            }
+        }, DIRECT_EXECUTOR);
+        mExecutors.networkIO().execute(() -> fetchWeatherWithRetries(locationQuery,
+                weatherRequestUrl, numDays, priority, outcome));
+        return outcome;
+    }
+
+    /**
+     * Schedules a one-off fetch which runs as soon as an unmetered network is available, to fill
+     * in the days a fetch over a metered or slow network left out.
+     */
+    private void scheduleHorizonFill() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .build();
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(FetchWorker.class)
+                .setConstraints(constraints)
+                .setInputData(new Data.Builder()
+                        .putBoolean(FetchWorker.KEY_FILL_HORIZON, true)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, SYNC_BACKOFF_MINUTES, TimeUnit.MINUTES)
+                .build();
+        // A fill which is already waiting for an unmetered network will do
+        WorkManager.getInstance().enqueueUniqueWork(HORIZON_FILL_TAG, ExistingWorkPolicy.KEEP,
+                workRequest);
+    }
+
+    private static boolean isSuccessful(ListenableFuture<FetchOutcome> outcome) {
+        try {
+            return outcome.get() == FetchOutcome.SUCCESS;
+        } catch (ExecutionException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Number of fetches which joined a fetch of the same forecast already in flight
+     */
+    public int getCoalescedFetchCount() {
+        return mCoalescedFetchCount.get();
+    }
+
+    /**
+     * @return Number of fetches dropped because the same forecast had just been fetched
+     */
+    public int getSkippedFetchCount() {
+        return mSkippedFetchCount.get();
+    }
+
+    /**
+     * Records that a downloaded forecast was identical to the stored one, so it wasn't written.
+     * Also counts as a sync which didn't change the forecast.
+     */
+    public void recordSkippedWrite() {
+        mSkippedWriteCount.incrementAndGet();
+        recordForecastChange(0);
+    }
+
+    /**
+     * @return Number of downloaded forecasts which weren't written as they hadn't changed
+     */
+    public int getSkippedWriteCount() {
+        return mSkippedWriteCount.get();
+    }
+
+    /**
+     * Records how much the last sync changed the forecast, so that the {@link SyncScheduler} can
+     * sync a changing forecast more often than a settled one.
+     *
+     * @param changeScore The change, as returned by {@link SyncScheduler#getForecastChangeScore}
+     */
+    public void recordForecastChange(double changeScore) {
+        SyncScheduler.getInstance(mContext).recordForecastChange(changeScore);
+    }
+
+    /**
+     * Sets the handler the downloaded forecasts are passed to, so that they can be persisted.
+     */
+    public void setDownloadedForecastsHandler(DownloadedForecastsHandler handler) {
+        mDownloadedForecastsHandler = handler;
+    }
+
+    /**
+     * Sets the listener every day of the preferred location's forecast is passed to as soon as it
+     * has been parsed, ahead of the whole forecast being passed to the
+     * {@link DownloadedForecastsHandler}. Today comes first.
+     */
+    public void setEntryParsedListener(ForecastEntryParsedListener listener) {
+        mEntryParsedListener = listener;
+    }
+
+    /**
+     * Sets the handler the forecasts of the saved locations are passed to, so that they can be
+     * persisted.
+     */
+    public void setLocationForecastsHandler(LocationForecastsHandler handler) {
+        mLocationForecastsHandler = handler;
+    }
+
+    /**
+     * Sets the handler the downloaded 3-hourly forecasts are passed to, so that they can be
+     * persisted.
+     */
+    public void setHourlyForecastsHandler(HourlyForecastsHandler handler) {
+        mHourlyForecastsHandler = handler;
+    }
+
+    /**
+     * Gets the newest 3-hourly forecast of the preferred location. Unlike the daily forecast,
+     * a failed download isn't retried right away; the next sync will try again.
+     *
+     * @param priority How urgently the forecast is wanted
+     * @return Future completed with the outcome of the fetch once the forecast has been persisted
+     */
+    ListenableFuture<FetchOutcome> fetchHourlyWeather(RequestPriority priority) {
+        String locationQuery = WeatherNewsPreferences.getPreferredWeatherLocation(mContext);
+        URL hourlyRequestUrl = NetworkUtils.getHourlyUrl(mContext, locationQuery);
+        ResolvableFuture<FetchOutcome> outcome = ResolvableFuture.create();
+        if (!mCircuitBreaker.allowRequest()) {
+            Log.w(LOG_TAG, "Circuit breaker is open, hourly fetch skipped");
+            outcome.set(FetchOutcome.RETRY);
+            return outcome;
+        }
+
         mExecutors.networkIO().execute(() -> {
+            List<HourlyWeatherEntry> forecasts;
+            try {
+                long startMillis = SystemClock.elapsedRealtime();
+                forecasts = NetworkUtils.readResponseFromHttpUrl(mContext, hourlyRequestUrl,
+                        priority, in -> OpenWeatherJsonParser.parseHourly(in, locationQuery));
+                Log.d(LOG_TAG, "Hourly forecast fetched in "
+                        + (SystemClock.elapsedRealtime() - startMillis) + " ms");
+            } catch (QuotaExceededException e) {
+                Log.w(LOG_TAG, "Hourly fetch throttled", e);
+                mCircuitBreaker.recordIgnored();
+                outcome.set(FetchOutcome.RETRY);
+                return;
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Hourly fetch failed", e);
+                mCircuitBreaker.recordFailure(e);
+                outcome.set(mRetryPolicy.isRetryable(e) ? FetchOutcome.RETRY : FetchOutcome.FAILURE);
+                return;
+            }
+            mCircuitBreaker.recordSuccess();
+
+            HourlyForecastsHandler handler = mHourlyForecastsHandler;
+            if (forecasts == null || forecasts.isEmpty() || handler == null) {
+                outcome.set(FetchOutcome.SUCCESS);
+                return;
+            }
+            ListenableFuture<Void> persisted =
+                    handler.onHourlyForecastsDownloaded(locationQuery, forecasts);
+            persisted.addListener(() -> {
+                try {
+                    persisted.get();
+                    ResponseCache.getInstance(mContext).commit(hourlyRequestUrl.toString(), null);
+                    outcome.set(FetchOutcome.SUCCESS);
+                } catch (ExecutionException | InterruptedException e) {
+                    Log.e(LOG_TAG, "Hourly forecast could not be persisted", e);
+                    outcome.set(FetchOutcome.FAILURE);
+                }
+            }, DIRECT_EXECUTOR);
+        });
+        return outcome;
+    }
+
+    /**
+     * Gets the newest weather of every saved location, fetching the locations in parallel.
+     *
+     * @param priority How urgently the forecasts are wanted
+     * @return Future completed with the outcome of the refresh once the new forecasts have been
+     * persisted. The outcome is {@link FetchOutcome#RETRY} if any location failed.
+     */
+    ListenableFuture<FetchOutcome> fetchSavedLocationsWeather(RequestPriority priority) {
+        List<String> locations = WeatherNewsPreferences.getSavedLocations(mContext);
+        ResolvableFuture<FetchOutcome> outcome = ResolvableFuture.create();
+        if (locations.isEmpty()) {
+            outcome.set(FetchOutcome.SUCCESS);
+            return outcome;
+        }
+        if (!mCircuitBreaker.allowRequest()) {
+            Log.w(LOG_TAG, "Circuit breaker is open, saved locations skipped");
+            outcome.set(FetchOutcome.RETRY);
+            return outcome;
+        }
+
+        List<MultiLocationFetcher.FetchTask> tasks = createLocationFetchTasks(locations, priority);
+        Log.d(LOG_TAG, "Fetching " + locations.size() + " saved locations with "
+                + tasks.size() + " requests");
+        long startMillis = SystemClock.elapsedRealtime();
+        ListenableFuture<MultiLocationFetcher.Results> fetched =
+                mMultiLocationFetcher.fetchAll(tasks);
+        fetched.addListener(() -> {
+            MultiLocationFetcher.Results results;
             try {
-                // The getUrl method will return the URL that we need to get the forecast JSON for the
-                // weather. It will decide whether to create a URL based off of the latitude and
-                // longitude or off of a simple location as a String.
-                URL weatherRequestUrl = NetworkUtils.getUrl(mContext);
-
-                // Use the URL to retrieve the JSON
-                String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
-
-                // Parse the JSON into a list of weather forecasts
-                WeatherResponse response = OpenWeatherJsonParser.parse(mContext, jsonWeatherResponse);
-                Log.d(LOG_TAG, "JSON Parsing finished");
-
-                // As long as there are weather forecasts, update the LiveData storing the most recent
-                // weather forecasts. This will trigger observers of that LiveData, such as the
-                // WeatherNewsRepository.
-                if (response != null && response.getWeatherForecast().length != 0) {
-                    Log.d(LOG_TAG, "JSON not null and has " + response.getWeatherForecast().length
-                            + " values");
-                    Log.d(LOG_TAG, String.format("First value is %1.0f and %1.0f",
-                            response.getWeatherForecast()[0].getMin(),
-                            response.getWeatherForecast()[0].getMax()));
-
-                    mDownloadedWeatherForecasts.postValue(response.getWeatherForecast());
+                results = fetched.get();
+            } catch (ExecutionException | InterruptedException e) {
+                mCircuitBreaker.recordIgnored();
+                outcome.set(FetchOutcome.RETRY);
+                return;
+            }
+            // A single location which got through shows the server is up
+            if (!results.getSucceeded().isEmpty()) {
+                mCircuitBreaker.recordSuccess();
+            } else if (results.hasServerFailure()) {
+                mCircuitBreaker.recordFailure();
+            } else {
+                mCircuitBreaker.recordIgnored();
+            }
+            Log.d(LOG_TAG, "Saved locations fetched in "
+                    + (SystemClock.elapsedRealtime() - startMillis) + " ms, "
+                    + results.getFailed().size() + " failed");
+            FetchOutcome fetchOutcome = results.getFailed().isEmpty()
+                    ? FetchOutcome.SUCCESS : FetchOutcome.RETRY;
+
+            // All the new forecasts are handed over together, so they are written in one go
+            ForecastBatch forecasts = results.getForecasts();
+            LocationForecastsHandler handler = mLocationForecastsHandler;
+            if (forecasts.isEmpty() || handler == null) {
+                outcome.set(fetchOutcome);
+                return;
+            }
+            ListenableFuture<Void> persisted = handler.onLocationForecastsDownloaded(forecasts);
+            persisted.addListener(() -> {
+                try {
+                    persisted.get();
+                    for (MultiLocationFetcher.FetchTask task : results.getSucceeded()) {
+                        task.onPersisted();
+                    }
+                    outcome.set(fetchOutcome);
+                } catch (ExecutionException | InterruptedException e) {
+                    Log.e(LOG_TAG, "Saved location forecasts could not be persisted", e);
+                    outcome.set(FetchOutcome.FAILURE);
                 }
+            }, DIRECT_EXECUTOR);
+        }, DIRECT_EXECUTOR);
+        return outcome;
+    }
+
+    /**
+     * Splits the saved locations into fetch tasks. A location whose full forecast was already
+     * downloaded today only needs today's weather refreshed, which the group endpoint returns for
+     * up to {@link NetworkUtils#MAX_GROUP_SIZE} cities per request. Every other location gets a
+     * request of its own for the full forecast.
+     */
+    private List<MultiLocationFetcher.FetchTask> createLocationFetchTasks(List<String> locations,
+                                                                         RequestPriority priority) {
+        LocationResolutionCache resolutionCache = LocationResolutionCache.getInstance(mContext);
+        List<MultiLocationFetcher.FetchTask> tasks = new ArrayList<>();
+        Map<Integer, String> groupedLocations = new LinkedHashMap<>();
+        for (String location : locations) {
+            LocationResolutionCache.Entry resolved = resolutionCache.get(location);
+            if (resolved != null && resolved.hasForecastFromToday()) {
+                groupedLocations.put(resolved.cityId, location);
+            } else {
+                tasks.add(new ForecastFetchTask(location, priority));
+            }
+        }
+        for (Map<Integer, String> group : NetworkUtils.splitIntoGroups(groupedLocations)) {
+            tasks.add(new GroupFetchTask(group, priority));
+        }
+        return tasks;
+    }
+
+    /**
+     * Downloads the full forecast of a single location.
+     */
+    private class ForecastFetchTask implements MultiLocationFetcher.FetchTask {
+        private final String mLocation;
+        private final RequestPriority mPriority;
+        private URL mRequestUrl;
+
+        ForecastFetchTask(String location, RequestPriority priority) {
+            mLocation = location;
+            mPriority = priority;
+        }
+
+        @Override
+        public List<String> getLocations() {
+            return Collections.singletonList(mLocation);
+        }
+
+        @Override
+        public ForecastBatch fetch() throws IOException {
+            // Kept, as the URL of the location may change once its forecast is downloaded
+            URL locationRequestUrl = NetworkUtils.getUrl(mContext, mLocation, NUM_DAYS);
+            mRequestUrl = locationRequestUrl;
+            ForecastBatch batch = new ForecastBatch(NUM_DAYS);
+            WeatherResponse response = NetworkUtils.readResponseFromHttpUrl(mContext,
+                    locationRequestUrl, mPriority,
+                    in -> OpenWeatherJsonParser.parseBatch(in, mLocation, batch));
+            if (response != null) {
+                LocationResolutionCache.getInstance(mContext).putForecastDownloaded(mLocation, response);
+            }
+            return batch;
+        }
+
+        @Override
+        public void onPersisted() {
+            ResponseCache.getInstance(mContext).commit(mRequestUrl.toString(), null);
+        }
+    }
+
+    /**
+     * Downloads today's weather of several locations with a single request to the group endpoint.
+     */
+    private class GroupFetchTask implements MultiLocationFetcher.FetchTask {
+        private final Map<Integer, String> mLocationsByCityId;
+        private final RequestPriority mPriority;
+
+        GroupFetchTask(Map<Integer, String> locationsByCityId, RequestPriority priority) {
+            mLocationsByCityId = locationsByCityId;
+            mPriority = priority;
+        }
+
+        @Override
+        public List<String> getLocations() {
+            return new ArrayList<>(mLocationsByCityId.values());
+        }
+
+        @Override
+        public ForecastBatch fetch() throws IOException {
+            URL groupRequestUrl = getRequestUrl();
+            ForecastBatch weather = NetworkUtils.readResponseFromHttpUrl(mContext,
+                    groupRequestUrl, mPriority,
+                    in -> OpenWeatherJsonParser.parseGroup(in, mLocationsByCityId));
+            return weather != null ? weather : new ForecastBatch(0);
+        }
+
+        @Override
+        public void onPersisted() {
+            ResponseCache.getInstance(mContext).commit(getRequestUrl().toString(), null);
+        }
+
+        private URL getRequestUrl() {
+            return NetworkUtils.buildGroupUrl(new ArrayList<>(mLocationsByCityId.keySet()));
+        }
+    }
+
+    private void fetchWeatherWithRetries(String locationQuery, URL weatherRequestUrl,
+                                         int numDays, RequestPriority priority,
+                                         ResolvableFuture<FetchOutcome> outcome) {
+        for (int attempt = 0; ; attempt++) {
+            WeatherResponse response;
+            try {
+                response = downloadWeather(locationQuery, weatherRequestUrl, priority);
+            } catch (QuotaExceededException e) {
+                // The request was never sent, so this says nothing about the server
+                Log.w(LOG_TAG, "Fetch throttled", e);
+                mCircuitBreaker.recordIgnored();
+                outcome.set(FetchOutcome.RETRY);
+                return;
             } catch (Exception e) {
+                boolean retryable = mRetryPolicy.isRetryable(e);
+                if (retryable && mRetryPolicy.canRetry(attempt, e)) {
+                    long delayMillis = mRetryPolicy.getDelayMillis(attempt, e);
+                    Log.w(LOG_TAG, "Fetch attempt " + (attempt + 1) + " failed, retrying in "
+                            + delayMillis + " ms", e);
+                    try {
+                        Thread.sleep(delayMillis);
+                        continue;
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
                 // Server probably invalid
-                e.printStackTrace();
+                Log.e(LOG_TAG, "Fetch failed after " + (attempt + 1) + " attempts", e);
+                mCircuitBreaker.recordFailure(e);
+                outcome.set(retryable ? FetchOutcome.RETRY : FetchOutcome.FAILURE);
+                return;
             }
-        });
+            mCircuitBreaker.recordSuccess();
+            // From now on, the location is requested by the coordinates it was resolved to
+            if (response != null) {
+                LocationResolutionCache.getInstance(mContext).putResolution(locationQuery, response);
+            }
+            if (response != null && numDays < NUM_DAYS) {
+                TransferStats.Record record = TransferStats.getInstance()
+                        .findLastRecord(weatherRequestUrl.toString());
+                if (record != null) {
+                    HorizonPolicy.getInstance(mContext).recordShortFetch(record.compressedBytes,
+                            response.getWeatherForecast().length);
+                }
+                scheduleHorizonFill();
+            }
+
+            // As long as there are weather forecasts, hand them over to be persisted, which
+            // is done by the WeatherNewsRepository. The fetch is complete once that is done.
+            DownloadedForecastsHandler handler = mDownloadedForecastsHandler;
+            if (response == null) {
+                // The forecast we already have is still current
+                recordForecastChange(0);
+            }
+            if (response == null || response.getWeatherForecast().length == 0 || handler == null) {
+                outcome.set(FetchOutcome.SUCCESS);
+                return;
+            }
+            ListenableFuture<Void> persisted =
+                    handler.onForecastsDownloaded(locationQuery, response.getWeatherForecast());
+            persisted.addListener(() -> {
+                try {
+                    persisted.get();
+                    // Only now does a fresh entry or a 304 mean the forecast is stored
+                    ResponseCache.getInstance(mContext).commit(weatherRequestUrl.toString(),
+                            ResponseCache.SLOT_WEATHER);
+                    recordFirstForecastAfterLocationChange(mFetchedLocationChanges);
+                    outcome.set(FetchOutcome.SUCCESS);
+                } catch (ExecutionException | InterruptedException e) {
+                    Log.e(LOG_TAG, "Downloaded forecasts could not be persisted", e);
+                    outcome.set(FetchOutcome.FAILURE);
+                }
+            }, DIRECT_EXECUTOR);
+            return;
+        }
+    }
+
+    @Nullable
+    private WeatherResponse downloadWeather(String locationQuery, URL weatherRequestUrl,
+                                            RequestPriority priority) throws IOException {
+        // Use the URL to retrieve the JSON and parse it into a list of weather forecasts
+        // while it is still being downloaded
+        long startMillis = SystemClock.elapsedRealtime();
+        // A null response means the forecast we already have is still current, so there
+        // is nothing to parse or write.
+        ForecastEntryParsedListener entryListener = mEntryParsedListener;
+        OpenWeatherJsonParser.OnEntryParsedListener listener = entryListener == null ? null
+                : (dayIndex, weatherEntry) ->
+                        entryListener.onForecastEntryParsed(locationQuery, dayIndex, weatherEntry);
+        WeatherResponse response;
+        try {
+            response = NetworkUtils.readResponseFromHttpUrl(mContext, weatherRequestUrl,
+                    priority, in -> OpenWeatherJsonParser.parse(in, listener));
+        } catch (IOException | RuntimeException e) {
+            // Days parsed before the failure must not stay next to the stored forecast
+            if (entryListener != null) entryListener.onForecastDownloadFailed(locationQuery);
+            throw e;
+        }
+        Log.d(LOG_TAG, "JSON Parsing finished in "
+                + (SystemClock.elapsedRealtime() - startMillis) + " ms");
+
+        if (response != null && response.getWeatherForecast().length != 0) {
+            Log.d(LOG_TAG, "JSON not null and has " + response.getWeatherForecast().length
+                    + " values");
+            Log.d(LOG_TAG, String.format("First value is %1.0f and %1.0f",
+                    response.getWeatherForecast()[0].getMin(),
+                    response.getWeatherForecast()[0].getMax()));
+        }
+        return response;
     }
 
     /**
@@ -26,6 +26,10 @@ public class WeatherNewsSyncIntentService extends IntentService {
     protected void onHandleIntent(Intent intent) {
         Log.d(LOG_TAG, "Intent service started");
         WeatherNetworkDataSource networkDataSource = InjectorUtils.provideNetworkDataSource(this.getApplicationContext());
-        networkDataSource.fetchWeather();
+        // The service is started when the app is opened or a setting is changed, so the user is
+        // waiting for the weather
+        networkDataSource.fetchWeather(RequestPriority.USER_INITIATED);
+        networkDataSource.fetchSavedLocationsWeather(RequestPriority.USER_INITIATED);
+        networkDataSource.fetchHourlyWeather(RequestPriority.USER_INITIATED);
     }
 }
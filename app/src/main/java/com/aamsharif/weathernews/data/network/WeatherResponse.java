@@ -16,11 +16,41 @@ class WeatherResponse {
     @NonNull
     private final WeatherEntry[] mWeatherForecast;
 
+    // OpenWeatherMap's id of the city the forecast is for, -1 if the response didn't include it
+    private final int mCityId;
+    // Coordinates of the city the forecast is for, NaN if the response didn't include them
+    private final double mCityLatitude;
+    private final double mCityLongitude;
+
     public WeatherResponse(@NonNull final WeatherEntry[] weatherForecast) {
+        this(weatherForecast, -1, Double.NaN, Double.NaN);
+    }
+
+    public WeatherResponse(@NonNull final WeatherEntry[] weatherForecast, int cityId,
+                           double cityLatitude, double cityLongitude) {
         mWeatherForecast = weatherForecast;
+        mCityId = cityId;
+        mCityLatitude = cityLatitude;
+        mCityLongitude = cityLongitude;
     }
 
     public WeatherEntry[] getWeatherForecast() {
         return mWeatherForecast;
     }
+
+    public int getCityId() {
+        return mCityId;
+    }
+
+    public boolean hasCityCoord() {
+        return !Double.isNaN(mCityLatitude) && !Double.isNaN(mCityLongitude);
+    }
+
+    public double getCityLatitude() {
+        return mCityLatitude;
+    }
+
+    public double getCityLongitude() {
+        return mCityLongitude;
+    }
 }
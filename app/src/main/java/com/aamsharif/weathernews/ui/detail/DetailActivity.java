@@ -23,7 +23,6 @@ import com.aamsharif.weathernews.utilities.InjectorUtils;
 import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 import com.aamsharif.weathernews.utilities.WeatherUtils;
 
-import java.util.Date;
 
 public class DetailActivity extends AppCompatActivity implements
         SharedPreferences.OnSharedPreferenceChangeListener {
@@ -55,9 +54,9 @@ public class DetailActivity extends AppCompatActivity implements
 
         mDetailBinding = DataBindingUtil.setContentView(this, R.layout.activity_detail);
         long timestamp = getIntent().getLongExtra(WEATHER_ID_EXTRA, -1);
-        Date date = new Date(timestamp);
+        int epochDay = WeatherNewsDateUtils.toEpochDay(timestamp);
 
-        DetailViewModelFactory factory = InjectorUtils.provideDetailViewModelFactory(this.getApplicationContext(), date);
+        DetailViewModelFactory factory = InjectorUtils.provideDetailViewModelFactory(this.getApplicationContext(), epochDay);
         mViewModel = ViewModelProviders.of(this, factory).get(DetailActivityViewModel.class);
         mViewModel.getWeather().observe(this, weatherEntry -> {
             if(weatherEntry != null) bindWeatherToUI(weatherEntry);
@@ -157,7 +156,7 @@ public class DetailActivity extends AppCompatActivity implements
          * the date representation for the local date in local time.
          * WeatherNewsDateUtils.getFriendlyDateString() takes care of this for us.
          */
-        long localDateMidnightGmt = weatherEntry.getDate().getTime();
+        long localDateMidnightGmt = weatherEntry.getDateMillis();
         String dateText = WeatherNewsDateUtils.getFriendlyDateString(DetailActivity.this, localDateMidnightGmt, true);
         mDetailBinding.primaryInfo.date.setText(dateText);
 
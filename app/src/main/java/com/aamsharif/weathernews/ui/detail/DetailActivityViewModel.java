@@ -6,22 +6,20 @@ import androidx.lifecycle.ViewModel;
 import com.aamsharif.weathernews.data.WeatherNewsRepository;
 import com.aamsharif.weathernews.data.database.WeatherEntry;
 
-import java.util.Date;
-
 /**
  * Created by A. A. M. Sharif on 29-Jan-19.
  */
 public class DetailActivityViewModel extends ViewModel {
     // Weather forecast the user is looking at
     private final LiveData<WeatherEntry> mWeather;
-    // Date for the weather forecast
-    private final Date mDate;
+    // Day of the weather forecast, in days since the epoch
+    private final int mEpochDay;
     private final WeatherNewsRepository mRepository;
 
-    public DetailActivityViewModel(WeatherNewsRepository repository, Date date) {
+    public DetailActivityViewModel(WeatherNewsRepository repository, int epochDay) {
         mRepository = repository;
-        mDate = date;
-        mWeather = mRepository.getWeatherbyDate(mDate);
+        mEpochDay = epochDay;
+        mWeather = mRepository.getWeatherByDay(mEpochDay);
     }
 
     public LiveData<WeatherEntry> getWeather() {
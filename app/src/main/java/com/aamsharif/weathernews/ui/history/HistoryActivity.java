@@ -0,0 +1,53 @@
+package com.aamsharif.weathernews.ui.history;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProviders;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.aamsharif.weathernews.R;
+import com.aamsharif.weathernews.data.WeatherNewsPreferences;
+import com.aamsharif.weathernews.utilities.InjectorUtils;
+
+/**
+ * Shows the archived weather of the preferred location, newest first. The list is paged, so it
+ * holds about the same number of days however long the history is.
+ */
+public class HistoryActivity extends AppCompatActivity {
+
+    private RecyclerView mRecyclerView;
+    private TextView mEmptyView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_history);
+
+        mRecyclerView = (RecyclerView) findViewById(R.id.recyclerview_history);
+        mEmptyView = (TextView) findViewById(R.id.tv_history_empty);
+
+        mRecyclerView.setLayoutManager(
+                new LinearLayoutManager(this, LinearLayoutManager.VERTICAL, false));
+        // Placeholders keep every row in place, so the size of the list never changes the layout
+        mRecyclerView.setHasFixedSize(true);
+
+        HistoryAdapter historyAdapter = new HistoryAdapter(this);
+        mRecyclerView.setAdapter(historyAdapter);
+
+        String location = WeatherNewsPreferences.getPreferredWeatherLocation(this);
+        HistoryViewModelFactory factory =
+                InjectorUtils.provideHistoryViewModelFactory(this.getApplicationContext(), location);
+        HistoryActivityViewModel viewModel =
+                ViewModelProviders.of(this, factory).get(HistoryActivityViewModel.class);
+        viewModel.getHistory().observe(this, history -> {
+            historyAdapter.submitList(history);
+            boolean empty = history == null || history.isEmpty();
+            mRecyclerView.setVisibility(empty ? View.INVISIBLE : View.VISIBLE);
+            mEmptyView.setVisibility(empty ? View.VISIBLE : View.INVISIBLE);
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.aamsharif.weathernews.ui.history;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.ViewModel;
+import androidx.paging.PagedList;
+
+import com.aamsharif.weathernews.data.WeatherNewsRepository;
+import com.aamsharif.weathernews.data.database.HistoryWeatherEntry;
+
+public class HistoryActivityViewModel extends ViewModel {
+    // archived weather, a page at a time
+    private final LiveData<PagedList<HistoryWeatherEntry>> mHistory;
+    private final WeatherNewsRepository mRepository;
+
+    public HistoryActivityViewModel(WeatherNewsRepository repository, String location) {
+        mRepository = repository;
+        mHistory = mRepository.getPagedHistory(location);
+    }
+
+    public LiveData<PagedList<HistoryWeatherEntry>> getHistory() {
+        return mHistory;
+    }
+}
@@ -0,0 +1,119 @@
+package com.aamsharif.weathernews.ui.history;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+import com.aamsharif.weathernews.R;
+import com.aamsharif.weathernews.data.database.HistoryWeatherEntry;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
+import com.aamsharif.weathernews.utilities.WeatherUtils;
+
+/**
+ * HistoryAdapter exposes the archived weather to a RecyclerView, a page at a time. Days which
+ * haven't been loaded yet are shown as empty rows of the same height, so the scrollbar and fast
+ * flings behave as if the whole history were there.
+ */
+class HistoryAdapter extends PagedListAdapter<HistoryWeatherEntry, HistoryAdapter.HistoryAdapterViewHolder> {
+
+    // There is one row per day; the contents only change if a day is archived again
+    private static final DiffUtil.ItemCallback<HistoryWeatherEntry> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<HistoryWeatherEntry>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull HistoryWeatherEntry oldItem,
+                                               @NonNull HistoryWeatherEntry newItem) {
+                    return oldItem.getEpochDay() == newItem.getEpochDay();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull HistoryWeatherEntry oldItem,
+                                                  @NonNull HistoryWeatherEntry newItem) {
+                    return oldItem.getWeatherIconId() == newItem.getWeatherIconId()
+                            && oldItem.getMin() == newItem.getMin()
+                            && oldItem.getMax() == newItem.getMax();
+                }
+            };
+
+    // The context we use to utility methods, app resources and layout inflaters
+    private final Context mContext;
+
+    HistoryAdapter(@NonNull Context context) {
+        super(DIFF_CALLBACK);
+        mContext = context;
+    }
+
+    @NonNull
+    @Override
+    public HistoryAdapterViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
+        View view = LayoutInflater.from(mContext).inflate(R.layout.forecast_list_item, viewGroup, false);
+        return new HistoryAdapterViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HistoryAdapterViewHolder holder, int position) {
+        HistoryWeatherEntry weather = getItem(position);
+        if (weather == null) {
+            // A placeholder, bound again once its page has been loaded
+            holder.clear();
+            return;
+        }
+
+        int weatherIconId = weather.getWeatherIconId();
+        holder.iconView.setImageResource(
+                WeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherIconId));
+
+        holder.dateView.setText(WeatherNewsDateUtils.getFriendlyDateString(mContext,
+                weather.getDateMillis(), false));
+
+        String description = WeatherUtils.getStringForWeatherCondition(mContext, weatherIconId);
+        holder.descriptionView.setText(description);
+        holder.descriptionView.setContentDescription(
+                mContext.getString(R.string.a11y_forecast, description));
+
+        String highString = WeatherUtils.formatTemperature(mContext, weather.getMax());
+        holder.highTempView.setText(highString);
+        holder.highTempView.setContentDescription(
+                mContext.getString(R.string.a11y_high_temp, highString));
+
+        String lowString = WeatherUtils.formatTemperature(mContext, weather.getMin());
+        holder.lowTempView.setText(lowString);
+        holder.lowTempView.setContentDescription(
+                mContext.getString(R.string.a11y_low_temp, lowString));
+    }
+
+    class HistoryAdapterViewHolder extends RecyclerView.ViewHolder {
+        final ImageView iconView;
+
+        final TextView dateView;
+        final TextView descriptionView;
+        final TextView highTempView;
+        final TextView lowTempView;
+
+        HistoryAdapterViewHolder(View view) {
+            super(view);
+
+            iconView = (ImageView) view.findViewById(R.id.weather_icon);
+            dateView = (TextView) view.findViewById(R.id.date);
+            descriptionView = (TextView) view.findViewById(R.id.weather_description);
+            highTempView = (TextView) view.findViewById(R.id.high_temperature);
+            lowTempView = (TextView) view.findViewById(R.id.low_temperature);
+        }
+
+        void clear() {
+            iconView.setImageDrawable(null);
+            dateView.setText(null);
+            descriptionView.setText(null);
+            descriptionView.setContentDescription(null);
+            highTempView.setText(null);
+            highTempView.setContentDescription(null);
+            lowTempView.setText(null);
+            lowTempView.setContentDescription(null);
+        }
+    }
+}
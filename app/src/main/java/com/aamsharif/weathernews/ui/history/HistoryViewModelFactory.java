@@ -0,0 +1,29 @@
+package com.aamsharif.weathernews.ui.history;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.aamsharif.weathernews.data.WeatherNewsRepository;
+
+/**
+ * Factory method that allows us to create a ViewModel with a constructor that takes a
+ * {@link WeatherNewsRepository} and the location whose history is shown
+ */
+public class HistoryViewModelFactory extends ViewModelProvider.NewInstanceFactory {
+
+    private final WeatherNewsRepository mRepository;
+    private final String mLocation;
+
+    public HistoryViewModelFactory(WeatherNewsRepository repository, String location) {
+        this.mRepository = repository;
+        this.mLocation = location;
+    }
+
+    @NonNull
+    @Override
+    public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+        //noinspection unchecked
+        return (T) new HistoryActivityViewModel(mRepository, mLocation);
+    }
+}
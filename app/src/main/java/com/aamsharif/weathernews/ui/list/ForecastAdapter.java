@@ -6,6 +6,7 @@ package com.aamsharif.weathernews.ui.list;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -17,7 +18,6 @@ import com.aamsharif.weathernews.data.database.ListWeatherEntry;
 import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 import com.aamsharif.weathernews.utilities.WeatherUtils;
 
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -43,7 +43,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      * The interface that receives onItemClick messages.
      */
     public interface ForecastAdapterOnItemClickHandler {
-        void onItemClick(Date date);
+        void onItemClick(int epochDay);
     }
 
     /*
@@ -128,7 +128,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         /****************
          * Weather Date *
          ****************/
-        long dateInMillis = currentWeather.getDate().getTime();
+        long dateInMillis = currentWeather.getDateMillis();
         /* Get human readable string using our utility method */
         String dateString = WeatherNewsDateUtils.getFriendlyDateString(mContext, dateInMillis, false);
 
@@ -235,14 +235,47 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
 
     /**
      * Swaps the list used by the ForecastAdapter for its weather data. This method is called by
-     * {@link MainActivity} after a load has finished. When this method is called, we assume we have
-     * a new set of data, so we call notifyDataSetChanged to tell the RecyclerView to update.
+     * {@link MainActivity} whenever the forecast changes. While a forecast is still being
+     * downloaded, each new list usually only adds days to the one before, so only the rows which
+     * actually changed are updated, and the rows already shown stay put.
      *
      * @param newForecast the new list of forecasts to use as ForecastAdapter's data source
      */
     void swapForecast(final List<ListWeatherEntry> newForecast) {
+        final List<ListWeatherEntry> oldForecast = mForecast;
         mForecast = newForecast;
-        notifyDataSetChanged();
+        if (oldForecast == null || newForecast == null) {
+            notifyDataSetChanged();
+            return;
+        }
+
+        DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldForecast.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newForecast.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                // There is one row per day
+                return oldForecast.get(oldItemPosition).getEpochDay()
+                        == newForecast.get(newItemPosition).getEpochDay();
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                ListWeatherEntry oldWeather = oldForecast.get(oldItemPosition);
+                ListWeatherEntry newWeather = newForecast.get(newItemPosition);
+                return oldWeather.getWeatherIconId() == newWeather.getWeatherIconId()
+                        && oldWeather.getMin() == newWeather.getMin()
+                        && oldWeather.getMax() == newWeather.getMax();
+            }
+        }, false).dispatchUpdatesTo(this);
     }
 
     class ForecastAdapterViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
@@ -275,8 +308,8 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            Date date = mForecast.get(adapterPosition).getDate();
-            mClickHandler.onItemClick(date);
+            int epochDay = mForecast.get(adapterPosition).getEpochDay();
+            mClickHandler.onItemClick(epochDay);
         }
     }
 }
\ No newline at end of file
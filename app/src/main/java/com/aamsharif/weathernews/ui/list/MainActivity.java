@@ -8,6 +8,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -21,10 +22,13 @@ import android.widget.ProgressBar;
 import com.aamsharif.weathernews.R;
 import com.aamsharif.weathernews.data.WeatherNewsPreferences;
 import com.aamsharif.weathernews.data.database.ListWeatherEntry;
+import com.aamsharif.weathernews.data.network.LocationResolutionCache;
+import com.aamsharif.weathernews.data.network.SyncScheduler;
 import com.aamsharif.weathernews.ui.settings.SettingsActivity;
 import com.aamsharif.weathernews.ui.detail.DetailActivity;
+import com.aamsharif.weathernews.ui.history.HistoryActivity;
 import com.aamsharif.weathernews.utilities.InjectorUtils;
-import java.util.Date;
+import com.aamsharif.weathernews.utilities.WeatherNewsDateUtils;
 import java.util.List;
 import androidx.lifecycle.ViewModelProviders;
 
@@ -43,6 +47,9 @@ public class MainActivity extends AppCompatActivity implements
 
     private MainActivityViewModel mViewModel;
 
+    // When the loading screen was put up, 0 while the weather is shown
+    private long mLoadingSinceMillis;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -83,6 +90,9 @@ public class MainActivity extends AppCompatActivity implements
     protected void onStart() {
         super.onStart();
 
+        // The weather is synced more often while the app is in use
+        SyncScheduler.getInstance(this).recordForeground();
+
         if (PREFERENCES_HAVE_BEEN_UPDATED) {
             List<ListWeatherEntry> weatherEntries = mViewModel.getForecast().getValue();
             loadAdapterAndShowScreen(weatherEntries);
@@ -106,8 +116,17 @@ public class MainActivity extends AppCompatActivity implements
 
         // Show the weather list or the loading screen based on whether the forecast data exists
         // and is loaded
-        if (weatherEntries != null && weatherEntries.size() != 0) showWeatherDataView();
-        else showLoading();
+        if (weatherEntries != null && weatherEntries.size() != 0) {
+            if (mLoadingSinceMillis != 0) {
+                Log.d(TAG, "Time to first row: "
+                        + (SystemClock.elapsedRealtime() - mLoadingSinceMillis) + " ms");
+                mLoadingSinceMillis = 0;
+            }
+            showWeatherDataView();
+        } else {
+            if (mLoadingSinceMillis == 0) mLoadingSinceMillis = SystemClock.elapsedRealtime();
+            showLoading();
+        }
     }
 
     /**
@@ -115,10 +134,17 @@ public class MainActivity extends AppCompatActivity implements
      * an implicit Intent.
      */
     private void openPreferredLocationInMap() {
-        double[] coords = WeatherNewsPreferences.getLocationCoordinates(this);
-        String posLat = Double.toString(coords[0]);
-        String posLong = Double.toString(coords[1]);
-        Uri geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
+        String location = WeatherNewsPreferences.getPreferredWeatherLocation(this);
+        double[] coords = LocationResolutionCache.getInstance(this).getCoordinates(location);
+        Uri geoLocation;
+        if (coords != null) {
+            String posLat = Double.toString(coords[0]);
+            String posLong = Double.toString(coords[1]);
+            geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
+        } else {
+            // The location hasn't been resolved yet, so let the map look it up by name
+            geoLocation = Uri.parse("geo:0,0?q=" + Uri.encode(location));
+        }
 
         Intent intent = new Intent(Intent.ACTION_VIEW);
         intent.setData(geoLocation);
@@ -133,12 +159,13 @@ public class MainActivity extends AppCompatActivity implements
     /**
      * This method is for responding to clicks from our list.
      *
-     * @param date Date of forecast
+     * @param epochDay Day of forecast, in days since the epoch
      */
     @Override
-    public void onItemClick(Date date) {
+    public void onItemClick(int epochDay) {
         Intent weatherDetailIntent = new Intent(MainActivity.this, DetailActivity.class);
-        long timestamp = date.getTime();
+        // The notification passes a timestamp as well
+        long timestamp = epochDay * WeatherNewsDateUtils.DAY_IN_MILLIS;
         weatherDetailIntent.putExtra(DetailActivity.WEATHER_ID_EXTRA, timestamp);
         startActivity(weatherDetailIntent);
     }
@@ -177,6 +204,10 @@ public class MainActivity extends AppCompatActivity implements
             startActivity(new Intent(this, SettingsActivity.class));
             return true;
         }
+        if (id == R.id.action_history) {
+            startActivity(new Intent(this, HistoryActivity.class));
+            return true;
+        }
         if (id == R.id.action_map) {
             openPreferredLocationInMap();
             return true;
@@ -7,7 +7,12 @@ package com.aamsharif.weathernews.ui.settings;
 import android.app.Activity;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import androidx.preference.CheckBoxPreference;
+import androidx.preference.EditTextPreference;
 import androidx.preference.ListPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
@@ -25,6 +30,39 @@ import com.aamsharif.weathernews.utilities.InjectorUtils;
 public class SettingsFragment extends PreferenceFragmentCompat implements
         SharedPreferences.OnSharedPreferenceChangeListener {
 
+    // How long the location has to stay unchanged while being typed before it is prefetched
+    private static final long LOCATION_PREFETCH_DELAY_MILLIS = 700;
+
+    private final Handler mHandler = new Handler();
+    private String mTypedLocation;
+
+    private final Runnable mPrefetchLocation = () -> {
+        Activity activity = getActivity();
+        if (activity == null || TextUtils.isEmpty(mTypedLocation)
+                || mTypedLocation.equals(WeatherNewsPreferences.getPreferredWeatherLocation(activity))) {
+            return;
+        }
+        InjectorUtils.provideNetworkDataSource(activity).prefetchLocationWeather(mTypedLocation);
+    };
+
+    // Prefetches the weather of the location being typed once the user pauses typing
+    private final TextWatcher mLocationWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            mTypedLocation = s.toString().trim();
+            mHandler.removeCallbacks(mPrefetchLocation);
+            mHandler.postDelayed(mPrefetchLocation, LOCATION_PREFETCH_DELAY_MILLIS);
+        }
+    };
+
     private void setPreferenceSummary(Preference preference, Object value) {
         String stringValue = value.toString();
 
@@ -58,11 +96,17 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
                 setPreferenceSummary(p, value);
             }
         }
+
+        EditTextPreference locationPreference =
+                (EditTextPreference) findPreference(getString(R.string.pref_location_key));
+        locationPreference.setOnBindEditTextListener(
+                editText -> editText.addTextChangedListener(mLocationWatcher));
     }
 
     @Override
     public void onStop() {
         super.onStop();
+        mHandler.removeCallbacks(mPrefetchLocation);
         getPreferenceScreen().getSharedPreferences()
                 .unregisterOnSharedPreferenceChangeListener(this);
     }
@@ -79,8 +123,12 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         Activity activity = getActivity();
 
         if (key.equals(getString(R.string.pref_location_key))) {
-            // The location have changed
-            WeatherNewsPreferences.resetLocationCoordinates(activity);
+            // The location have changed. Its weather may well have been prefetched already.
+            mHandler.removeCallbacks(mPrefetchLocation);
+            InjectorUtils.provideNetworkDataSource(activity).onLocationChanged(
+                    WeatherNewsPreferences.getPreferredWeatherLocation(activity));
+        } else if (key.equals(getString(R.string.pref_saved_locations_key))) {
+            // The saved locations have changed
             InjectorUtils.provideNetworkDataSource(activity).startFetchWeatherService();
         }
         Preference preference = findPreference(key);
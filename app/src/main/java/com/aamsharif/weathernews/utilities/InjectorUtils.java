@@ -11,9 +11,9 @@ import com.aamsharif.weathernews.data.WeatherNewsRepository;
 import com.aamsharif.weathernews.data.database.WeatherNewsDatabase;
 import com.aamsharif.weathernews.data.network.WeatherNetworkDataSource;
 import com.aamsharif.weathernews.ui.detail.DetailViewModelFactory;
+import com.aamsharif.weathernews.ui.history.HistoryViewModelFactory;
 import com.aamsharif.weathernews.ui.list.MainViewModelFactory;
 
-import java.util.Date;
 
 /**
  * Provides static methods to inject the various classes needed for Weather News
@@ -25,7 +25,9 @@ public class InjectorUtils {
         AppExecutors executors = AppExecutors.getInstance();
         WeatherNetworkDataSource networkDataSource =
                 WeatherNetworkDataSource.getInstance(context.getApplicationContext(), executors);
-        return WeatherNewsRepository.getInstance(database.weatherDao(), networkDataSource, executors);
+        return WeatherNewsRepository.getInstance(database.weatherDao(),
+                database.locationWeatherDao(), database.hourlyWeatherDao(), database.historyDao(), networkDataSource,
+                executors);
     }
 
     public static WeatherNetworkDataSource provideNetworkDataSource(Context context) {
@@ -34,9 +36,14 @@ public class InjectorUtils {
         return WeatherNetworkDataSource.getInstance(context.getApplicationContext(), executors);
     }
 
-    public static DetailViewModelFactory provideDetailViewModelFactory(Context context, Date date) {
+    public static DetailViewModelFactory provideDetailViewModelFactory(Context context, int epochDay) {
         WeatherNewsRepository repository = provideRepository(context.getApplicationContext());
-        return new DetailViewModelFactory(repository, date);
+        return new DetailViewModelFactory(repository, epochDay);
+    }
+
+    public static HistoryViewModelFactory provideHistoryViewModelFactory(Context context, String location) {
+        WeatherNewsRepository repository = provideRepository(context.getApplicationContext());
+        return new HistoryViewModelFactory(repository, location);
     }
 
     public static MainViewModelFactory provideMainActivityViewModelFactory(Context context) {
@@ -67,6 +67,22 @@ public final class WeatherNewsDateUtils {
         return new Date(normalizedMilli);
     }
 
+    /**
+     * @return Today's date, see {@link #getNormalizedUtcMsForToday()}, as the number of days
+     * since the epoch. This is how the weather table keys its days.
+     */
+    public static int getEpochDayForToday() {
+        return toEpochDay(getNormalizedUtcMsForToday());
+    }
+
+    /**
+     * @param utcDate A date in milliseconds in UTC time
+     * @return The number of days from the epoch to the date
+     */
+    public static int toEpochDay(long utcDate) {
+        return (int) elapsedDaysSinceEpoch(utcDate);
+    }
+
     /**
      * This method returns the number of days since the epoch (January 01, 1970, 12:00 Midnight UTC)
      * in UTC time from the current date.
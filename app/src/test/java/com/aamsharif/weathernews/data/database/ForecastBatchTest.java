@@ -0,0 +1,52 @@
+package com.aamsharif.weathernews.data.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastBatchTest {
+
+    @Test
+    public void valuesAreKeptAsParsed() {
+        // As a float, 21.37 would be bound as 21.3700008
+        ForecastBatch batch = new ForecastBatch(1);
+        batch.add("Dhaka", 20000, 800, -3.06, 21.37, (short) 60, 1013.25, 0.1, 271.315);
+
+        assertEquals(-3.06, batch.getMin(0), 0);
+        assertEquals(21.37, batch.getMax(0), 0);
+        assertEquals(1013.25, batch.getPressure(0), 0);
+        assertEquals(0.1, batch.getWind(0), 0);
+        assertEquals(271.315, batch.getDegrees(0), 0);
+    }
+
+    @Test
+    public void unknownRangeStaysNaN() {
+        ForecastBatch batch = new ForecastBatch(1);
+        batch.add("Dhaka", 20000, 800, Double.NaN, Double.NaN, (short) 60, 1013, 3.5, 180);
+
+        assertTrue(Double.isNaN(batch.getMin(0)));
+        assertTrue(Double.isNaN(batch.getMax(0)));
+    }
+
+    @Test
+    public void rowsSurviveGrowingAndAddAll() {
+        ForecastBatch first = new ForecastBatch(1);
+        ForecastBatch second = new ForecastBatch(1);
+        for (int day = 0; day < 5; day++) {
+            first.add("Dhaka", 20000 + day, 800, day, day + 0.01, (short) 60, 1013, 3.5, 180);
+            second.add("Sylhet", 20000 + day, 500, -day, day + 0.02, (short) 70, 1009, 1.5, 90);
+        }
+        first.addAll(second);
+
+        assertEquals(10, first.size());
+        assertEquals(Arrays.asList("Dhaka", "Sylhet"), first.getLocations());
+        assertEquals("Sylhet", first.getLocation(7));
+        assertEquals(20002, first.getEpochDay(7));
+        assertEquals(500, first.getConditionId(7));
+        assertEquals(2.02, first.getMax(7), 0);
+        assertEquals(4.01, first.getMax(4), 0);
+    }
+}
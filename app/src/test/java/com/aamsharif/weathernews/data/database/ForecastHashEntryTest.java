@@ -0,0 +1,51 @@
+package com.aamsharif.weathernews.data.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ForecastHashEntryTest {
+
+    private static WeatherEntry day(int epochDay, double max) {
+        return new WeatherEntry(800, epochDay, 12.5, max, 71, 1013.2, 3.6, 240);
+    }
+
+    @Test
+    public void sameForecastHashesTheSame() {
+        WeatherEntry[] first = {day(17800, 21.37), day(17801, 19)};
+        WeatherEntry[] second = {day(17800, 21.37), day(17801, 19)};
+        assertEquals(ForecastHashEntry.computeContentHash(first),
+                ForecastHashEntry.computeContentHash(second));
+    }
+
+    @Test
+    public void anyChangedFieldChangesTheHash() {
+        WeatherEntry[] forecast = {day(17800, 21.37)};
+        long hash = ForecastHashEntry.computeContentHash(forecast);
+        assertNotEquals(hash, ForecastHashEntry.computeContentHash(
+                new WeatherEntry[]{day(17800, 21.38)}));
+        assertNotEquals(hash, ForecastHashEntry.computeContentHash(
+                new WeatherEntry[]{day(17801, 21.37)}));
+        assertNotEquals(hash, ForecastHashEntry.computeContentHash(
+                new WeatherEntry[]{new WeatherEntry(801, 17800, 12.5, 21.37, 71, 1013.2, 3.6, 240)}));
+    }
+
+    @Test
+    public void orderOfTheDaysMatters() {
+        WeatherEntry[] forecast = {day(17800, 21), day(17801, 19)};
+        WeatherEntry[] reversed = {day(17801, 19), day(17800, 21)};
+        assertNotEquals(ForecastHashEntry.computeContentHash(forecast),
+                ForecastHashEntry.computeContentHash(reversed));
+    }
+
+    @Test
+    public void missingDayChangesTheHash() {
+        WeatherEntry[] forecast = {day(17800, 21), day(17801, 19)};
+        WeatherEntry[] shorter = {day(17800, 21)};
+        assertNotEquals(ForecastHashEntry.computeContentHash(forecast),
+                ForecastHashEntry.computeContentHash(shorter));
+        assertNotEquals(ForecastHashEntry.computeContentHash(new WeatherEntry[0]),
+                ForecastHashEntry.computeContentHash(shorter));
+    }
+}
@@ -0,0 +1,29 @@
+package com.aamsharif.weathernews.data.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MonthlyWeatherEntryTest {
+
+    @Test
+    public void monthsStartOnTheFirst() {
+        assertEquals(1970 * 12, MonthlyWeatherEntry.monthOf(0));
+        assertEquals(1970 * 12, MonthlyWeatherEntry.monthOf(30));
+        assertEquals(1970 * 12 + 1, MonthlyWeatherEntry.monthOf(31));
+    }
+
+    @Test
+    public void daysBeforeTheEpochFallInDecember1969() {
+        assertEquals(1969 * 12 + 11, MonthlyWeatherEntry.monthOf(-1));
+        assertEquals(1969 * 12 + 11, MonthlyWeatherEntry.monthOf(-31));
+        assertEquals(1969 * 12 + 10, MonthlyWeatherEntry.monthOf(-32));
+    }
+
+    @Test
+    public void leapDayFallsInFebruary() {
+        // 29 February 2024 and 1 March 2024
+        assertEquals(2024 * 12 + 1, MonthlyWeatherEntry.monthOf(19782));
+        assertEquals(2024 * 12 + 2, MonthlyWeatherEntry.monthOf(19783));
+    }
+}
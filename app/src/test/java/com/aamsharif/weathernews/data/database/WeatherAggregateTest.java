@@ -0,0 +1,63 @@
+package com.aamsharif.weathernews.data.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WeatherAggregateTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static HistoryWeatherEntry day(int epochDay, int weatherIconId, double min, double max) {
+        return new HistoryWeatherEntry("Dhaka", epochDay, weatherIconId, min, max, 70, 1010, 2,
+                180);
+    }
+
+    private static WeatherAggregate emptyWeek() {
+        return new WeeklyWeatherEntry("Dhaka", 2543, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void emptyAggregateHasNoMean() {
+        assertTrue(Double.isNaN(emptyWeek().getMeanTemperature()));
+    }
+
+    @Test
+    public void firstDaySetsTheRange() {
+        WeatherAggregate week = emptyWeek();
+        week.add(day(17800, 800, 18, 27), 1);
+        assertEquals(1, week.getDays());
+        assertEquals(18, week.getMin(), DELTA);
+        assertEquals(27, week.getMax(), DELTA);
+        assertEquals(22.5, week.getMeanTemperature(), DELTA);
+        assertEquals(800, week.getDominantConditionId());
+        assertEquals(1, week.getDominantConditionDays());
+    }
+
+    @Test
+    public void daysWidenTheRangeAndAddToTheMean() {
+        WeatherAggregate week = emptyWeek();
+        week.add(day(17800, 800, 18, 27), 1);
+        week.add(day(17801, 800, 15, 25), 2);
+        week.add(day(17802, 800, 20, 31), 3);
+        assertEquals(3, week.getDays());
+        assertEquals(15, week.getMin(), DELTA);
+        assertEquals(31, week.getMax(), DELTA);
+        assertEquals((22.5 + 20 + 25.5) / 3, week.getMeanTemperature(), DELTA);
+    }
+
+    @Test
+    public void dominantConditionIsTheOneMostDaysHad() {
+        WeatherAggregate week = emptyWeek();
+        week.add(day(17800, 500, 18, 27), 1);
+        week.add(day(17801, 800, 18, 27), 1);
+        assertEquals(500, week.getDominantConditionId());
+        week.add(day(17802, 800, 18, 27), 2);
+        assertEquals(800, week.getDominantConditionId());
+        assertEquals(2, week.getDominantConditionDays());
+        week.add(day(17803, 500, 18, 27), 2);
+        // A tie leaves the condition which got there first
+        assertEquals(800, week.getDominantConditionId());
+    }
+}
@@ -0,0 +1,42 @@
+package com.aamsharif.weathernews.data.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeeklyWeatherEntryTest {
+
+    // 1 January 1970, the epoch, was a Thursday
+    private static final int THURSDAY_1_JAN_1970 = 0;
+
+    @Test
+    public void weekOfTheEpochStartsOnTheMondayBefore() {
+        assertEquals(0, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970));
+        assertEquals(0, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 - 3));
+        assertEquals(0, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 + 3));
+    }
+
+    @Test
+    public void nextWeekStartsOnMonday() {
+        assertEquals(1, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 + 4));
+        assertEquals(1, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 + 10));
+        assertEquals(2, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 + 11));
+    }
+
+    @Test
+    public void daysBeforeTheEpochRoundDown() {
+        assertEquals(-1, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 - 4));
+        assertEquals(-1, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 - 10));
+        assertEquals(-2, WeeklyWeatherEntry.weekOf(THURSDAY_1_JAN_1970 - 11));
+    }
+
+    @Test
+    public void recentWeekRunsFromMondayToSunday() {
+        // Monday 12 October 2026 to Sunday 18 October 2026
+        int monday = 20738;
+        int week = WeeklyWeatherEntry.weekOf(monday);
+        assertEquals(week - 1, WeeklyWeatherEntry.weekOf(monday - 1));
+        assertEquals(week, WeeklyWeatherEntry.weekOf(monday + 6));
+        assertEquals(week + 1, WeeklyWeatherEntry.weekOf(monday + 7));
+    }
+}
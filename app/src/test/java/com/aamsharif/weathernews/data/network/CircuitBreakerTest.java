@@ -0,0 +1,98 @@
+package com.aamsharif.weathernews.data.network;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// SystemClock.elapsedRealtime() returns 0 in unit tests, so time stands still
+public class CircuitBreakerTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, 60000);
+        for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordFailure();
+        }
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsTheFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void letsASingleTrialThroughOnceTheOpenPeriodIsOver() {
+        CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, 0);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) breaker.recordFailure();
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialKeepsTheBreakerOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, 0);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) breaker.recordFailure();
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure(new SocketTimeoutException());
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void ignoredTrialLetsTheNextOneThrough() {
+        CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, 0);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) breaker.recordFailure();
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure(new HttpStatusException(404, 0, ""));
+        assertTrue(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void clientErrorsDoNotOpenTheBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, 60000);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            breaker.recordFailure(new HttpStatusException(404, 0, ""));
+        }
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void onlyNetworkErrorsThrottlingAndServerErrorsAreServerFailures() {
+        assertTrue(CircuitBreaker.isServerFailure(new SocketTimeoutException()));
+        assertTrue(CircuitBreaker.isServerFailure(new IOException()));
+        assertTrue(CircuitBreaker.isServerFailure(new UnknownHostException()));
+        assertTrue(CircuitBreaker.isServerFailure(new ConnectException()));
+        assertTrue(CircuitBreaker.isServerFailure(new SocketException("Connection reset")));
+        assertTrue(CircuitBreaker.isServerFailure(new HttpStatusException(429, 0, "")));
+        assertTrue(CircuitBreaker.isServerFailure(new HttpStatusException(502, 0, "")));
+        assertFalse(CircuitBreaker.isServerFailure(new HttpStatusException(404, 0, "")));
+        assertFalse(CircuitBreaker.isServerFailure(new QuotaExceededException("")));
+        assertFalse(CircuitBreaker.isServerFailure(new IllegalStateException()));
+    }
+}
@@ -0,0 +1,233 @@
+package com.aamsharif.weathernews.data.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends the same series of requests to a local primary server, once straight through the
+ * {@link UrlConnectionTransport} and once through a {@link HedgedTransport} on top of it which
+ * hedges to a local mirror. Every tenth request the primary gets is held back, the way a single
+ * slow backend holds back the requests the load balancer hands to it.
+ */
+public class HedgedTransportTest {
+
+    private static final int REQUESTS = 50;
+    // The transport hedges after its default delay until it has seen this many requests
+    private static final int WARM_UP_REQUESTS = 20;
+    private static final int SLOW_EVERY = 10;
+    private static final long FAST_MILLIS = 10;
+    private static final long SLOW_MILLIS = 600;
+
+    // Reads the real time, unlike SystemClock in local tests
+    private static final Clock NANO_CLOCK = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final MockWebServer mPrimary = new MockWebServer();
+    private final MockWebServer mMirror = new MockWebServer();
+    private final AtomicInteger mForecastRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        mPrimary.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                long delayMillis = FAST_MILLIS;
+                if (request.getPath().startsWith("/forecast")
+                        && mForecastRequests.incrementAndGet() % SLOW_EVERY == 0) {
+                    delayMillis = SLOW_MILLIS;
+                }
+                return response(delayMillis);
+            }
+        });
+        mMirror.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return response(FAST_MILLIS);
+            }
+        });
+        mPrimary.start();
+        mMirror.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mPrimary.shutdown();
+        mMirror.shutdown();
+    }
+
+    @Test
+    public void hedgingToAMirrorCutsTheTailLatency() throws IOException {
+        HttpTransport transport = new UrlConnectionTransport(5000, 5000, 10000);
+        LatencySamples plain = measure(transport);
+
+        mForecastRequests.set(0);
+        String mirrorHost = mMirror.getHostName() + ":" + mMirror.getPort();
+        HedgedTransport hedged = new HedgedTransport(transport,
+                Collections.singletonList(mirrorHost), url -> true, NANO_CLOCK);
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            request(hedged, mPrimary.url("/warmup").url());
+        }
+        LatencySamples withHedging = measure(hedged);
+
+        System.out.println("Plain:  p50 " + plain.getPercentile(50) + " ms, p99 "
+                + plain.getPercentile(99) + " ms");
+        System.out.println("Hedged: p50 " + withHedging.getPercentile(50) + " ms, p99 "
+                + withHedging.getPercentile(99) + " ms, " + hedged.getHedgeWinCount() + " of "
+                + hedged.getHedgeCount() + " hedges won, hedge delay "
+                + hedged.getHedgeDelayMillis() + " ms");
+
+        assertTrue(plain.getPercentile(99) >= SLOW_MILLIS);
+        assertTrue(withHedging.getPercentile(99) < SLOW_MILLIS / 2);
+        assertTrue(hedged.getHedgeWinCount() > 0);
+        // Every hedge went to the mirror
+        assertEquals(hedged.getHedgeCount(), mMirror.getRequestCount());
+    }
+
+    @Test
+    public void withoutMirrorsTheHedgeGoesToThePrimary() throws IOException {
+        HedgedTransport hedged = new HedgedTransport(
+                new UrlConnectionTransport(5000, 5000, 10000),
+                Collections.<String>emptyList(), url -> true, NANO_CLOCK);
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            request(hedged, mPrimary.url("/warmup").url());
+        }
+        measure(hedged);
+
+        assertTrue(hedged.getHedgeCount() > 0);
+        assertEquals(0, mMirror.getRequestCount());
+        assertEquals(WARM_UP_REQUESTS + REQUESTS + hedged.getHedgeCount(),
+                mPrimary.getRequestCount());
+    }
+
+    @Test
+    public void hedgeDelayFollowsThePrimaryP95() throws IOException {
+        AtomicLong now = new AtomicLong();
+        AtomicLong nextLatency = new AtomicLong();
+        Clock clock = new Clock() {
+            @Override
+            public long elapsedRealtime() {
+                return now.get();
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return now.get();
+            }
+        };
+        // Answers at once, but the clock moves on by the latency the request is meant to take
+        HttpTransport delegate = (url, headers) -> {
+            now.addAndGet(nextLatency.get());
+            return new StubResponse();
+        };
+        HedgedTransport hedged = new HedgedTransport(delegate,
+                Collections.<String>emptyList(), url -> true, clock);
+        URL url = new URL("http://localhost/forecast");
+
+        // A second until 20 requests have been seen
+        assertEquals(1000, hedged.getHedgeDelayMillis());
+        for (int latency = 1; latency <= 19; latency++) {
+            nextLatency.set(latency * 10);
+            hedged.execute(url, Collections.<String, String>emptyMap()).close();
+        }
+        assertEquals(1000, hedged.getHedgeDelayMillis());
+
+        // 100 requests taking 10 to 1000 ms, together with the 19 above
+        for (int latency = 1; latency <= 100; latency++) {
+            nextLatency.set(latency * 10);
+            hedged.execute(url, Collections.<String, String>emptyMap()).close();
+        }
+        // The 95th percentile of the 119 samples is the 114th smallest of them
+        assertEquals(950, hedged.getHedgeDelayMillis());
+        assertEquals(950, hedged.getPrimaryLatencyMillis(95));
+
+        // Once only fast requests are remembered, the delay stops at its floor
+        nextLatency.set(5);
+        for (int i = 0; i < 200; i++) {
+            hedged.execute(url, Collections.<String, String>emptyMap()).close();
+        }
+        assertEquals(50, hedged.getHedgeDelayMillis());
+        assertEquals(0, hedged.getHedgeCount());
+    }
+
+    private static MockResponse response(long delayMillis) {
+        return new MockResponse()
+                .setBody("{\"cod\":\"200\",\"list\":[]}")
+                .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private LatencySamples measure(HttpTransport transport) throws IOException {
+        LatencySamples latencies = new LatencySamples(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            long startNanos = System.nanoTime();
+            request(transport, mPrimary.url("/forecast?q=" + i).url());
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+        return latencies;
+    }
+
+    private static void request(HttpTransport transport, URL url) throws IOException {
+        try (HttpTransport.Response response = transport.execute(url,
+                Collections.<String, String>emptyMap())) {
+            assertEquals(200, response.getResponseCode());
+            InputStream body = response.getBody();
+            while (body.read() != -1) {
+                // Read in full, so that the connection can be reused
+            }
+        }
+    }
+
+    private static class StubResponse implements HttpTransport.Response {
+        @Override
+        public int getResponseCode() {
+            return 200;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return null;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public RequestTiming getTiming() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.aamsharif.weathernews.data.network;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// SystemClock.elapsedRealtime() returns 0 in unit tests, so the buckets never refill. Every test
+// uses a key and an endpoint of its own, as the quota is shared by the whole process.
+public class RequestQuotaTest {
+
+    // The endpoint bucket holds 30 tokens, of which background requests leave 6
+    private static final int ENDPOINT_CAPACITY = 30;
+    private static final int BACKGROUND_TOKENS = 24;
+
+    private final RequestQuota mQuota = RequestQuota.getInstance();
+
+    @Test
+    public void optionalRequestsLeaveTheReserve() {
+        for (int i = 0; i < BACKGROUND_TOKENS; i++) {
+            assertTrue(mQuota.tryAcquire("reserve-key", "/reserve"));
+        }
+        assertFalse(mQuota.tryAcquire("reserve-key", "/reserve"));
+    }
+
+    @Test
+    public void userInitiatedRequestsMayTakeTheReserve() throws Exception {
+        for (int i = 0; i < BACKGROUND_TOKENS; i++) {
+            assertTrue(mQuota.tryAcquire("user-key", "/user"));
+        }
+        for (int i = BACKGROUND_TOKENS; i < ENDPOINT_CAPACITY; i++) {
+            mQuota.acquire("user-key", "/user", RequestPriority.USER_INITIATED);
+        }
+        assertFalse(mQuota.tryAcquire("user-key", "/user"));
+    }
+
+    @Test
+    public void endpointsHaveBucketsOfTheirOwn() {
+        for (int i = 0; i < BACKGROUND_TOKENS; i++) {
+            assertTrue(mQuota.tryAcquire("endpoint-key", "/first"));
+        }
+        assertFalse(mQuota.tryAcquire("endpoint-key", "/first"));
+        assertTrue(mQuota.tryAcquire("endpoint-key", "/second"));
+    }
+
+    @Test
+    public void theKeyLimitsEveryEndpoint() {
+        // The key bucket holds 60 tokens, of which background requests leave 12
+        int taken = 0;
+        for (int endpoint = 0; endpoint < 3; endpoint++) {
+            while (mQuota.tryAcquire("shared-key", "/shared" + endpoint)) taken++;
+        }
+        assertEquals(48, taken);
+        assertFalse(mQuota.tryAcquire("shared-key", "/shared3"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.aamsharif.weathernews.data.network;
+
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private static final long BASE_DELAY_MILLIS = 1000;
+    private static final long MAX_DELAY_MILLIS = 30000;
+
+    private final RetryPolicy mRetryPolicy = new RetryPolicy(3, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+
+    @Test
+    public void timeoutsThrottlingAndServerErrorsAreRetryable() {
+        assertTrue(mRetryPolicy.isRetryable(new SocketTimeoutException()));
+        assertTrue(mRetryPolicy.isRetryable(new HttpStatusException(429, 0, "")));
+        assertTrue(mRetryPolicy.isRetryable(new HttpStatusException(503, 0, "")));
+    }
+
+    @Test
+    public void connectivityFailuresAreRetryable() {
+        assertTrue(mRetryPolicy.isRetryable(new UnknownHostException()));
+        assertTrue(mRetryPolicy.isRetryable(new ConnectException()));
+        assertTrue(mRetryPolicy.isRetryable(new SocketException("Connection reset")));
+    }
+
+    @Test
+    public void clientErrorsAreNotRetryable() {
+        assertFalse(mRetryPolicy.isRetryable(new HttpStatusException(404, 0, "")));
+        assertFalse(mRetryPolicy.isRetryable(new HttpStatusException(401, 0, "")));
+        assertFalse(mRetryPolicy.isRetryable(new QuotaExceededException("")));
+        assertFalse(mRetryPolicy.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    public void retriesAreMadeForExactlyTheFailuresTheBreakerCounts() {
+        Exception[] failures = {
+                new SocketTimeoutException(), new UnknownHostException(), new ConnectException(),
+                new SocketException("Connection reset"), new HttpStatusException(429, 0, ""),
+                new HttpStatusException(500, 0, ""), new HttpStatusException(404, 0, ""),
+                new QuotaExceededException(""), new IllegalStateException()
+        };
+        for (Exception e : failures) {
+            assertEquals(e.toString(), CircuitBreaker.isServerFailure(e),
+                    mRetryPolicy.isRetryable(e));
+        }
+    }
+
+    @Test
+    public void retriesStopAfterTheLastAttempt() {
+        Exception e = new SocketTimeoutException();
+        assertTrue(mRetryPolicy.canRetry(0, e));
+        assertTrue(mRetryPolicy.canRetry(1, e));
+        assertFalse(mRetryPolicy.canRetry(2, e));
+    }
+
+    @Test
+    public void delaysStayWithinTheExponentialCap() {
+        Exception e = new SocketTimeoutException();
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long cap = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << attempt);
+            for (int i = 0; i < 100; i++) {
+                long delay = mRetryPolicy.getDelayMillis(attempt, e);
+                assertTrue(delay >= 0);
+                assertTrue(delay <= cap);
+            }
+        }
+    }
+
+    @Test
+    public void retryAfterIsNeverCutShort() {
+        Exception e = new HttpStatusException(429, 20, "");
+        assertTrue(mRetryPolicy.canRetry(0, e));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(mRetryPolicy.getDelayMillis(0, e) >= 20000);
+        }
+    }
+
+    @Test
+    public void retryAfterBeyondTheCapIsNotRetriedInProcess() {
+        Exception e = new HttpStatusException(503, 120, "");
+        assertFalse(mRetryPolicy.canRetry(0, e));
+        assertEquals(120000, mRetryPolicy.getDelayMillis(0, e));
+    }
+}
@@ -0,0 +1,211 @@
+package com.aamsharif.weathernews.data.network;
+
+import com.aamsharif.weathernews.data.database.WeatherEntry;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncSchedulerTest {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final SimulatedDevice mDevice = new SimulatedDevice();
+    private final SyncScheduler mScheduler = new SyncScheduler(new InMemorySharedPreferences(),
+            mDevice, mDevice.network, mDevice.battery);
+
+    @Test
+    public void baseIntervalDuringTheDay() {
+        mDevice.setLocalTime(12, 0);
+        assertEquals(3 * HOUR_MILLIS, mScheduler.decide().intervalMillis);
+    }
+
+    @Test
+    public void volatileForecastHalvesTheInterval() {
+        mDevice.setLocalTime(12, 0);
+        mScheduler.recordForecastChange(6);
+        mScheduler.recordForecastChange(6);
+
+        SyncScheduler.Decision decision = mScheduler.decide();
+        assertEquals(3 * HOUR_MILLIS / 2, decision.intervalMillis);
+        assertTrue(decision.reasons.contains("forecast volatile"));
+    }
+
+    @Test
+    public void stableForecastStretchesTheInterval() {
+        mDevice.setLocalTime(12, 0);
+        mScheduler.recordForecastChange(0);
+
+        SyncScheduler.Decision decision = mScheduler.decide();
+        assertEquals(3 * HOUR_MILLIS * 3 / 2, decision.intervalMillis);
+        assertTrue(decision.reasons.contains("forecast stable"));
+    }
+
+    @Test
+    public void nightDoublesTheInterval() {
+        mDevice.setLocalTime(2, 0);
+
+        SyncScheduler.Decision decision = mScheduler.decide();
+        assertEquals(6 * HOUR_MILLIS, decision.intervalMillis);
+        assertTrue(decision.reasons.contains("night"));
+    }
+
+    @Test
+    public void recentForegroundHalvesTheIntervalEvenAtNight() {
+        mDevice.setLocalTime(1, 0);
+        mScheduler.recordForeground();
+        mDevice.advance(2 * HOUR_MILLIS);
+
+        SyncScheduler.Decision decision = mScheduler.decide();
+        assertEquals(3 * HOUR_MILLIS / 2, decision.intervalMillis);
+        assertTrue(decision.reasons.contains("app recently used"));
+        assertFalse(decision.reasons.contains("night"));
+
+        // Six hours on, the app no longer counts as used
+        mDevice.advance(5 * HOUR_MILLIS);
+        assertEquals(3 * HOUR_MILLIS, mScheduler.decide().intervalMillis);
+    }
+
+    @Test
+    public void meteredNetworkAndLowBatteryEachDoubleTheInterval() {
+        mDevice.setLocalTime(12, 0);
+        mDevice.metered = true;
+        assertEquals(6 * HOUR_MILLIS, mScheduler.decide().intervalMillis);
+
+        mDevice.batteryLow = true;
+        SyncScheduler.Decision decision = mScheduler.decide();
+        assertEquals(12 * HOUR_MILLIS, decision.intervalMillis);
+        assertTrue(decision.reasons.contains("metered network"));
+        assertTrue(decision.reasons.contains("battery low"));
+    }
+
+    @Test
+    public void intervalIsClampedToOneToTwelveHours() {
+        mDevice.setLocalTime(12, 0);
+        mScheduler.recordForecastChange(10);
+        mScheduler.recordForeground();
+        // 3 hours halved twice would be 45 minutes
+        assertEquals(HOUR_MILLIS, mScheduler.decide().intervalMillis);
+
+        SyncScheduler stable = new SyncScheduler(new InMemorySharedPreferences(), mDevice,
+                mDevice.network, mDevice.battery);
+        stable.recordForecastChange(0);
+        mDevice.setLocalTime(3, 0);
+        mDevice.metered = true;
+        mDevice.batteryLow = true;
+        // 4.5 hours doubled three times would be 36 hours
+        assertEquals(12 * HOUR_MILLIS, stable.decide().intervalMillis);
+    }
+
+    @Test
+    public void syncIsDueUpToTheFlexTimeEarly() {
+        mDevice.setLocalTime(12, 0);
+        mScheduler.recordSync();
+        long flexMillis = TimeUnit.MINUTES.toMillis(SyncScheduler.CHECK_FLEXTIME_MINUTES);
+
+        mDevice.advance(3 * HOUR_MILLIS - flexMillis - 1);
+        assertFalse(mScheduler.decide().syncDue);
+        mDevice.advance(1);
+        assertTrue(mScheduler.decide().syncDue);
+    }
+
+    @Test
+    public void decisionsAreLogged() {
+        mDevice.setLocalTime(12, 0);
+        mScheduler.decide();
+        mDevice.metered = true;
+        mScheduler.decide();
+
+        List<SyncScheduler.Decision> log = mScheduler.getDecisionLog();
+        assertEquals(2, log.size());
+        assertEquals(3 * HOUR_MILLIS, log.get(0).intervalMillis);
+        assertEquals(6 * HOUR_MILLIS, log.get(1).intervalMillis);
+        assertEquals(mDevice.currentTimeMillis(), log.get(1).timeMillis);
+    }
+
+    @Test
+    public void changeScoreIsTheLargestTemperatureChangePlusConditionChanges() {
+        List<WeatherEntry> stored = Arrays.asList(
+                entry(20000, 800, 10, 20),
+                entry(20001, 800, 11, 21),
+                entry(20002, 500, 12, 22));
+        WeatherEntry[] downloaded = {
+                entry(20000, 800, 10.5, 20),
+                entry(20001, 500, 11, 22.5),
+                entry(20002, 800, 12, 22),
+                // Not stored, so it says nothing about how the forecast changed
+                entry(20003, 200, -5, 40)
+        };
+        assertEquals(1.5 + 2 * 2, SyncScheduler.getForecastChangeScore(stored, downloaded), 1e-9);
+    }
+
+    @Test
+    public void changeScoreOfAnUnchangedOrNewForecastIsZero() {
+        List<WeatherEntry> stored = Collections.singletonList(entry(20000, 800, 10, 20));
+        assertEquals(0, SyncScheduler.getForecastChangeScore(stored,
+                new WeatherEntry[]{entry(20000, 800, 10, 20)}), 0);
+        assertEquals(0, SyncScheduler.getForecastChangeScore(Collections.<WeatherEntry>emptyList(),
+                new WeatherEntry[]{entry(20000, 800, 10, 20)}), 0);
+    }
+
+    private static WeatherEntry entry(int epochDay, int conditionId, double min, double max) {
+        return new WeatherEntry(conditionId, epochDay, min, max, 60, 1013, 3.5, 180);
+    }
+
+    /**
+     * A clock, network and battery set by the test.
+     */
+    private static class SimulatedDevice implements Clock {
+        boolean metered;
+        boolean batteryLow;
+        private long mTimeMillis;
+
+        final NetworkConditions network = new NetworkConditions(null) {
+            @Override
+            boolean isMetered() {
+                return metered;
+            }
+
+            @Override
+            boolean isSlow() {
+                return false;
+            }
+        };
+
+        final BatteryConditions battery = new BatteryConditions(null) {
+            @Override
+            boolean isLow() {
+                return batteryLow;
+            }
+        };
+
+        void setLocalTime(int hourOfDay, int minute) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(2019, Calendar.MARCH, 15, hourOfDay, minute);
+            mTimeMillis = calendar.getTimeInMillis();
+        }
+
+        void advance(long millis) {
+            mTimeMillis += millis;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return mTimeMillis;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return mTimeMillis;
+        }
+    }
+}